@@ -0,0 +1,152 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.file.FileFingerprint;
+
+/**
+ * Remembers the open deadlines of a Storage as long as its source files are
+ * unchanged (see FileFingerprint) and it is the same day. Returns copies, as
+ * the deadlines are marked as done in the gui: this is the only copy, the
+ * storage shares the remembered deadlines with its own cache.
+ *
+ * The day of aTo is compared, not the time: the 10-minute reload would
+ * always miss otherwise.
+ *
+ * The fingerprints are passed to the storage on a miss, so the files are read
+ * once for the check.
+ */
+public class CachingStorage implements Storage {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingStorage.class);
+
+	private final Storage storage;
+
+	private Map<File, FileFingerprint> fingerprints;
+	private String key;
+	private List<Deadline> openDeadlines;
+
+	private long hitCount;
+	private long missCount;
+
+	public CachingStorage(Storage aStorage) {
+		super();
+		storage = aStorage;
+	}
+
+	@Override
+	public synchronized List<Deadline> getOpenDeadlines(Date aTo) {
+		List<File> tempSourceFiles = storage.getSourceFiles();
+		String tempKey = (aTo == null ? "" : new java.sql.Date(aTo.getTime()).toString()) + "|"
+				+ new java.sql.Date(System.currentTimeMillis());
+		try {
+			if (openDeadlines != null && !tempSourceFiles.isEmpty() && tempKey.equals(key)
+					&& isUnchanged(tempSourceFiles)) {
+				hitCount++;
+				LOGGER.debug("Unchanged " + tempSourceFiles + " hits=" + hitCount + " misses=" + missCount);
+				return copy(openDeadlines);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		missCount++;
+		Map<File, FileFingerprint> tempFingerprints = new LinkedHashMap<>();
+		try {
+			for (File tempFile : tempSourceFiles) {
+				tempFingerprints.put(tempFile, FileFingerprint.of(tempFile));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		List<Deadline> tempOpenDeadlines = storage.getOpenDeadlines(aTo, tempFingerprints);
+		openDeadlines = tempOpenDeadlines;
+		fingerprints = tempFingerprints;
+		key = tempKey;
+		LOGGER.info("Loaded " + tempOpenDeadlines.size() + " deadlines, hits=" + hitCount + " misses=" + missCount);
+		return copy(tempOpenDeadlines);
+	}
+
+	private boolean isUnchanged(List<File> aSourceFiles) throws IOException {
+		if (!fingerprints.keySet().equals(new HashSet<>(aSourceFiles))) {
+			return false;
+		}
+		for (File tempFile : aSourceFiles) {
+			if (!fingerprints.get(tempFile).isUnchanged(tempFile)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Not cached, the window is evaluated lazily by the storage.
+	 */
+	@Override
+	public Iterator<Deadline> iterateOpenDeadlines(Date aFrom, Date aTo) {
+		return storage.iterateOpenDeadlines(aFrom, aTo);
+	}
+
+	private static List<Deadline> copy(List<Deadline> aDeadlines) {
+		List<Deadline> tempCopy = new ArrayList<>(aDeadlines.size());
+		for (Deadline tempDeadline : aDeadlines) {
+			tempCopy.add(new Deadline(tempDeadline));
+		}
+		return tempCopy;
+	}
+
+	private synchronized void invalidate() {
+		openDeadlines = null;
+	}
+
+	@Override
+	public void saveConfirmedTasks(List<Deadline> aDeadlines) {
+		storage.saveConfirmedTasks(aDeadlines);
+		invalidate();
+	}
+
+	@Override
+	public String getSourceInfo() {
+		return storage.getSourceInfo();
+	}
+
+	@Override
+	public List<File> getSourceFiles() {
+		return storage.getSourceFiles();
+	}
+
+	@Override
+	public void addFromGroogle(List<Deadline> aDeadline) throws IOException {
+		storage.addFromGroogle(aDeadline);
+		invalidate();
+	}
+
+	@Override
+	public void removeFromGroogle(List<Deadline> aRemovedFromGoogle) throws IOException {
+		storage.removeFromGroogle(aRemovedFromGoogle);
+		invalidate();
+	}
+
+	@Override
+	public void maintain() {
+		storage.maintain();
+		invalidate();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+}
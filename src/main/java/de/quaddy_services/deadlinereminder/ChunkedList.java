@@ -0,0 +1,188 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list stored in chunks. replaced, inserted and removed return
+ * a new list which shares all chunks except the changed one, so a change copies
+ * the chunk table and one chunk instead of all elements.
+ */
+final class ChunkedList<E> extends AbstractList<E> implements RandomAccess {
+	static final int CHUNK_SIZE = 512;
+
+	private static final ChunkedList<Object> EMPTY = new ChunkedList<>(new Object[0][], new int[0], 0);
+
+	private final Object[][] chunks;
+	/**
+	 * The index of the first element of each chunk, never changed after the
+	 * constructor
+	 */
+	private final int[] offsets;
+	private final int size;
+
+	private ChunkedList(Object[][] aChunks, int[] anOffsets, int aSize) {
+		chunks = aChunks;
+		offsets = anOffsets;
+		size = aSize;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <E> ChunkedList<E> empty() {
+		return (ChunkedList<E>) EMPTY;
+	}
+
+	static <E> ChunkedList<E> of(Collection<? extends E> anElements) {
+		Object[] tempAll = anElements.toArray();
+		int tempCount = (tempAll.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		Object[][] tempChunks = new Object[tempCount][];
+		int[] tempOffsets = new int[tempCount];
+		for (int i = 0; i < tempCount; i++) {
+			tempOffsets[i] = i * CHUNK_SIZE;
+			tempChunks[i] = Arrays.copyOfRange(tempAll, tempOffsets[i],
+					Math.min(tempAll.length, tempOffsets[i] + CHUNK_SIZE));
+		}
+		return new ChunkedList<>(tempChunks, tempOffsets, tempAll.length);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E get(int anIndex) {
+		checkIndex(anIndex, size);
+		int tempChunk = getChunk(anIndex);
+		return (E) chunks[tempChunk][anIndex - offsets[tempChunk]];
+	}
+
+	/**
+	 * @return a list with anElement at anIndex
+	 */
+	ChunkedList<E> replaced(int anIndex, E anElement) {
+		checkIndex(anIndex, size);
+		int tempChunk = getChunk(anIndex);
+		Object[] tempChanged = chunks[tempChunk].clone();
+		tempChanged[anIndex - offsets[tempChunk]] = anElement;
+		Object[][] tempChunks = chunks.clone();
+		tempChunks[tempChunk] = tempChanged;
+		return new ChunkedList<>(tempChunks, offsets, size);
+	}
+
+	/**
+	 * @return a list with anElement inserted at anIndex, a chunk of twice
+	 *         CHUNK_SIZE is split
+	 */
+	ChunkedList<E> inserted(int anIndex, E anElement) {
+		checkIndex(anIndex, size + 1);
+		if (size == 0) {
+			return of(Arrays.asList(anElement));
+		}
+		int tempChunk = anIndex == size ? chunks.length - 1 : getChunk(anIndex);
+		Object[] tempOld = chunks[tempChunk];
+		int tempPos = anIndex - offsets[tempChunk];
+		Object[] tempChanged = new Object[tempOld.length + 1];
+		System.arraycopy(tempOld, 0, tempChanged, 0, tempPos);
+		tempChanged[tempPos] = anElement;
+		System.arraycopy(tempOld, tempPos, tempChanged, tempPos + 1, tempOld.length - tempPos);
+		if (tempChanged.length < 2 * CHUNK_SIZE) {
+			Object[][] tempChunks = chunks.clone();
+			tempChunks[tempChunk] = tempChanged;
+			int[] tempOffsets = offsets.clone();
+			for (int i = tempChunk + 1; i < tempOffsets.length; i++) {
+				tempOffsets[i]++;
+			}
+			return new ChunkedList<>(tempChunks, tempOffsets, size + 1);
+		}
+		Object[][] tempChunks = new Object[chunks.length + 1][];
+		int[] tempOffsets = new int[offsets.length + 1];
+		System.arraycopy(chunks, 0, tempChunks, 0, tempChunk);
+		System.arraycopy(offsets, 0, tempOffsets, 0, tempChunk + 1);
+		tempChunks[tempChunk] = Arrays.copyOfRange(tempChanged, 0, CHUNK_SIZE);
+		tempChunks[tempChunk + 1] = Arrays.copyOfRange(tempChanged, CHUNK_SIZE, tempChanged.length);
+		tempOffsets[tempChunk + 1] = offsets[tempChunk] + CHUNK_SIZE;
+		for (int i = tempChunk + 1; i < chunks.length; i++) {
+			tempChunks[i + 1] = chunks[i];
+			tempOffsets[i + 1] = offsets[i] + 1;
+		}
+		return new ChunkedList<>(tempChunks, tempOffsets, size + 1);
+	}
+
+	/**
+	 * @return a list without the element at anIndex, an empty chunk is dropped
+	 */
+	ChunkedList<E> removed(int anIndex) {
+		checkIndex(anIndex, size);
+		int tempChunk = getChunk(anIndex);
+		Object[] tempOld = chunks[tempChunk];
+		if (tempOld.length == 1) {
+			Object[][] tempChunks = new Object[chunks.length - 1][];
+			int[] tempOffsets = new int[offsets.length - 1];
+			System.arraycopy(chunks, 0, tempChunks, 0, tempChunk);
+			System.arraycopy(offsets, 0, tempOffsets, 0, tempChunk);
+			for (int i = tempChunk + 1; i < chunks.length; i++) {
+				tempChunks[i - 1] = chunks[i];
+				tempOffsets[i - 1] = offsets[i] - 1;
+			}
+			return new ChunkedList<>(tempChunks, tempOffsets, size - 1);
+		}
+		int tempPos = anIndex - offsets[tempChunk];
+		Object[] tempChanged = new Object[tempOld.length - 1];
+		System.arraycopy(tempOld, 0, tempChanged, 0, tempPos);
+		System.arraycopy(tempOld, tempPos + 1, tempChanged, tempPos, tempChanged.length - tempPos);
+		Object[][] tempChunks = chunks.clone();
+		tempChunks[tempChunk] = tempChanged;
+		int[] tempOffsets = offsets.clone();
+		for (int i = tempChunk + 1; i < tempOffsets.length; i++) {
+			tempOffsets[i]--;
+		}
+		return new ChunkedList<>(tempChunks, tempOffsets, size - 1);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int chunk = 0;
+			private int pos = 0;
+
+			@Override
+			public boolean hasNext() {
+				return chunk < chunks.length;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				E tempNext = (E) chunks[chunk][pos++];
+				if (pos == chunks[chunk].length) {
+					chunk++;
+					pos = 0;
+				}
+				return tempNext;
+			}
+		};
+	}
+
+	/**
+	 * @return the last chunk which starts at or before anIndex
+	 */
+	private int getChunk(int anIndex) {
+		int tempPos = Arrays.binarySearch(offsets, anIndex);
+		return tempPos >= 0 ? tempPos : -tempPos - 2;
+	}
+
+	private static void checkIndex(int anIndex, int aSize) {
+		if (anIndex < 0 || anIndex >= aSize) {
+			throw new IndexOutOfBoundsException("Index: " + anIndex + ", Size: " + aSize);
+		}
+	}
+}
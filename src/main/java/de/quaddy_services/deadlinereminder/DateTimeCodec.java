@@ -0,0 +1,206 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.text.DateFormatSymbols;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * "dd.MM.yyyy" and "HH:mm" in the default time zone, safe to use from any
+ * thread (gui, reload, GoogleSync). Replaces the shared static
+ * SimpleDateFormats, which are not thread safe.
+ *
+ * The append methods compute the fields from the millis and the zone offset,
+ * they allocate neither a Calendar nor a String.
+ */
+public final class DateTimeCodec {
+	private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+	private static final ZoneId ZONE_ID = TIME_ZONE.toZoneId();
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+	private static final int MINUTES_PER_DAY = 24 * 60;
+
+	/**
+	 * Same names as SimpleDateFormat("EE"), indexed by Calendar.DAY_OF_WEEK
+	 */
+	private static final String[] SHORT_WEEKDAYS = DateFormatSymbols.getInstance().getShortWeekdays();
+
+	private DateTimeCodec() {
+		super();
+	}
+
+	/**
+	 * @return dd.MM.yyyy
+	 */
+	public static String formatDate(Date aDate) {
+		return appendDate(new StringBuilder(10), aDate.getTime()).toString();
+	}
+
+	/**
+	 * @return dd.MM.yy
+	 */
+	public static String formatShortDate(long aTime) {
+		StringBuilder tempText = new StringBuilder(8);
+		int tempDate = toYearMonthDay(getEpochDay(aTime));
+		append2(tempText, tempDate % 100).append('.');
+		append2(tempText, tempDate / 100 % 100).append('.');
+		append2(tempText, Math.floorMod(tempDate / 10000, 100));
+		return tempText.toString();
+	}
+
+	/**
+	 * @return EE dd.MM.yyyy, e.g. "So. 04.12.2016" (the weekday depends on the
+	 *         JDK as with SimpleDateFormat)
+	 */
+	public static String formatDateWithDay(Date aDate) {
+		long tempTime = aDate.getTime();
+		StringBuilder tempText = new StringBuilder(14);
+		// 01.01.1970 was a thursday, Calendar.SUNDAY is 1
+		tempText.append(SHORT_WEEKDAYS[(int) Math.floorMod(getEpochDay(tempTime) + 4, 7L) + 1]).append(' ');
+		return appendDate(tempText, tempTime).toString();
+	}
+
+	/**
+	 * @return HH:mm
+	 */
+	public static String formatTime(Date aDate) {
+		return appendTime(new StringBuilder(5), aDate.getTime()).toString();
+	}
+
+	/**
+	 * Appends dd.MM.yyyy
+	 */
+	public static StringBuilder appendDate(StringBuilder aText, long aTime) {
+		int tempDate = toYearMonthDay(getEpochDay(aTime));
+		append2(aText, tempDate % 100).append('.');
+		append2(aText, tempDate / 100 % 100).append('.');
+		int tempYear = tempDate / 10000;
+		if (tempYear < 1000) {
+			aText.append(tempYear < 10 ? "000" : tempYear < 100 ? "00" : "0");
+		}
+		return aText.append(tempYear);
+	}
+
+	/**
+	 * Appends HH:mm
+	 */
+	public static StringBuilder appendTime(StringBuilder aText, long aTime) {
+		int tempMinuteOfDay = (int) Math.floorMod(getLocalTime(aTime), MILLIS_PER_DAY) / (int) MILLIS_PER_MINUTE;
+		append2(aText, tempMinuteOfDay / 60).append(':');
+		return append2(aText, tempMinuteOfDay % 60);
+	}
+
+	/**
+	 * "dd.MM.yyyy", lenient like SimpleDateFormat for day and month (31.02. is
+	 * 03.03.).
+	 *
+	 * @return midnight or Long.MIN_VALUE if not exactly this format
+	 */
+	public static long parseDate(CharSequence aText) {
+		if (aText.length() != 10 || aText.charAt(2) != '.' || aText.charAt(5) != '.') {
+			return Long.MIN_VALUE;
+		}
+		int tempDay = digits(aText, 0, 2);
+		int tempMonth = digits(aText, 3, 5);
+		int tempYear = digits(aText, 6, 10);
+		if (tempDay < 0 || tempMonth < 0 || tempYear < 0) {
+			return Long.MIN_VALUE;
+		}
+		return LocalDate.of(tempYear, 1, 1).plusMonths(tempMonth - 1L).plusDays(tempDay - 1L).atStartOfDay(ZONE_ID)
+				.toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Same as the lenient SimpleDateFormat("HH:mm") for a token without blanks:
+	 * "11:00h" is 11:00, "25:00" is 01:00, "11:75" is 12:15.
+	 *
+	 * @return minutes of the day or -1 if not a time
+	 */
+	public static int parseTime(CharSequence aText) {
+		return parseTime(aText, 0, aText.length());
+	}
+
+	/**
+	 * parseTime of aText[aStart, anEnd)
+	 */
+	public static int parseTime(CharSequence aText, int aStart, int anEnd) {
+		int tempLength = anEnd;
+		int tempPos = aStart;
+		int tempHours = 0;
+		while (tempPos < tempLength && isDigit(aText.charAt(tempPos))) {
+			tempHours = (tempHours * 10 + aText.charAt(tempPos) - '0') % 24;
+			tempPos++;
+		}
+		if (tempPos == aStart || tempPos >= tempLength || aText.charAt(tempPos) != ':') {
+			return -1;
+		}
+		tempPos++;
+		boolean tempNegative = tempPos < tempLength && aText.charAt(tempPos) == '-';
+		if (tempNegative) {
+			tempPos++;
+		}
+		int tempMinutesStart = tempPos;
+		int tempMinutes = 0;
+		while (tempPos < tempLength && isDigit(aText.charAt(tempPos))) {
+			tempMinutes = (tempMinutes * 10 + aText.charAt(tempPos) - '0') % MINUTES_PER_DAY;
+			tempPos++;
+		}
+		if (tempPos == tempMinutesStart) {
+			return -1;
+		}
+		return Math.floorMod(tempHours * 60 + (tempNegative ? -tempMinutes : tempMinutes), MINUTES_PER_DAY);
+	}
+
+	private static boolean isDigit(char aChar) {
+		return aChar >= '0' && aChar <= '9';
+	}
+
+	private static int digits(CharSequence aText, int aStart, int anEnd) {
+		int tempValue = 0;
+		for (int i = aStart; i < anEnd; i++) {
+			char tempChar = aText.charAt(i);
+			if (!isDigit(tempChar)) {
+				return -1;
+			}
+			tempValue = tempValue * 10 + (tempChar - '0');
+		}
+		return tempValue;
+	}
+
+	static TimeZone getTimeZone() {
+		return TIME_ZONE;
+	}
+
+	private static long getLocalTime(long aTime) {
+		return aTime + TIME_ZONE.getOffset(aTime);
+	}
+
+	private static long getEpochDay(long aTime) {
+		return Math.floorDiv(getLocalTime(aTime), MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Days to the proleptic gregorian calendar (as LocalDate.ofEpochDay)
+	 *
+	 * @return yyyyMMdd
+	 */
+	private static int toYearMonthDay(long anEpochDay) {
+		// http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+		long tempDays = anEpochDay + 719468;
+		long tempEra = Math.floorDiv(tempDays, 146097);
+		long tempDayOfEra = tempDays - tempEra * 146097;
+		long tempYearOfEra = (tempDayOfEra - tempDayOfEra / 1460 + tempDayOfEra / 36524 - tempDayOfEra / 146096) / 365;
+		long tempDayOfYear = tempDayOfEra - (365 * tempYearOfEra + tempYearOfEra / 4 - tempYearOfEra / 100);
+		long tempMonthIndex = (5 * tempDayOfYear + 2) / 153;
+		int tempDay = (int) (tempDayOfYear - (153 * tempMonthIndex + 2) / 5 + 1);
+		int tempMonth = (int) (tempMonthIndex < 10 ? tempMonthIndex + 3 : tempMonthIndex - 9);
+		int tempYear = (int) (tempYearOfEra + tempEra * 400 + (tempMonth <= 2 ? 1 : 0));
+		return tempYear * 10000 + tempMonth * 100 + tempDay;
+	}
+
+	private static StringBuilder append2(StringBuilder aText, int aValue) {
+		return aText.append((char) ('0' + aValue / 10)).append((char) ('0' + aValue % 10));
+	}
+}
@@ -1,13 +1,8 @@
 package de.quaddy_services.deadlinereminder;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
-import java.util.StringTokenizer;
+import java.util.Objects;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
@@ -21,76 +16,172 @@ public class Deadline {
 		super();
 	}
 
-	private Date when;
+	/**
+	 * An occurrence of aRecurrence: the texts and the repeating date are not
+	 * stored but taken from aRecurrence.
+	 *
+	 * @param aWhen        midnight
+	 * @param aMinutes     the time of day, -1 for a whole day event
+	 * @param anEndMinutes the end time, -1 for none
+	 */
+	Deadline(Recurrence aRecurrence, long aWhen, int aMinutes, int anEndMinutes) {
+		super();
+		recurrence = aRecurrence;
+		when = aWhen;
+		if (aMinutes >= 0) {
+			setTime(aMinutes, anEndMinutes);
+		}
+		updateWholeDay();
+		updateTextKey();
+	}
+
+	/**
+	 * Copy of aDeadline, e.g. for cached deadlines.
+	 */
+	public Deadline(Deadline aDeadline) {
+		super();
+		when = aDeadline.when;
+		whenEndTime = aDeadline.whenEndTime;
+		info = aDeadline.info;
+		textWithoutRepeatingInfo = aDeadline.textWithoutRepeatingInfo;
+		id = aDeadline.id;
+		flags = aDeadline.flags;
+		wholeDay = aDeadline.wholeDay;
+		textKey = aDeadline.textKey;
+		recurrence = aDeadline.recurrence;
+	}
+
+	/**
+	 * A null Date. The dates are kept as millis instead of Date objects: there
+	 * are many repeating deadlines.
+	 */
+	private static final long NONE = Long.MIN_VALUE;
+
+	private static final byte DONE = 1;
+	private static final byte DELETED = 2;
+	/**
+	 * is from termin-added-by-google.txt
+	 */
+	private static final byte ADDED_BY_GOOGLE = 4;
+
+	private long when = NONE;
 	/**
 	 * Same date as {@link #when} but different time.
 	 */
-	private Date whenEndTime;
+	private long whenEndTime = NONE;
+	/**
+	 * null for the occurrences of a recurrence, see getInfo
+	 */
 	private String info;
-	private boolean done;
-	private Date repeating;
 	private String textWithoutRepeatingInfo;
 	private String id;
-	private boolean deleted;
+	private byte flags;
 	/**
-	 * is from termin-added-by-google.txt
+	 * {@link #wholeDay} and {@link #textKey} are computed when when or the text
+	 * is set, so the getters only read (e.g. from the gui and GoogleSync).
+	 */
+	private boolean wholeDay;
+	/**
+	 * The first 4 chars of getTextWithoutRepeatingInfo, for DeadlineComparator
 	 */
-	private boolean addedByGoogle;
+	private long textKey;
+	/**
+	 * The rule of a repeating termin.txt line, null for single deadlines.
+	 */
+	private Recurrence recurrence;
+
+	private static Date toDate(long aTime) {
+		return aTime == NONE ? null : new Date(aTime);
+	}
 
+	private static long toTime(Date aDate) {
+		return aDate == null ? NONE : aDate.getTime();
+	}
+
+	private boolean isFlag(byte aFlag) {
+		return (flags & aFlag) != 0;
+	}
+
+	private void setFlag(byte aFlag, boolean aValue) {
+		if (aValue) {
+			flags |= aFlag;
+		} else {
+			flags &= ~aFlag;
+		}
+	}
+
+	/**
+	 * @return a new Date, changing it does not change this deadline
+	 */
 	public Date getWhen() {
-		return when;
+		return toDate(when);
 	}
 
 	public void setWhen(Date when) {
-		this.when = when;
+		this.when = toTime(when);
+		updateWholeDay();
+	}
+
+	/**
+	 * @return getWhen().getTime() without a Date, Long.MIN_VALUE if not set
+	 */
+	public long getWhenMillis() {
+		return when;
 	}
 
 	public String getInfo() {
+		if (info == null && recurrence != null) {
+			return recurrence.getOccurrenceInfo();
+		}
 		return info;
 	}
 
 	public void setInfo(String info) {
 		this.info = info.trim();
+		updateTextKey();
 	}
 
 	public boolean isDone() {
-		return done;
+		return isFlag(DONE);
 	}
 
 	public void setDone(boolean done) {
-		this.done = done;
+		setFlag(DONE, done);
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("Deadline [");
-		if (when != null) {
+		if (when != NONE) {
 			builder.append("when=");
-			builder.append(when);
+			builder.append(getWhen());
 			builder.append(", ");
 		}
-		if (whenEndTime != null) {
+		if (whenEndTime != NONE) {
 			builder.append("whenEndTime=");
-			builder.append(whenEndTime);
+			builder.append(getWhenEndTime());
 			builder.append(", ");
 		}
-		if (info != null) {
+		String tempInfo = getInfo();
+		if (tempInfo != null) {
 			builder.append("info=");
-			builder.append(info);
+			builder.append(tempInfo);
 			builder.append(", ");
 		}
 		builder.append("done=");
-		builder.append(done);
+		builder.append(isDone());
 		builder.append(", ");
-		if (repeating != null) {
+		Date tempRepeating = getRepeating();
+		if (tempRepeating != null) {
 			builder.append("repeating=");
-			builder.append(repeating);
+			builder.append(tempRepeating);
 			builder.append(", ");
 		}
-		if (textWithoutRepeatingInfo != null) {
+		String tempText = getTextWithoutRepeatingInfo();
+		if (tempText != tempInfo) {
 			builder.append("textWithoutRepeatingInfo=");
-			builder.append(textWithoutRepeatingInfo);
+			builder.append(tempText);
 			builder.append(", ");
 		}
 		if (id != null) {
@@ -99,9 +190,9 @@ public class Deadline {
 			builder.append(", ");
 		}
 		builder.append("deleted=");
-		builder.append(deleted);
+		builder.append(isDeleted());
 		builder.append(", addedByGoogle=");
-		builder.append(addedByGoogle);
+		builder.append(isAddedByGoogle());
 		builder.append("]");
 		return builder.toString();
 	}
@@ -113,8 +204,10 @@ public class Deadline {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((info == null) ? 0 : info.hashCode());
-		result = prime * result + ((when == null) ? 0 : when.hashCode());
+		String tempInfo = getInfo();
+		result = prime * result + ((tempInfo == null) ? 0 : tempInfo.hashCode());
+		// same as Date.hashCode
+		result = prime * result + ((when == NONE) ? 0 : Long.hashCode(when));
 		return result;
 	}
 
@@ -133,34 +226,46 @@ public class Deadline {
 			return false;
 		}
 		Deadline other = (Deadline) obj;
-		if (info == null) {
-			if (other.info != null) {
+		String tempInfo = getInfo();
+		String tempOtherInfo = other.getInfo();
+		if (tempInfo == null) {
+			if (tempOtherInfo != null) {
 				return false;
 			}
-		} else if (other.info != null && !info.equals(other.info)) {
+		} else if (tempOtherInfo != null && !tempInfo.equals(tempOtherInfo)) {
 			return false;
 		}
-		if (when == null) {
-			if (other.when != null) {
-				return false;
-			}
-		} else if (!when.equals(other.when)) {
+		if (when != other.when) {
 			return false;
 		}
 		return true;
 	}
 
-	public Date getRepeating() {
-		return repeating;
+	/**
+	 * @return true if all fields except done, deleted and the recurrence are
+	 *         equal
+	 */
+	boolean isSameContent(Deadline anOther) {
+		return when == anOther.when && whenEndTime == anOther.whenEndTime
+				&& Objects.equals(getRepeating(), anOther.getRepeating())
+				&& isAddedByGoogle() == anOther.isAddedByGoogle() && Objects.equals(getInfo(), anOther.getInfo())
+				&& Objects.equals(getTextWithoutRepeatingInfo(), anOther.getTextWithoutRepeatingInfo())
+				&& Objects.equals(id, anOther.id);
 	}
 
-	public void setRepeating(Date aRepeating) {
-		repeating = aRepeating;
+	/**
+	 * @return the start of a yearly recurrence (e.g. the birthday), else null
+	 */
+	public Date getRepeating() {
+		if (recurrence != null && recurrence.getUnit() == Calendar.YEAR) {
+			return recurrence.getStart();
+		}
+		return null;
 	}
 
 	public void setTextWithoutRepeatingInfo(String aTextWithoutRepeatingInfo) {
 		textWithoutRepeatingInfo = aTextWithoutRepeatingInfo;
-
+		updateTextKey();
 	}
 
 	/**
@@ -168,6 +273,9 @@ public class Deadline {
 	 */
 	public final String getTextWithoutRepeatingInfo() {
 		if (textWithoutRepeatingInfo == null) {
+			if (info == null && recurrence != null) {
+				return recurrence.getOccurrenceTextWithoutRepeatingInfo();
+			}
 			return getInfo();
 		}
 		return textWithoutRepeatingInfo;
@@ -188,90 +296,148 @@ public class Deadline {
 		id = aId;
 	}
 
+	/**
+	 * @return true if when is 00:00 (seconds are ignored)
+	 */
 	public boolean isWholeDayEvent() {
-		//TODO replace by boolean
-		Calendar tempCal = Calendar.getInstance();
-		tempCal.setTime(getWhen());
-		boolean tempIsWholeDayEvent = tempCal.get(Calendar.HOUR_OF_DAY) == 0 && tempCal.get(Calendar.MINUTE) == 0;
+		return wholeDay;
+	}
 
-		return tempIsWholeDayEvent;
+	private void updateWholeDay() {
+		long tempLocalTime = when + TIME_ZONE.getOffset(when);
+		wholeDay = when != NONE && Math.floorMod(tempLocalTime, MILLIS_PER_DAY) < MILLIS_PER_MINUTE;
 	}
 
-	private static DateFormat timeFormat = new SimpleDateFormat("HH:mm");
+	/**
+	 * The first 4 chars of getTextWithoutRepeatingInfo, 16 bits each: an
+	 * unsigned compare of two keys is the same as String.compareTo of the texts
+	 * unless they are equal.
+	 */
+	long getTextKey() {
+		return textKey;
+	}
+
+	private void updateTextKey() {
+		String tempText = getTextWithoutRepeatingInfo();
+		long tempKey = 0;
+		for (int i = 0; i < 4; i++) {
+			tempKey = tempKey << 16 | (tempText != null && i < tempText.length() ? tempText.charAt(i) : 0);
+		}
+		textKey = tempKey;
+	}
 
 	/**
 	 * Try to add a time. e.g. *1w 17:00 David Nachhilfe
 	 *
-	 * @param aDate
-	 * @param aInfo
-	 * @return
+	 * Scans the first two words (separated by '*', ' ' or '-') of
+	 * getTextWithoutRepeatingInfo: a first word like "17:00" is the time, a
+	 * second one the end time. Both are removed from info and
+	 * textWithoutRepeatingInfo.
 	 */
 	public void extractTimeFromInfo() {
-		//		private Date addTime(Date aDate, String aInfo) {
-		String tempInfo = getTextWithoutRepeatingInfo();
-		StringTokenizer tempTokens = new StringTokenizer(tempInfo, "* -");
-		List<String> tempTimeTokens = new ArrayList<>();
-		// consider first token only.
-		if (tempTokens.hasMoreTokens()) {
-			String tempToken = tempTokens.nextToken();
-			if (tempToken.length() > 3 && Character.isDigit(tempToken.charAt(0))) {
-				try {
-					Date tempTime;
-					tempTime = timeFormat.parse(tempToken);
-					// found a valid time
-
-					tempTimeTokens.add(tempToken);
-
-					Date tempDateWithoutTime = getWhen();
-					Calendar tempCal = Calendar.getInstance();
-					tempCal.setTime(tempDateWithoutTime);
-					Calendar tempTimeCal = Calendar.getInstance();
-					tempTimeCal.setTime(tempTime);
-					tempCal.add(Calendar.HOUR_OF_DAY, tempTimeCal.get(Calendar.HOUR_OF_DAY));
-					tempCal.add(Calendar.MINUTE, tempTimeCal.get(Calendar.MINUTE));
-					Date tempDateWithTime = tempCal.getTime();
-					// Correct daylight savings
-					int tempAmountTimeOffset = getZoneOffset(tempDateWithoutTime.getTime()) - getZoneOffset(tempDateWithTime.getTime());
-					tempCal.add(Calendar.MILLISECOND, tempAmountTimeOffset);
-					tempDateWithTime = tempCal.getTime();
-					setWhen(tempDateWithTime);
-
-					if (tempTokens.hasMoreTokens()) {
-						// Maybe end-time?
-						tempToken = tempTokens.nextToken();
-						try {
-							tempTime = timeFormat.parse(tempToken);
-
-							// found a valid end time
-							tempTimeTokens.add(tempToken);
-
-							tempCal = Calendar.getInstance();
-							tempCal.setTime(tempDateWithoutTime);
-							tempTimeCal = Calendar.getInstance();
-							tempTimeCal.setTime(tempTime);
-							tempCal.add(Calendar.HOUR_OF_DAY, tempTimeCal.get(Calendar.HOUR_OF_DAY));
-							tempCal.add(Calendar.MINUTE, tempTimeCal.get(Calendar.MINUTE));
-							Date tempDateWithEndTime = tempCal.getTime();
-							setWhenEndTime(tempDateWithEndTime);
-
-						} catch (ParseException e) {
-							// ignore
-						} catch (RuntimeException e) {
-							LOGGER.error("Ok?", e);
-						}
-
-					}
-
-					removeTimeTokens(tempTimeTokens);
-					return;
-				} catch (ParseException e) {
-					// ignore
-				} catch (RuntimeException e) {
-					LOGGER.error("Ok?", e);
-				}
+		String tempText = getTextWithoutRepeatingInfo();
+		try {
+			int[] tempTimes = scanTimes(tempText);
+			if (tempTimes == null || when == NONE) {
+				// not a time
+				return;
 			}
+			int tempStart = tempTimes[0];
+			int tempEnd = tempTimes[1];
+			int tempEndTimeStart = tempTimes[3];
+			int tempEndTimeEnd = tempTimes[4];
+			setTime(tempTimes[2], tempTimes[5]);
+			updateWholeDay();
+
+			String tempInfo = removeTimeToken(getInfo(), tempText, tempStart, tempEnd);
+			info = removeTimeToken(tempInfo, tempText, tempEndTimeStart, tempEndTimeEnd);
+			if (textWithoutRepeatingInfo != null) {
+				String tempNewText = removeTimeToken(textWithoutRepeatingInfo, tempText, tempStart, tempEnd);
+				textWithoutRepeatingInfo = removeTimeToken(tempNewText, tempText, tempEndTimeStart, tempEndTimeEnd);
+			}
+			updateTextKey();
+		} catch (RuntimeException e) {
+			LOGGER.error("Ok?", e);
 		}
+	}
 
+	/**
+	 * @param aMinutes    added to when (midnight)
+	 * @param anEndMinutes -1 for no end time
+	 */
+	private void setTime(int aMinutes, int anEndMinutes) {
+		long tempDateWithoutTime = when;
+		long tempDateWithTime = tempDateWithoutTime + aMinutes * MILLIS_PER_MINUTE;
+		// Correct daylight savings
+		tempDateWithTime += getZoneOffset(tempDateWithoutTime) - getZoneOffset(tempDateWithTime);
+		when = tempDateWithTime;
+		if (anEndMinutes >= 0) {
+			whenEndTime = tempDateWithoutTime + anEndMinutes * MILLIS_PER_MINUTE;
+		}
+	}
+
+	/**
+	 * The time and the end time extractTimeFromInfo takes from aText
+	 *
+	 * @return {minutes, end minutes}, -1 for none
+	 */
+	static int[] parseTimes(String aText) {
+		int[] tempTimes = scanTimes(aText);
+		if (tempTimes == null) {
+			return new int[] { -1, -1 };
+		}
+		return new int[] { tempTimes[2], tempTimes[5] };
+	}
+
+	/**
+	 * @return {start, end, minutes} of the time and {start, end, minutes} of
+	 *         the end time (an empty range at the end of the time word and -1
+	 *         minutes if none), null if aText does not start with a time
+	 */
+	private static int[] scanTimes(String aText) {
+		int tempStart = skipDelimiters(aText, 0);
+		int tempEnd = skipWord(aText, tempStart);
+		if (tempEnd - tempStart <= 3 || !Character.isDigit(aText.charAt(tempStart))) {
+			return null;
+		}
+		int tempMinutes = DateTimeCodec.parseTime(aText, tempStart, tempEnd);
+		if (tempMinutes < 0) {
+			return null;
+		}
+		// Maybe end-time?
+		int tempEndTimeStart = skipDelimiters(aText, tempEnd);
+		int tempEndTimeEnd = skipWord(aText, tempEndTimeStart);
+		int tempEndMinutes = -1;
+		if (tempEndTimeStart < aText.length()) {
+			tempEndMinutes = DateTimeCodec.parseTime(aText, tempEndTimeStart, tempEndTimeEnd);
+		}
+		if (tempEndMinutes < 0) {
+			tempEndTimeStart = tempEndTimeEnd;
+		}
+		return new int[] { tempStart, tempEnd, tempMinutes, tempEndTimeStart, tempEndTimeEnd, tempEndMinutes };
+	}
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+	private static boolean isDelimiter(char aChar) {
+		return aChar == '*' || aChar == ' ' || aChar == '-';
+	}
+
+	private static int skipDelimiters(String aText, int aPos) {
+		int tempPos = aPos;
+		while (tempPos < aText.length() && isDelimiter(aText.charAt(tempPos))) {
+			tempPos++;
+		}
+		return tempPos;
+	}
+
+	private static int skipWord(String aText, int aPos) {
+		int tempPos = aPos;
+		while (tempPos < aText.length() && !isDelimiter(aText.charAt(tempPos))) {
+			tempPos++;
+		}
+		return tempPos;
 	}
 
 	/**
@@ -281,69 +447,97 @@ public class Deadline {
 		return TIME_ZONE.getOffset(aTime);
 	}
 
-	private void removeTimeTokens(List<String> aTokens) {
-		for (String tempToken : aTokens) {
-			String tempInfo = getInfo();
-			int tempPos = tempInfo.indexOf(tempToken);
-			if (tempPos >= 0) {
-				String tempStringUpToPos = tempInfo.substring(0, tempPos);
-				if (tempStringUpToPos.endsWith("-")) {
-					tempStringUpToPos = tempStringUpToPos.substring(0, tempStringUpToPos.length() - 1);
-				} else if (tempStringUpToPos.endsWith("- ")) {
-					tempStringUpToPos = tempStringUpToPos.substring(0, tempStringUpToPos.length() - 2);
-				}
-				String tempNewInfo = tempStringUpToPos + tempInfo.substring(tempPos + tempToken.length()).trim();
-				tempNewInfo = tempNewInfo.trim();
-				setInfo(tempNewInfo);
-
+	/**
+	 * Removes the first occurrence of aSource[aTokenStart, aTokenEnd) in aText
+	 * with a "-" or "- " before it and trims, in one allocation.
+	 */
+	private static String removeTimeToken(String aText, String aSource, int aTokenStart, int aTokenEnd) {
+		int tempTokenLength = aTokenEnd - aTokenStart;
+		if (tempTokenLength == 0) {
+			return aText;
+		}
+		int tempPos = indexOf(aText, aSource, aTokenStart, tempTokenLength);
+		if (tempPos < 0) {
+			return aText;
+		}
+		int tempPrefixEnd = tempPos;
+		if (tempPos >= 1 && aText.charAt(tempPos - 1) == '-') {
+			tempPrefixEnd = tempPos - 1;
+		} else if (tempPos >= 2 && aText.charAt(tempPos - 1) == ' ' && aText.charAt(tempPos - 2) == '-') {
+			tempPrefixEnd = tempPos - 2;
+		}
+		int tempSuffixStart = tempPos + tempTokenLength;
+		int tempSuffixEnd = aText.length();
+		while (tempSuffixStart < tempSuffixEnd && aText.charAt(tempSuffixStart) <= ' ') {
+			tempSuffixStart++;
+		}
+		while (tempSuffixEnd > tempSuffixStart && aText.charAt(tempSuffixEnd - 1) <= ' ') {
+			tempSuffixEnd--;
+		}
+		int tempPrefixStart = 0;
+		while (tempPrefixStart < tempPrefixEnd && aText.charAt(tempPrefixStart) <= ' ') {
+			tempPrefixStart++;
+		}
+		if (tempSuffixStart == tempSuffixEnd) {
+			while (tempPrefixEnd > tempPrefixStart && aText.charAt(tempPrefixEnd - 1) <= ' ') {
+				tempPrefixEnd--;
 			}
+			return aText.substring(tempPrefixStart, tempPrefixEnd);
 		}
-		for (String tempToken : aTokens) {
-			String tempTextWithoutRepeatingInfo = textWithoutRepeatingInfo;
-			if (tempTextWithoutRepeatingInfo != null) {
-				int tempPos2 = tempTextWithoutRepeatingInfo.indexOf(tempToken);
-				if (tempPos2 >= 0) {
-					String tempStringUpToPos = tempTextWithoutRepeatingInfo.substring(0, tempPos2);
-					if (tempStringUpToPos.endsWith("-")) {
-						tempStringUpToPos = tempStringUpToPos.substring(0, tempStringUpToPos.length() - 1);
-					} else if (tempStringUpToPos.endsWith("- ")) {
-						tempStringUpToPos = tempStringUpToPos.substring(0, tempStringUpToPos.length() - 2);
-					}
-					String tempNewTextWithoutRepeatingInfo = tempStringUpToPos + tempTextWithoutRepeatingInfo.substring(tempPos2 + tempToken.length()).trim();
-					tempNewTextWithoutRepeatingInfo = tempNewTextWithoutRepeatingInfo.trim();
-					setTextWithoutRepeatingInfo(tempNewTextWithoutRepeatingInfo);
-				}
+		if (tempPrefixStart == tempPrefixEnd) {
+			return aText.substring(tempSuffixStart, tempSuffixEnd);
+		}
+		return new StringBuilder(tempPrefixEnd - tempPrefixStart + tempSuffixEnd - tempSuffixStart)
+				.append(aText, tempPrefixStart, tempPrefixEnd).append(aText, tempSuffixStart, tempSuffixEnd).toString();
+	}
+
+	/**
+	 * String.indexOf for aSource[aStart, aStart + aLength)
+	 */
+	private static int indexOf(String aText, String aSource, int aStart, int aLength) {
+		for (int i = 0; i + aLength <= aText.length(); i++) {
+			if (aText.regionMatches(i, aSource, aStart, aLength)) {
+				return i;
 			}
 		}
+		return -1;
 	}
 
 	/**
 	 * @return the whenEndTime
 	 */
 	public final Date getWhenEndTime() {
-		return whenEndTime;
+		return toDate(whenEndTime);
 	}
 
 	/**
 	 * @param aWhenEndTime the whenEndTime to set
 	 */
 	public final void setWhenEndTime(Date aWhenEndTime) {
-		whenEndTime = aWhenEndTime;
+		whenEndTime = toTime(aWhenEndTime);
 	}
 
 	public void setDeleted(boolean aDeletedFlag) {
-		deleted = aDeletedFlag;
+		setFlag(DELETED, aDeletedFlag);
 	}
 
 	public boolean isDeleted() {
-		return deleted;
+		return isFlag(DELETED);
 	}
 
 	public void setAddedByGoogle(boolean anAddedByGoogle) {
-		addedByGoogle = anAddedByGoogle;
+		setFlag(ADDED_BY_GOOGLE, anAddedByGoogle);
 	}
 
 	public boolean isAddedByGoogle() {
-		return addedByGoogle;
+		return isFlag(ADDED_BY_GOOGLE);
+	}
+
+	public Recurrence getRecurrence() {
+		return recurrence;
+	}
+
+	public void setRecurrence(Recurrence aRecurrence) {
+		recurrence = aRecurrence;
 	}
 }
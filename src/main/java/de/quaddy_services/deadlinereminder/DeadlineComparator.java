@@ -4,11 +4,18 @@ import java.util.Comparator;
 
 public class DeadlineComparator implements Comparator<Deadline> {
 
+	/**
+	 * Compares the primitive keys of the deadlines first, the texts only if
+	 * their first 4 chars are equal.
+	 */
 	@Override
 	public int compare(Deadline o1, Deadline o2) {
-		int tempCompareTo = o1.getWhen().compareTo(o2.getWhen());
+		int tempCompareTo = Long.compare(o1.getWhenMillis(), o2.getWhenMillis());
 		if (tempCompareTo == 0) {
-			return o1.getTextWithoutRepeatingInfo().compareTo(o2.getTextWithoutRepeatingInfo());
+			tempCompareTo = Long.compareUnsigned(o1.getTextKey(), o2.getTextKey());
+			if (tempCompareTo == 0) {
+				return o1.getTextWithoutRepeatingInfo().compareTo(o2.getTextWithoutRepeatingInfo());
+			}
 		}
 		return tempCompareTo;
 	}
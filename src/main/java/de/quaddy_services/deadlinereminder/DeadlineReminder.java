@@ -14,9 +14,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -27,7 +31,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.quaddy_services.deadlinereminder.extern.GoogleSync;
+import de.quaddy_services.deadlinereminder.file.FileChangeListener;
+import de.quaddy_services.deadlinereminder.file.FileFingerprint;
 import de.quaddy_services.deadlinereminder.file.FileStorage;
+import de.quaddy_services.deadlinereminder.file.FileWatcher;
 import de.quaddy_services.deadlinereminder.gui.DeadlineGui;
 
 public class DeadlineReminder {
@@ -52,8 +59,17 @@ public class DeadlineReminder {
 	}
 
 	private Model model;
+	/**
+	 * One storage for all reloads, unchanged files are not parsed again.
+	 */
+	private final Storage storage = new CachingStorage(new FileStorage());
 	private Logger LOGGER = LoggerFactory.getLogger(DeadlineReminder.class);
 	private GoogleSync googleSync;
+	private FileWatcher fileWatcher;
+	/**
+	 * The files as saveModel wrote them, their watcher events are no change
+	 */
+	private final Map<String, FileFingerprint> savedFingerprints = new HashMap<>();
 	private DeadlineGui gui;
 
 	protected void mainEventQueue() {
@@ -66,9 +82,9 @@ public class DeadlineReminder {
 
 			googleSync.setLogListener(new StatusLogListener(gui));
 
-			googleSync.pushToGoogle(model.getOpenDeadlines(), gui.createDoneSelectionListener());
-
+			// the rows must exist before GoogleSync marks deadlines done
 			gui.setModel(model);
+			googleSync.pushToGoogle(model.getOpenDeadlines(), gui.createDoneSelectionListener());
 			gui.setModelLoaderMustBeReleadedListener(new ModelLoaderMustBeReleadedListener() {
 
 				@Override
@@ -109,11 +125,61 @@ public class DeadlineReminder {
 			});
 			tempTimer.setRepeats(true);
 			tempTimer.start();
+			startFileWatcher();
 		} catch (Exception e) {
 			LOGGER.error("Error", e);
 		}
 	}
 
+	/**
+	 * Reload as soon as a file was saved, not only every 10 minutes.
+	 */
+	private void startFileWatcher() throws IOException {
+		Set<String> tempFileNames = new HashSet<>();
+		File tempDirectory = null;
+		for (File tempFile : storage.getSourceFiles()) {
+			tempFileNames.add(tempFile.getName());
+			tempDirectory = tempFile.getParentFile();
+		}
+		if (tempDirectory == null) {
+			return;
+		}
+		fileWatcher = new FileWatcher(tempDirectory, tempFileNames, FileWatcher.DEBOUNCE_MILLIS,
+				new FileChangeListener() {
+					@Override
+					public void filesChanged(final Set<String> aFileNames) {
+						model.submit(new Runnable() {
+							@Override
+							public void run() {
+								fileChanged(aFileNames);
+							}
+						});
+					}
+				});
+		fileWatcher.start();
+	}
+
+	/**
+	 * The other files are written by DeadlineReminder itself, only a changed
+	 * termin.txt must be synced to Google at once.
+	 */
+	private void fileChanged(Set<String> aFileNames) {
+		Set<String> tempChanged = new TreeSet<>();
+		for (String tempFileName : aFileNames) {
+			if (!isSaved(tempFileName)) {
+				tempChanged.add(tempFileName);
+			}
+		}
+		if (tempChanged.isEmpty()) {
+			LOGGER.debug("Saved by DeadlineReminder: " + aFileNames);
+			return;
+		}
+		reloadModel();
+		if (tempChanged.contains(FileStorage.TERMIN_TXT)) {
+			googleSync.pushToGoogle(model.getOpenDeadlines(), gui.createDoneSelectionListener());
+		}
+	}
+
 	private Image loadIcon() throws IOException {
 		InputStream tempIn = getClass().getClassLoader().getResourceAsStream("logo.jpg");
 		BufferedImage tempIO = ImageIO.read(tempIn);
@@ -123,25 +189,34 @@ public class DeadlineReminder {
 	}
 
 	private Model createModel() {
+		final Model tempModel = new Model();
+		tempModel.setOpenDeadlines(loadOpenDeadlines());
+		tempModel.setSourceInfo(storage.getSourceInfo());
+		return tempModel;
+	}
+
+	private List<Deadline> loadOpenDeadlines() {
 		Calendar tempCal = Calendar.getInstance();
 		// Date tempFrom = tempCal.getTime();
 		tempCal.add(Calendar.DAY_OF_YEAR, 400);
 		Date tempTo = tempCal.getTime();
-		Storage tempStorage = new FileStorage();
-		List<Deadline> tempDeadlines = tempStorage.getOpenDeadlines(tempTo);
-		Collections.sort(tempDeadlines, new DeadlineComparator());
+		List<Deadline> tempDeadlines = storage.getOpenDeadlines(tempTo);
 		// for (Deadline tempDeadline : tempDeadlines) {
 		// System.out.println(tempDeadline);
 		// }
 		LOGGER.debug(new Date() + ": Found " + tempDeadlines.size() + " deadlines");
-		final Model tempModel = new Model();
-		tempModel.setSourceInfo(tempStorage.getSourceInfo());
-		tempModel.setOpenDeadlines(tempDeadlines);
-		return tempModel;
+		return tempDeadlines;
 	}
 
 	private void exit() {
 		LOGGER.info("exit");
+		if (fileWatcher != null) {
+			try {
+				fileWatcher.close();
+			} catch (IOException e) {
+				LOGGER.error("Error", e);
+			}
+		}
 		saveModel();
 		exitApplicationNow();
 	}
@@ -161,7 +236,7 @@ public class DeadlineReminder {
 
 	private synchronized void saveModel() {
 		LOGGER.info(new Date() + ":SaveModel");
-		Storage tempFileStorage = new FileStorage();
+		Storage tempFileStorage = storage;
 		tempFileStorage.saveConfirmedTasks(model.getOpenDeadlines());
 		try {
 			List<Deadline> tempAddedFromGoogle = new ArrayList<>(model.getAddedFromGoogle());
@@ -177,6 +252,45 @@ public class DeadlineReminder {
 		} catch (IOException e) {
 			throw new RuntimeException("Error", e);
 		}
+		tempFileStorage.maintain();
+		rememberSavedFiles();
+	}
+
+	/**
+	 * termin.txt is only written by the user.
+	 */
+	private synchronized void rememberSavedFiles() {
+		for (File tempFile : storage.getSourceFiles()) {
+			if (!FileStorage.TERMIN_TXT.equals(tempFile.getName())) {
+				try {
+					savedFingerprints.put(tempFile.getName(), FileFingerprint.of(tempFile));
+				} catch (IOException e) {
+					LOGGER.error("Error", e);
+					savedFingerprints.remove(tempFile.getName());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if aFileName is still as saveModel wrote it
+	 */
+	private synchronized boolean isSaved(String aFileName) {
+		FileFingerprint tempSaved = savedFingerprints.get(aFileName);
+		if (tempSaved == null) {
+			return false;
+		}
+		for (File tempFile : storage.getSourceFiles()) {
+			if (tempFile.getName().equals(aFileName)) {
+				try {
+					return tempSaved.isUnchanged(tempFile);
+				} catch (IOException e) {
+					LOGGER.error("Error", e);
+					return false;
+				}
+			}
+		}
+		return false;
 	}
 
 	private void every10Minutes() {
@@ -203,9 +317,11 @@ public class DeadlineReminder {
 			if (tempDoneAvailable || !model.getAddedFromGoogle().isEmpty() || !model.getRemovedFromGoogle().isEmpty()) {
 				saveModel();
 			}
-			model = createModel();
+			// only the changed deadlines are sorted in and get a new row
+			ModelDelta tempDelta = model.update(loadOpenDeadlines());
+			model.setSourceInfo(storage.getSourceInfo());
 
-			gui.setModel(model);
+			gui.applyDelta(tempDelta);
 			gui.invalidate();
 			gui.validate();
 			gui.invalidate();
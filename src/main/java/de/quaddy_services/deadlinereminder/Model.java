@@ -1,21 +1,374 @@
 package de.quaddy_services.deadlinereminder;
 
+import java.awt.EventQueue;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
+/**
+ * Changed by one writer only: the commands submitted from any thread run one
+ * after the other on the writer (the event dispatch thread). Every change
+ * publishes a new ModelSnapshot, readers use the snapshot without a lock. The
+ * snapshot has copies of the open deadlines, as the writer changes its
+ * instances (e.g. done). A few changes are applied to the list of the last
+ * snapshot copy on write (see ChunkedList), only more changes copy all open
+ * deadlines into a new list.
+ */
 public class Model {
-	private List<Deadline> openDeadlines;
+	/**
+	 * The open deadlines sorted by DeadlineComparator, equal ones in the order
+	 * they were added. A reload only adds and removes the changed deadlines.
+	 */
+	private final TreeSet<Deadline> openDeadlines = new TreeSet<>(this::compare);
+	private final Map<Deadline, Long> sequence = new IdentityHashMap<>();
+	private final DeadlineComparator comparator = new DeadlineComparator();
+	private long nextSequence;
+	/**
+	 * The open deadlines by content, to find the open instance of a loaded
+	 * deadline. Open deadlines with the same content are chained.
+	 */
+	private final Map<Content, Content> contents = new HashMap<>();
+	private final Content probe = new Content(null);
+	private int updateCount;
+	/**
+	 * The copy of each open deadline in the snapshot, copied again after a
+	 * change. And the other way round, to find the instance of a copy.
+	 */
+	private final Map<Deadline, Deadline> publishedCopies = new IdentityHashMap<>();
+	private final Map<Deadline, Deadline> openByCopy = new IdentityHashMap<>();
+	/**
+	 * The copies of the open deadlines in the last snapshot
+	 */
+	private ChunkedList<Deadline> published = ChunkedList.empty();
+
 	private List<Deadline> addedFromGoogle = new ArrayList<>();
 	private List<Deadline> removedFromGoogle = new ArrayList<>();
 
 	private String sourceInfo;
 
+	private final Executor writer;
+	private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+	private volatile ModelSnapshot snapshot = new ModelSnapshot(0, published, null);
+
+	public Model() {
+		this(EventQueue::invokeLater);
+	}
+
+	/**
+	 * @param aWriter
+	 *            runs the commands, must use one thread
+	 */
+	public Model(Executor aWriter) {
+		writer = aWriter;
+	}
+
+	/**
+	 * Run aCommand on the writer, after the commands submitted before.
+	 */
+	public void submit(Runnable aCommand) {
+		commands.add(aCommand);
+		writer.execute(this::runCommands);
+	}
+
+	private void runCommands() {
+		Runnable tempCommand;
+		while ((tempCommand = commands.poll()) != null) {
+			tempCommand.run();
+		}
+	}
+
+	public ModelSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return the sorted, unmodifiable open deadlines of the current snapshot
+	 *         (copies, see getOpenInstances)
+	 */
 	public List<Deadline> getOpenDeadlines() {
-		return openDeadlines;
+		return snapshot.getOpenDeadlines();
+	}
+
+	/**
+	 * Only for the writer
+	 *
+	 * @return the sorted open instances, the gui shows these
+	 */
+	public List<Deadline> getOpenInstances() {
+		return new ArrayList<>(openDeadlines);
+	}
+
+	/**
+	 * Only for the writer
+	 *
+	 * @return the open instance of aDeadline (e.g. a copy of a snapshot), null
+	 *         if it is not open anymore
+	 */
+	public Deadline getOpenInstance(Deadline aDeadline) {
+		if (sequence.containsKey(aDeadline)) {
+			return aDeadline;
+		}
+		Deadline tempOpen = openByCopy.get(aDeadline);
+		if (tempOpen != null) {
+			return tempOpen;
+		}
+		// a copy of an older snapshot
+		for (Deadline tempDeadline : openDeadlines) {
+			if (tempDeadline.isSameContent(aDeadline)) {
+				return tempDeadline;
+			}
+		}
+		return null;
 	}
 
 	public void setOpenDeadlines(List<Deadline> aOpenDeadlines) {
-		openDeadlines = aOpenDeadlines;
+		openDeadlines.clear();
+		sequence.clear();
+		contents.clear();
+		publishedCopies.clear();
+		openByCopy.clear();
+		for (Deadline tempDeadline : aOpenDeadlines) {
+			add(tempDeadline);
+		}
+		published = copyAll();
+		publish();
+	}
+
+	/**
+	 * Only for the writer
+	 */
+	public void setDone(Deadline anOpenDeadline, boolean aDone) {
+		if (anOpenDeadline.isDone() != aDone) {
+			anOpenDeadline.setDone(aDone);
+			if (isCopyOnWrite(1)) {
+				int tempIndex = indexOfCopy(anOpenDeadline);
+				forgetCopy(anOpenDeadline);
+				published = published.replaced(tempIndex, copy(anOpenDeadline));
+			} else {
+				forgetCopy(anOpenDeadline);
+				published = copyAll();
+			}
+			publish();
+		}
+	}
+
+	private void publish() {
+		snapshot = new ModelSnapshot(snapshot.getVersion() + 1, published, sourceInfo);
+	}
+
+	/**
+	 * Each change copies the chunk table and one chunk of the published list,
+	 * copyAll copies n references.
+	 *
+	 * @return true if aChangeCount changes copy on write are cheaper than
+	 *         copyAll
+	 */
+	private boolean isCopyOnWrite(int aChangeCount) {
+		int tempSize = published.size();
+		return (long) aChangeCount * (tempSize / ChunkedList.CHUNK_SIZE + 2 * ChunkedList.CHUNK_SIZE) < tempSize;
+	}
+
+	/**
+	 * @return the published copies of all open deadlines, a new copy for the
+	 *         changed ones
+	 */
+	private ChunkedList<Deadline> copyAll() {
+		List<Deadline> tempCopies = new ArrayList<>(openDeadlines.size());
+		for (Deadline tempDeadline : openDeadlines) {
+			Deadline tempCopy = publishedCopies.get(tempDeadline);
+			if (tempCopy == null) {
+				tempCopy = copy(tempDeadline);
+			}
+			tempCopies.add(tempCopy);
+		}
+		return ChunkedList.of(tempCopies);
+	}
+
+	private Deadline copy(Deadline anOpenDeadline) {
+		Deadline tempCopy = new Deadline(anOpenDeadline);
+		publishedCopies.put(anOpenDeadline, tempCopy);
+		openByCopy.put(tempCopy, anOpenDeadline);
+		return tempCopy;
+	}
+
+	/**
+	 * The next snapshot gets a new copy of anOpenDeadline
+	 */
+	private void forgetCopy(Deadline anOpenDeadline) {
+		Deadline tempCopy = publishedCopies.remove(anOpenDeadline);
+		if (tempCopy != null) {
+			openByCopy.remove(tempCopy);
+		}
+	}
+
+	/**
+	 * Binary search in the published list, anOpenDeadline must be in
+	 * openDeadlines.
+	 *
+	 * @return the index of the copy of anOpenDeadline, or (-(insertion point)
+	 *         - 1) like Collections.binarySearch
+	 */
+	private int indexOfCopy(Deadline anOpenDeadline) {
+		int tempLow = 0;
+		int tempHigh = published.size() - 1;
+		while (tempLow <= tempHigh) {
+			int tempMid = (tempLow + tempHigh) >>> 1;
+			int tempCompareTo = compare(openByCopy.get(published.get(tempMid)), anOpenDeadline);
+			if (tempCompareTo < 0) {
+				tempLow = tempMid + 1;
+			} else if (tempCompareTo > 0) {
+				tempHigh = tempMid - 1;
+			} else {
+				return tempMid;
+			}
+		}
+		return -(tempLow + 1);
+	}
+
+	/**
+	 * Replaces the open deadlines by aLoadedDeadlines. Deadlines which were
+	 * already open are kept as they are (the gui shows these instances), only
+	 * their recurrence and done flag are taken from the loaded ones.
+	 *
+	 * @return the changes
+	 */
+	public ModelDelta update(List<Deadline> aLoadedDeadlines) {
+		int tempUpdate = ++updateCount;
+		List<Deadline> tempAdded = new ArrayList<>();
+		List<Deadline> tempDoneChanged = new ArrayList<>();
+		List<Deadline> tempChanged = new ArrayList<>();
+		for (Deadline tempLoaded : aLoadedDeadlines) {
+			Content tempSame = getContent(tempLoaded);
+			while (tempSame != null && tempSame.update == tempUpdate) {
+				tempSame = tempSame.next;
+			}
+			if (tempSame == null) {
+				tempAdded.add(tempLoaded);
+				continue;
+			}
+			tempSame.update = tempUpdate;
+			Deadline tempOpen = tempSame.deadline;
+			boolean tempOpenChanged = false;
+			if (tempOpen.getRecurrence() != tempLoaded.getRecurrence()) {
+				tempOpen.setRecurrence(tempLoaded.getRecurrence());
+				tempOpenChanged = true;
+			}
+			if (tempOpen.isDone() != tempLoaded.isDone()) {
+				tempOpen.setDone(tempLoaded.isDone());
+				tempDoneChanged.add(tempOpen);
+				tempOpenChanged = true;
+			}
+			if (tempOpenChanged) {
+				tempChanged.add(tempOpen);
+			}
+		}
+		List<Deadline> tempRemoved = new ArrayList<>();
+		for (Content tempFirst : contents.values()) {
+			for (Content tempContent = tempFirst; tempContent != null; tempContent = tempContent.next) {
+				if (tempContent.update != tempUpdate) {
+					tempRemoved.add(tempContent.deadline);
+				}
+			}
+		}
+		int tempChangeCount = tempChanged.size() + tempRemoved.size() + tempAdded.size();
+		if (tempChangeCount == 0) {
+			return new ModelDelta(tempAdded, tempRemoved, tempDoneChanged);
+		}
+		boolean tempCopyOnWrite = isCopyOnWrite(tempChangeCount);
+		for (Deadline tempDeadline : tempChanged) {
+			if (tempCopyOnWrite) {
+				int tempIndex = indexOfCopy(tempDeadline);
+				forgetCopy(tempDeadline);
+				published = published.replaced(tempIndex, copy(tempDeadline));
+			} else {
+				forgetCopy(tempDeadline);
+			}
+		}
+		for (Deadline tempDeadline : tempRemoved) {
+			if (tempCopyOnWrite) {
+				published = published.removed(indexOfCopy(tempDeadline));
+			}
+			forgetCopy(tempDeadline);
+			remove(tempDeadline);
+		}
+		for (Deadline tempDeadline : tempAdded) {
+			add(tempDeadline);
+			if (tempCopyOnWrite) {
+				published = published.inserted(-indexOfCopy(tempDeadline) - 1, copy(tempDeadline));
+			}
+		}
+		if (!tempCopyOnWrite) {
+			published = copyAll();
+		}
+		publish();
+		return new ModelDelta(tempAdded, tempRemoved, tempDoneChanged);
+	}
+
+	/**
+	 * @return the open deadline sorted after aDeadline, null if aDeadline is
+	 *         the last one
+	 */
+	public Deadline getNext(Deadline aDeadline) {
+		return openDeadlines.higher(aDeadline);
+	}
+
+	public int size() {
+		return openDeadlines.size();
+	}
+
+	private void add(Deadline aDeadline) {
+		sequence.put(aDeadline, nextSequence++);
+		openDeadlines.add(aDeadline);
+		Content tempContent = new Content(aDeadline);
+		Content tempFirst = contents.putIfAbsent(tempContent, tempContent);
+		if (tempFirst != null) {
+			tempContent.next = tempFirst.next;
+			tempFirst.next = tempContent;
+		}
+	}
+
+	private void remove(Deadline aDeadline) {
+		Content tempFirst = getContent(aDeadline);
+		if (tempFirst.deadline == aDeadline) {
+			contents.remove(tempFirst);
+			if (tempFirst.next != null) {
+				contents.put(tempFirst.next, tempFirst.next);
+			}
+		} else {
+			Content tempPrevious = tempFirst;
+			while (tempPrevious.next.deadline != aDeadline) {
+				tempPrevious = tempPrevious.next;
+			}
+			tempPrevious.next = tempPrevious.next.next;
+		}
+		openDeadlines.remove(aDeadline);
+		sequence.remove(aDeadline);
+	}
+
+	/**
+	 * @return the first open deadline with the content of aDeadline, null if
+	 *         there is none
+	 */
+	private Content getContent(Deadline aDeadline) {
+		probe.deadline = aDeadline;
+		Content tempFirst = contents.get(probe);
+		probe.deadline = null;
+		return tempFirst;
+	}
+
+	private int compare(Deadline aDeadline1, Deadline aDeadline2) {
+		int tempCompareTo = comparator.compare(aDeadline1, aDeadline2);
+		if (tempCompareTo == 0) {
+			return Long.compare(sequence.get(aDeadline1), sequence.get(aDeadline2));
+		}
+		return tempCompareTo;
 	}
 
 	public String getSourceInfo() {
@@ -23,18 +376,51 @@ public class Model {
 	}
 
 	public void setSourceInfo(String aSourceInfo) {
-		sourceInfo = aSourceInfo;
+		if (!Objects.equals(sourceInfo, aSourceInfo)) {
+			sourceInfo = aSourceInfo;
+			publish();
+		}
 	}
 
 	/**
-	 *
+	 * Only for the writer
 	 */
 	public List<Deadline> getAddedFromGoogle() {
 		return addedFromGoogle;
 	}
 
+	/**
+	 * Only for the writer
+	 */
 	public List<Deadline> getRemovedFromGoogle() {
 		return removedFromGoogle;
 	}
 
+	/**
+	 * All fields of a loaded deadline which are shown or synced, to find the
+	 * already open instance. Open deadlines with the same content are chained,
+	 * update marks the ones it found.
+	 */
+	private static final class Content {
+		private Deadline deadline;
+		private Content next;
+		private int update;
+
+		Content(Deadline aDeadline) {
+			deadline = aDeadline;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(deadline.getWhenMillis()) * 31 + Objects.hashCode(deadline.getInfo());
+		}
+
+		@Override
+		public boolean equals(Object aObj) {
+			if (!(aObj instanceof Content)) {
+				return false;
+			}
+			return deadline.isSameContent(((Content) aObj).deadline);
+		}
+	}
 }
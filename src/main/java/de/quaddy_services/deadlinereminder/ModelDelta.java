@@ -0,0 +1,43 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.List;
+
+/**
+ * The changes of one Model.update, so the gui only adds and removes these
+ * rows.
+ */
+public class ModelDelta {
+	private final List<Deadline> added;
+	private final List<Deadline> removed;
+	private final List<Deadline> doneChanged;
+
+	public ModelDelta(List<Deadline> anAdded, List<Deadline> aRemoved, List<Deadline> aDoneChanged) {
+		added = anAdded;
+		removed = aRemoved;
+		doneChanged = aDoneChanged;
+	}
+
+	public List<Deadline> getAdded() {
+		return added;
+	}
+
+	public List<Deadline> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return open deadlines whose done flag was changed by the reload
+	 */
+	public List<Deadline> getDoneChanged() {
+		return doneChanged;
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && doneChanged.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "added=" + added.size() + ", removed=" + removed.size() + ", doneChanged=" + doneChanged.size();
+	}
+}
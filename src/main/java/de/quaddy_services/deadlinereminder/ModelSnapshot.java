@@ -0,0 +1,43 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.List;
+
+/**
+ * The open deadlines of the model at one point in time. Never changed, so it
+ * can be read from any thread (gui, GoogleSync) without a lock: the deadlines
+ * are copies, the writer changes only its own instances.
+ */
+public final class ModelSnapshot {
+	private final long version;
+	private final List<Deadline> openDeadlines;
+	private final String sourceInfo;
+
+	ModelSnapshot(long aVersion, List<Deadline> anOpenDeadlines, String aSourceInfo) {
+		version = aVersion;
+		openDeadlines = anOpenDeadlines;
+		sourceInfo = aSourceInfo;
+	}
+
+	/**
+	 * @return incremented with every change of the model
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return sorted, unmodifiable
+	 */
+	public List<Deadline> getOpenDeadlines() {
+		return openDeadlines;
+	}
+
+	public String getSourceInfo() {
+		return sourceInfo;
+	}
+
+	@Override
+	public String toString() {
+		return "ModelSnapshot [version=" + version + ", openDeadlines=" + openDeadlines.size() + "]";
+	}
+}
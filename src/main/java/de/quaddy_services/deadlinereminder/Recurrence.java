@@ -0,0 +1,123 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The repeating rule of one termin.txt line (e.g. "01.01.2020*2w Text"), shared
+ * by all deadlines expanded from it.
+ */
+public final class Recurrence {
+	private final Date start;
+	private final int unit;
+	private final int step;
+	private final String info;
+	private final String textWithoutRepeatingInfo;
+	private final List<Date> occurrences;
+	/**
+	 * Texts of the created deadlines (without the time), set once as the
+	 * recurrence is read from any thread. The deadlines do not store them.
+	 */
+	private final String occurrenceInfo;
+	private final String occurrenceTextWithoutRepeatingInfo;
+	/**
+	 * Time and end time of the created deadlines, -1 for none
+	 */
+	private final int minutes;
+	private final int endMinutes;
+
+	/**
+	 * @param aStart      date of the line
+	 * @param aUnit       Calendar.YEAR, MONTH, WEEK_OF_YEAR or DAY_OF_YEAR
+	 * @param aOccurrences the expanded dates (midnight)
+	 */
+	public Recurrence(Date aStart, int aUnit, int aStep, String aInfo, String aTextWithoutRepeatingInfo,
+			List<Date> aOccurrences) {
+		start = new Date(aStart.getTime());
+		unit = aUnit;
+		step = aStep;
+		info = aInfo;
+		textWithoutRepeatingInfo = aTextWithoutRepeatingInfo;
+		occurrences = Collections.unmodifiableList(new ArrayList<>(aOccurrences));
+		// the time removed from the texts does not depend on the date
+		Deadline tempFirst = new Deadline();
+		tempFirst.setWhen(start);
+		tempFirst.setInfo(info);
+		tempFirst.setTextWithoutRepeatingInfo(textWithoutRepeatingInfo);
+		int[] tempTimes = Deadline.parseTimes(tempFirst.getTextWithoutRepeatingInfo());
+		minutes = tempTimes[0];
+		endMinutes = tempTimes[1];
+		tempFirst.extractTimeFromInfo();
+		occurrenceInfo = tempFirst.getInfo();
+		occurrenceTextWithoutRepeatingInfo = tempFirst.getTextWithoutRepeatingInfo();
+	}
+
+	public Date getStart() {
+		return new Date(start.getTime());
+	}
+
+	public int getUnit() {
+		return unit;
+	}
+
+	public int getStep() {
+		return step;
+	}
+
+	public String getInfo() {
+		return info;
+	}
+
+	public String getTextWithoutRepeatingInfo() {
+		return textWithoutRepeatingInfo;
+	}
+
+	/**
+	 * @return Deadline.getInfo of the created deadlines (without the time)
+	 */
+	String getOccurrenceInfo() {
+		return occurrenceInfo;
+	}
+
+	String getOccurrenceTextWithoutRepeatingInfo() {
+		return occurrenceTextWithoutRepeatingInfo;
+	}
+
+	/**
+	 * @return the dates expanded into deadlines (including the done ones)
+	 */
+	public List<Date> getOccurrences() {
+		return occurrences;
+	}
+
+	/**
+	 * @return the day of month of the start, Calendar.add(MONTH) keeps e.g. the
+	 *         31st only up to the next shorter month.
+	 */
+	public int getStartDayOfMonth() {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.setTime(start);
+		return tempCal.get(Calendar.DAY_OF_MONTH);
+	}
+
+	public boolean isStartFebruary29() {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.setTime(start);
+		return tempCal.get(Calendar.MONTH) == Calendar.FEBRUARY && tempCal.get(Calendar.DAY_OF_MONTH) == 29;
+	}
+
+	/**
+	 * @param aWhen midnight of one occurrence
+	 */
+	public Deadline createDeadline(Date aWhen) {
+		return new Deadline(this, aWhen.getTime(), minutes, endMinutes);
+	}
+
+	@Override
+	public String toString() {
+		return "Recurrence [start=" + start + ", unit=" + unit + ", step=" + step + ", info=" + info + "]";
+	}
+}
@@ -1,16 +1,56 @@
 package de.quaddy_services.deadlinereminder;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+
+import de.quaddy_services.deadlinereminder.file.FileFingerprint;
 
 public interface Storage {
 	List<Deadline> getOpenDeadlines(Date aTo);
 
+	/**
+	 * Same as getOpenDeadlines(aTo), but the deadlines may be shared with a
+	 * cache of the storage: copy them before changing.
+	 *
+	 * @param aFingerprints of getSourceFiles, just taken by the caller: these
+	 *                      files need not be read again to detect changes
+	 */
+	default List<Deadline> getOpenDeadlines(Date aTo, Map<File, FileFingerprint> aFingerprints) {
+		return getOpenDeadlines(aTo);
+	}
+
 	void saveConfirmedTasks(List<Deadline> aDeadlines);
 
 	String getSourceInfo();
 
+	/**
+	 * The open deadlines in [aFrom, aTo), sorted by DeadlineComparator. Only the
+	 * deadlines read are created, so e.g. "the next 7 days" stops early.
+	 */
+	default Iterator<Deadline> iterateOpenDeadlines(Date aFrom, Date aTo) {
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		for (Deadline tempDeadline : getOpenDeadlines(aTo)) {
+			if (!tempDeadline.getWhen().before(aFrom) && tempDeadline.getWhen().before(aTo)) {
+				tempDeadlines.add(tempDeadline);
+			}
+		}
+		Collections.sort(tempDeadlines, new DeadlineComparator());
+		return tempDeadlines.iterator();
+	}
+
+	/**
+	 * @return the files getOpenDeadlines depends on, empty if unknown
+	 */
+	default List<File> getSourceFiles() {
+		return Collections.emptyList();
+	}
+
 	/**
 	 * @throws IOException
 	 *
@@ -18,4 +58,12 @@ public interface Storage {
 	void addFromGroogle(List<Deadline> aDeadline) throws IOException;
 
 	void removeFromGroogle(List<Deadline> aRemovedFromGoogle) throws IOException;
+
+	/**
+	 * Rewrite the files to keep them small, e.g. after saving. Failures are
+	 * logged only, loading does not depend on it.
+	 */
+	default void maintain() {
+		// nothing to do
+	}
 }
@@ -0,0 +1,268 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.calendar.model.Event;
+
+/**
+ * Collects inserts, deletes and patches of one calendar and sends them as
+ * Google batch requests (one HTTP call for up to batchSize operations).
+ *
+ * https://developers.google.com/calendar/api/guides/batch
+ */
+public class GoogleBatch {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBatch.class);
+
+	/**
+	 * Google allows 1000 calls per batch, but recommends 50 for the calendar api.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("deadlinereminder.batchSize", 50);
+
+	public enum Type {
+		INSERT, DELETE, PATCH
+	}
+
+	/**
+	 * One queued call.
+	 */
+	public static class Operation {
+		private final Type type;
+		private final Event event;
+		private final Event patch;
+
+		Operation(Type aType, Event aEvent, Event aPatch) {
+			type = aType;
+			event = aEvent;
+			patch = aPatch;
+		}
+
+		public Type getType() {
+			return type;
+		}
+
+		/**
+		 * The event to insert or the (google) event to delete or patch.
+		 */
+		public Event getEvent() {
+			return event;
+		}
+
+		/**
+		 * The changed fields for {@link Type#PATCH}, otherwise null
+		 */
+		public Event getPatch() {
+			return patch;
+		}
+
+		@Override
+		public String toString() {
+			return type + " " + event.getId() + " " + event.getStart() + " " + event.getSummary();
+		}
+	}
+
+	/**
+	 * Result of each operation of a batch.
+	 */
+	public interface ResultListener {
+		/**
+		 * @param aResult the event returned by google (null for delete)
+		 */
+		void success(Operation aOperation, Event aResult);
+
+		void failure(Operation aOperation, GoogleJsonError aError);
+
+		/**
+		 * All operations of one batch call are reported.
+		 */
+		default void batchExecuted() {
+		}
+	}
+
+	private final com.google.api.services.calendar.Calendar client;
+	private final String calendarId;
+	private final int batchSize;
+	private final ResultListener resultListener;
+	private final GoogleRateLimiter rateLimiter;
+	private final List<Operation> pending = new ArrayList<>();
+	private final List<Operation> failed = new ArrayList<>();
+	/**
+	 * Operations of the current call with a final result
+	 */
+	private final Set<Operation> answered = Collections.newSetFromMap(new IdentityHashMap<>());
+	private HttpHeaders retryHeaders = null;
+	private int batchCount = 0;
+
+	public GoogleBatch(com.google.api.services.calendar.Calendar aClient, String aCalendarId, int aBatchSize,
+			GoogleRateLimiter aRateLimiter, ResultListener aResultListener) {
+		client = aClient;
+		rateLimiter = aRateLimiter;
+		calendarId = aCalendarId;
+		batchSize = Math.max(1, aBatchSize);
+		resultListener = aResultListener;
+	}
+
+	public void insert(Event aEvent) throws IOException {
+		add(new Operation(Type.INSERT, aEvent, null));
+	}
+
+	public void delete(Event aEvent) throws IOException {
+		add(new Operation(Type.DELETE, aEvent, null));
+	}
+
+	public void patch(Event aEvent, Event aPatch) throws IOException {
+		add(new Operation(Type.PATCH, aEvent, aPatch));
+	}
+
+	void add(Operation aOperation) throws IOException {
+		pending.add(aOperation);
+		if (pending.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Send all pending operations. Operations throttled by Google are sent again
+	 * after a backoff, as are the operations without a result if the whole call
+	 * was throttled or timed out.
+	 */
+	public void flush() throws IOException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		List<Operation> tempOperations = new ArrayList<>(pending);
+		pending.clear();
+		int tempAttempt = 0;
+		while (!tempOperations.isEmpty()) {
+			boolean tempRetryAllowed = tempAttempt < GoogleRateLimiter.MAX_RETRIES;
+			answered.clear();
+			retryHeaders = null;
+			BatchRequest tempBatch = client.batch();
+			for (Operation tempOperation : tempOperations) {
+				queue(tempBatch, tempOperation, tempRetryAllowed);
+			}
+			// one HTTP call, whatever the number of operations
+			rateLimiter.acquire(1);
+			batchCount++;
+			LOGGER.info("Execute batch " + batchCount + " with " + tempBatch.size() + " operations");
+			try {
+				tempBatch.execute();
+				resultListener.batchExecuted();
+			} catch (IOException e) {
+				if (!tempRetryAllowed || !GoogleRateLimiter.isRetriable(e)) {
+					throw e;
+				}
+				LOGGER.info("Retry batch " + batchCount + ": " + e);
+				if (e instanceof HttpResponseException) {
+					retryHeaders = ((HttpResponseException) e).getHeaders();
+				}
+			}
+			List<Operation> tempUnanswered = new ArrayList<>();
+			for (Operation tempOperation : tempOperations) {
+				if (!answered.contains(tempOperation)) {
+					tempUnanswered.add(tempOperation);
+				}
+			}
+			tempOperations = tempUnanswered;
+			if (!tempOperations.isEmpty()) {
+				rateLimiter.throttled(tempOperations.size());
+				rateLimiter.backoff(tempAttempt, retryHeaders);
+				tempAttempt++;
+			}
+		}
+	}
+
+	private void queue(BatchRequest aBatch, final Operation aOperation, boolean aRetryAllowed) throws IOException {
+		Event tempEvent = aOperation.getEvent();
+		switch (aOperation.getType()) {
+		case INSERT:
+			client.events().insert(calendarId, tempEvent).queue(aBatch,
+					new Callback<Event>(aOperation, aRetryAllowed));
+			break;
+		case DELETE:
+			client.events().delete(calendarId, tempEvent.getId()).queue(aBatch,
+					new Callback<Void>(aOperation, aRetryAllowed));
+			break;
+		case PATCH:
+			client.events().patch(calendarId, tempEvent.getId(), aOperation.getPatch()).queue(aBatch,
+					new Callback<Event>(aOperation, aRetryAllowed));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown " + aOperation);
+		}
+	}
+
+	private class Callback<T> extends JsonBatchCallback<T> {
+		private final Operation operation;
+		private final boolean retryAllowed;
+
+		Callback(Operation aOperation, boolean aRetryAllowed) {
+			operation = aOperation;
+			retryAllowed = aRetryAllowed;
+		}
+
+		@Override
+		public void onSuccess(T aResult, HttpHeaders aResponseHeaders) {
+			answered.add(operation);
+			rateLimiter.succeeded(1);
+			resultListener.success(operation, aResult instanceof Event ? (Event) aResult : null);
+		}
+
+		@Override
+		public void onFailure(GoogleJsonError aError, HttpHeaders aResponseHeaders) {
+			if (isAlreadyApplied(operation, aError)) {
+				LOGGER.info("Already done " + operation + ": " + aError.getMessage());
+				answered.add(operation);
+				resultListener.success(operation, null);
+				return;
+			}
+			if (retryAllowed && GoogleRateLimiter.isRetriable(aError.getCode(), aError)) {
+				LOGGER.debug("Retry " + operation + ": " + aError.getMessage());
+				retryHeaders = aResponseHeaders;
+				return;
+			}
+			answered.add(operation);
+			failed.add(operation);
+			resultListener.failure(operation, aError);
+		}
+	}
+
+	/**
+	 * A replayed operation may have reached Google before: the event to insert
+	 * already exists (409) or the event to delete is already gone (404, 410).
+	 */
+	static boolean isAlreadyApplied(Operation aOperation, GoogleJsonError aError) {
+		int tempCode = aError.getCode();
+		switch (aOperation.getType()) {
+		case INSERT:
+			return tempCode == 409 && aOperation.getEvent().getId() != null;
+		case DELETE:
+			return tempCode == 404 || tempCode == 410;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return the operations reported as failure so far
+	 */
+	public List<Operation> getFailed() {
+		return failed;
+	}
+
+	public int getBatchCount() {
+		return batchCount;
+	}
+}
@@ -0,0 +1,94 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.calendar.CalendarScopes;
+
+/**
+ * Keeps one HTTP transport and one Calendar client per account between the
+ * syncs, so the keep-alive connections, TLS sessions and the access token are
+ * reused. The client is only built again after {@link #invalidate(String)}.
+ */
+public class GoogleClientManager {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleClientManager.class);
+
+	private static final String APPLICATION_NAME = "DeadlineReminder/1.0 (gzip)";
+
+	private final JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
+	private HttpTransport transport = null;
+	private final Map<String, com.google.api.services.calendar.Calendar> clients = new HashMap<>();
+
+	private long transportBuildMillis = 0;
+	private long lastAuthorizeMillis = 0;
+	private int createdClientCount = 0;
+
+	/**
+	 * @param aUserId e.g. System.getProperty("user.name")
+	 */
+	public synchronized com.google.api.services.calendar.Calendar getClient(String aUserId) throws Exception {
+		com.google.api.services.calendar.Calendar tempClient = clients.get(aUserId);
+		if (tempClient != null) {
+			return tempClient;
+		}
+		long tempStart = System.currentTimeMillis();
+		HttpTransport tempTransport = getTransport();
+		long tempAuthorizeStart = System.currentTimeMillis();
+		// authorization
+		Credential tempCredential = OAuth2Native.authorize(tempTransport, jsonFactory, new LocalServerReceiver(),
+				Arrays.asList(CalendarScopes.CALENDAR));
+		lastAuthorizeMillis = System.currentTimeMillis() - tempAuthorizeStart;
+		tempClient = new com.google.api.services.calendar.Calendar.Builder(tempTransport, jsonFactory, tempCredential)
+				.setApplicationName(APPLICATION_NAME).setHttpRequestInitializer(tempCredential).build();
+		clients.put(aUserId, tempClient);
+		createdClientCount++;
+		LOGGER.info("Created client for " + aUserId + " in " + (System.currentTimeMillis() - tempStart)
+				+ "ms (authorize " + lastAuthorizeMillis + "ms)");
+		return tempClient;
+	}
+
+	private HttpTransport getTransport() {
+		if (transport == null) {
+			long tempStart = System.currentTimeMillis();
+			// HttpURLConnection keeps the connections alive (http.keepAlive,
+			// http.maxConnections)
+			transport = new NetHttpTransport.Builder().build();
+			// Only the object setup, the connection and the TLS handshake are
+			// made by the first request
+			transportBuildMillis = System.currentTimeMillis() - tempStart;
+			LOGGER.info("Built transport in " + transportBuildMillis + "ms");
+		}
+		return transport;
+	}
+
+	/**
+	 * The credential is invalid (e.g. OAuth error), next
+	 * {@link #getClient(String)} authorizes again.
+	 */
+	public synchronized void invalidate(String aUserId) {
+		if (clients.remove(aUserId) != null) {
+			LOGGER.info("Invalidated client for " + aUserId);
+		}
+	}
+
+	public synchronized long getTransportBuildMillis() {
+		return transportBuildMillis;
+	}
+
+	public synchronized long getLastAuthorizeMillis() {
+		return lastAuthorizeMillis;
+	}
+
+	public synchronized int getCreatedClientCount() {
+		return createdClientCount;
+	}
+}
@@ -0,0 +1,209 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.Events;
+
+/**
+ * Local copy of the events of the Deadline* calendar together with the
+ * nextSyncToken of the last Events.list call.
+ *
+ * With the syncToken Google only returns the events changed since the last
+ * call (including cancelled ones), so they are merged by id into this cache.
+ * Of a cancelled event only the id is kept, and events which ended before the
+ * reconcile window are dropped (see evictEndedBefore), so the cache does not
+ * grow with the history of the calendar.
+ *
+ * https://developers.google.com/calendar/api/guides/sync
+ */
+public class GoogleEventCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleEventCache.class);
+
+	private static final String CALENDAR_ID = "calendarId";
+
+	private String calendarId;
+	private String syncToken;
+	private Map<String, Event> events = new LinkedHashMap<>();
+
+	/**
+	 * @return true in case the syncToken may be used for an incremental sync of
+	 *         aCalendarId
+	 */
+	public boolean isSyncTokenFor(String aCalendarId) {
+		return syncToken != null && aCalendarId.equals(calendarId);
+	}
+
+	public String getSyncToken() {
+		return syncToken;
+	}
+
+	/**
+	 * Replace all events (full sync)
+	 */
+	public void reset(String aCalendarId, List<Event> aEvents, String aNextSyncToken) {
+		events.clear();
+		calendarId = aCalendarId;
+		merge(aEvents, aNextSyncToken);
+	}
+
+	/**
+	 * Add or replace the changed events (incremental sync)
+	 */
+	public void merge(List<Event> aChangedEvents, String aNextSyncToken) {
+		for (Event tempEvent : aChangedEvents) {
+			put(tempEvent);
+		}
+		syncToken = aNextSyncToken;
+	}
+
+	private void put(Event anEvent) {
+		if (isCancelled(anEvent)) {
+			// the id is enough to restore it instead of inserting
+			events.put(anEvent.getId(), new Event().setId(anEvent.getId()).setStatus("cancelled"));
+		} else {
+			events.put(anEvent.getId(), anEvent);
+		}
+	}
+
+	private static boolean isCancelled(Event anEvent) {
+		return "cancelled".equals(anEvent.getStatus());
+	}
+
+	/**
+	 * Drops the events which ended before aStart: they stay at Google as
+	 * history, but are never compared with a deadline again. An incremental sync
+	 * returns them again if they are changed. Recurring and cancelled events are
+	 * kept.
+	 *
+	 * @return the number of dropped events
+	 */
+	public int evictEndedBefore(long aStart) {
+		int tempCount = 0;
+		for (Iterator<Event> i = events.values().iterator(); i.hasNext();) {
+			Event tempEvent = i.next();
+			if (!isCancelled(tempEvent) && tempEvent.getRecurrence() == null && getEnd(tempEvent) < aStart) {
+				i.remove();
+				tempCount++;
+			}
+		}
+		return tempCount;
+	}
+
+	/**
+	 * @return the end in millis, Long.MAX_VALUE if unknown
+	 */
+	private static long getEnd(Event anEvent) {
+		EventDateTime tempEnd = anEvent.getEnd();
+		if (tempEnd == null) {
+			return Long.MAX_VALUE;
+		}
+		if (tempEnd.getDateTime() != null) {
+			return tempEnd.getDateTime().getValue();
+		}
+		if (tempEnd.getDate() != null) {
+			return tempEnd.getDate().getValue();
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * The result of a change sent to Google, so the cache matches the calendar
+	 * even if the next list call fails. The next incremental list returns the
+	 * same events again.
+	 *
+	 * @param aResult the event returned by Google, null if unknown
+	 */
+	public void applied(GoogleBatch.Operation aOperation, Event aResult) {
+		if (syncToken == null) {
+			return;
+		}
+		if (aOperation.getType() == GoogleBatch.Type.DELETE) {
+			Event tempCached = events.get(aOperation.getEvent().getId());
+			if (tempCached != null) {
+				put(tempCached.clone().setStatus("cancelled"));
+			}
+		} else if (aResult != null && aResult.getId() != null) {
+			put(aResult);
+		}
+	}
+
+	/**
+	 * e.g. on 410 Gone the syncToken is invalid and a full sync is necessary.
+	 */
+	public void clear() {
+		events.clear();
+		calendarId = null;
+		syncToken = null;
+	}
+
+	/**
+	 * @return a copy, the caller may remove events.
+	 */
+	public ArrayList<Event> getEvents() {
+		return new ArrayList<>(events.values());
+	}
+
+	public int size() {
+		return events.size();
+	}
+
+	public void load(File aFile, JsonFactory aJsonFactory) {
+		clear();
+		if (!aFile.exists()) {
+			return;
+		}
+		try (InputStream tempIn = new FileInputStream(aFile)) {
+			Events tempEvents = aJsonFactory.fromInputStream(tempIn, StandardCharsets.UTF_8, Events.class);
+			Object tempCalendarId = tempEvents.get(CALENDAR_ID);
+			List<Event> tempItems = tempEvents.getItems();
+			if (tempCalendarId != null && tempItems != null) {
+				reset(tempCalendarId.toString(), tempItems, tempEvents.getNextSyncToken());
+			}
+			LOGGER.info("Loaded " + size() + " events from " + aFile.getAbsolutePath());
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Ignore " + aFile.getAbsolutePath(), e);
+			clear();
+		}
+	}
+
+	/**
+	 * Written to a temporary file and renamed, so a crash never leaves half a
+	 * file.
+	 */
+	public void save(File aFile, JsonFactory aJsonFactory) {
+		Events tempEvents = new Events();
+		tempEvents.setItems(getEvents());
+		tempEvents.setNextSyncToken(syncToken);
+		tempEvents.set(CALENDAR_ID, calendarId);
+		try {
+			File tempFile = new File(aFile.getAbsolutePath() + ".tmp");
+			try (Writer tempOut = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+				tempOut.write(aJsonFactory.toString(tempEvents));
+			}
+			Files.move(tempFile.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.error("Ignore " + aFile.getAbsolutePath(), e);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Event ids computed from the content, so the same termin.txt entry always
+ * gets the same Google event id.
+ *
+ * Google allows the characters a-v and 0-9 (base32hex) with 5 to 1024
+ * characters. Hex digits are a subset.
+ *
+ * https://developers.google.com/calendar/api/v3/reference/events/insert
+ */
+public class GoogleEventIds {
+	/**
+	 * Prefix of recurring events created by DeadlineReminder
+	 */
+	static final String RECURRENCE_PREFIX = "dr";
+	/**
+	 * Prefix of overdue events moved to today by DeadlineReminder
+	 */
+	static final String OVERDUE_PREFIX = "do";
+	/**
+	 * Prefix of termin.txt entries
+	 */
+	static final String DEADLINE_PREFIX = "dl";
+
+	private GoogleEventIds() {
+	}
+
+	public static String forRecurrence(String aKey) {
+		return RECURRENCE_PREFIX + sha1Hex(aKey);
+	}
+
+	public static String forOverdue(String aKey) {
+		return OVERDUE_PREFIX + sha1Hex(aKey);
+	}
+
+	public static String forDeadline(String aKey) {
+		return DEADLINE_PREFIX + sha1Hex(aKey);
+	}
+
+	public static boolean isRecurrenceId(String aId) {
+		return aId != null && aId.startsWith(RECURRENCE_PREFIX) && aId.length() == RECURRENCE_PREFIX.length() + 40;
+	}
+
+	static String sha1Hex(String aKey) {
+		try {
+			byte[] tempDigest = MessageDigest.getInstance("SHA-1").digest(aKey.getBytes(StandardCharsets.UTF_8));
+			StringBuilder tempHex = new StringBuilder(tempDigest.length * 2);
+			for (byte tempByte : tempDigest) {
+				tempHex.append(Character.forDigit((tempByte >> 4) & 0xF, 16));
+				tempHex.append(Character.forDigit(tempByte & 0xF, 16));
+			}
+			return tempHex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is always available", e);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+/**
+ * Events with hash lookups for the matching rule of the sync: two events are
+ * the same with the same id, or with the same summary and the same start
+ * dateTime, or with the same summary and the same start date.
+ *
+ * Events are kept by identity (as {@link Event#equals(Object)} compares all
+ * fields).
+ */
+public class GoogleEventIndex<V> {
+	private final Map<Event, V> values = new IdentityHashMap<>();
+	private final Map<String, List<Event>> byId = new HashMap<>();
+	private final Map<List<Object>, List<Event>> byStart = new HashMap<>();
+
+	public void put(Event aEvent, V aValue) {
+		if (values.put(aEvent, aValue) != null) {
+			return;
+		}
+		String tempId = aEvent.getId();
+		if (tempId != null) {
+			add(byId, tempId, aEvent);
+		}
+		for (List<Object> tempKey : getStartKeys(aEvent)) {
+			add(byStart, tempKey, aEvent);
+		}
+	}
+
+	public V remove(Event aEvent) {
+		if (!values.containsKey(aEvent)) {
+			return null;
+		}
+		V tempValue = values.remove(aEvent);
+		String tempId = aEvent.getId();
+		if (tempId != null) {
+			remove(byId, tempId, aEvent);
+		}
+		for (List<Object> tempKey : getStartKeys(aEvent)) {
+			remove(byStart, tempKey, aEvent);
+		}
+		return tempValue;
+	}
+
+	public V get(Event aEvent) {
+		return values.get(aEvent);
+	}
+
+	/**
+	 * @return an indexed event which is the same as aEvent, null if there is none.
+	 */
+	public Event getSame(Event aEvent) {
+		String tempId = aEvent.getId();
+		if (tempId != null) {
+			List<Event> tempSameId = byId.get(tempId);
+			if (tempSameId != null) {
+				return tempSameId.get(0);
+			}
+		}
+		for (List<Object> tempKey : getStartKeys(aEvent)) {
+			List<Event> tempSameStart = byStart.get(tempKey);
+			if (tempSameStart != null) {
+				return tempSameStart.get(0);
+			}
+		}
+		return null;
+	}
+
+	public boolean containsSame(Event aEvent) {
+		return getSame(aEvent) != null;
+	}
+
+	public Set<Event> keySet() {
+		return values.keySet();
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Same order as isSame: dateTime before date.
+	 */
+	private List<List<Object>> getStartKeys(Event aEvent) {
+		List<List<Object>> tempKeys = new ArrayList<>(2);
+		EventDateTime tempStart = aEvent.getStart();
+		if (tempStart == null) {
+			return tempKeys;
+		}
+		String tempSummary = GoogleSync.getSummary(aEvent);
+		DateTime tempDateTime = tempStart.getDateTime();
+		if (tempDateTime != null) {
+			tempKeys.add(Arrays.asList(tempSummary, tempDateTime));
+		}
+		DateTime tempDate = tempStart.getDate();
+		if (tempDate != null) {
+			tempKeys.add(Arrays.asList(tempSummary, tempDate.toString()));
+		}
+		return tempKeys;
+	}
+
+	private static <K> void add(Map<K, List<Event>> aMap, K aKey, Event aEvent) {
+		List<Event> tempEvents = aMap.get(aKey);
+		if (tempEvents == null) {
+			tempEvents = new ArrayList<>(1);
+			aMap.put(aKey, tempEvents);
+		}
+		tempEvents.add(aEvent);
+	}
+
+	private static <K> void remove(Map<K, List<Event>> aMap, K aKey, Event aEvent) {
+		List<Event> tempEvents = aMap.get(aKey);
+		if (tempEvents == null) {
+			return;
+		}
+		for (int i = 0; i < tempEvents.size(); i++) {
+			if (tempEvents.get(i) == aEvent) {
+				tempEvents.remove(i);
+				break;
+			}
+		}
+		if (tempEvents.isEmpty()) {
+			aMap.remove(aKey);
+		}
+	}
+}
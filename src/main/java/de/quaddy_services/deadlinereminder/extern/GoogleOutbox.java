@@ -0,0 +1,245 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.Key;
+import com.google.api.services.calendar.model.Event;
+
+/**
+ * Inserts, deletes and patches for the Deadline* calendar which are not yet
+ * acknowledged by Google.
+ *
+ * The planned changes are written to a file before they are sent. In case the
+ * network is gone (e.g. laptop in standby) the next sync sends them again
+ * before listing the calendar. Acknowledged changes are removed from the file
+ * after each batch.
+ *
+ * Inserts get an event id, so sending them twice gives 409 instead of a
+ * duplicate event (see {@link GoogleBatch#isAlreadyApplied}).
+ */
+public class GoogleOutbox {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleOutbox.class);
+
+	/**
+	 * One planned change.
+	 */
+	public static class Change extends GenericJson {
+		@Key
+		private String type;
+		@Key
+		private Event event;
+		@Key
+		private Event patch;
+
+		public Change() {
+			super();
+		}
+
+		Change(GoogleBatch.Type aType, Event aEvent, Event aPatch) {
+			type = aType.name();
+			event = aEvent;
+			patch = aPatch;
+		}
+
+		GoogleBatch.Operation toOperation() {
+			return new GoogleBatch.Operation(GoogleBatch.Type.valueOf(type), event, patch);
+		}
+	}
+
+	/**
+	 * Content of the file.
+	 */
+	public static class Content extends GenericJson {
+		@Key
+		private String calendarId;
+		@Key
+		private List<Change> changes;
+
+		public Content() {
+			super();
+		}
+	}
+
+	private final File file;
+	private final JsonFactory jsonFactory;
+	private String calendarId;
+	private final List<Change> changes = new ArrayList<>();
+	private final Map<GoogleBatch.Operation, Change> sent = new IdentityHashMap<>();
+	private boolean changed = false;
+
+	public GoogleOutbox(File aFile, JsonFactory aJsonFactory) {
+		file = aFile;
+		jsonFactory = aJsonFactory;
+	}
+
+	public void insert(Event aEvent) {
+		if (aEvent.getId() == null) {
+			// base32hex as required by Google
+			aEvent.setId(UUID.randomUUID().toString().replace("-", ""));
+		}
+		add(new Change(GoogleBatch.Type.INSERT, aEvent, null));
+	}
+
+	public void delete(Event aEvent) {
+		add(new Change(GoogleBatch.Type.DELETE, new Event().setId(aEvent.getId()).setStart(aEvent.getStart())
+				.setSummary(aEvent.getSummary()), null));
+	}
+
+	public void patch(Event aEvent, Event aPatch) {
+		add(new Change(GoogleBatch.Type.PATCH, new Event().setId(aEvent.getId()).setStart(aEvent.getStart())
+				.setSummary(aEvent.getSummary()), aPatch));
+	}
+
+	private void add(Change aChange) {
+		changes.add(aChange);
+		changed = true;
+	}
+
+	/**
+	 * Changes for another calendar are dropped.
+	 */
+	public void setCalendarId(String aCalendarId) {
+		if (calendarId != null && !calendarId.equals(aCalendarId) && !changes.isEmpty()) {
+			LOGGER.warn("Drop " + changes.size() + " changes for calendar " + calendarId);
+			changes.clear();
+			changed = true;
+		}
+		calendarId = aCalendarId;
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	public int size() {
+		return changes.size();
+	}
+
+	/**
+	 * Save and send all changes. In case of an IOException (e.g. no network) the
+	 * remaining changes stay in the file.
+	 */
+	public void send(GoogleBatch aBatch) throws IOException {
+		save();
+		for (Change tempChange : new ArrayList<>(changes)) {
+			GoogleBatch.Operation tempOperation = tempChange.toOperation();
+			sent.put(tempOperation, tempChange);
+			aBatch.add(tempOperation);
+		}
+		try {
+			aBatch.flush();
+		} finally {
+			sent.clear();
+			save();
+		}
+	}
+
+	/**
+	 * Removes the acknowledged changes and saves the file after each batch.
+	 */
+	public GoogleBatch.ResultListener createResultListener(final GoogleBatch.ResultListener aDelegate) {
+		return new GoogleBatch.ResultListener() {
+
+			@Override
+			public void success(GoogleBatch.Operation aOperation, Event aResult) {
+				acknowledge(aOperation);
+				aDelegate.success(aOperation, aResult);
+			}
+
+			@Override
+			public void failure(GoogleBatch.Operation aOperation, GoogleJsonError aError) {
+				// Not retriable, sending it again would fail again.
+				acknowledge(aOperation);
+				aDelegate.failure(aOperation, aError);
+			}
+
+			@Override
+			public void batchExecuted() {
+				save();
+				aDelegate.batchExecuted();
+			}
+		};
+	}
+
+	private void acknowledge(GoogleBatch.Operation aOperation) {
+		Change tempChange = sent.remove(aOperation);
+		if (tempChange == null) {
+			return;
+		}
+		for (int i = 0; i < changes.size(); i++) {
+			if (changes.get(i) == tempChange) {
+				changes.remove(i);
+				changed = true;
+				break;
+			}
+		}
+	}
+
+	public void load() {
+		changes.clear();
+		calendarId = null;
+		changed = false;
+		if (!file.exists()) {
+			return;
+		}
+		try (InputStream tempIn = new FileInputStream(file)) {
+			Content tempContent = jsonFactory.fromInputStream(tempIn, StandardCharsets.UTF_8, Content.class);
+			calendarId = tempContent.calendarId;
+			if (tempContent.changes != null) {
+				changes.addAll(tempContent.changes);
+			}
+			LOGGER.info("Loaded " + changes.size() + " changes from " + file.getAbsolutePath());
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Ignore " + file.getAbsolutePath(), e);
+			changes.clear();
+		}
+	}
+
+	/**
+	 * Written to a temporary file and renamed, so a crash never leaves half a
+	 * file.
+	 */
+	public void save() {
+		if (!changed) {
+			return;
+		}
+		try {
+			if (changes.isEmpty()) {
+				Files.deleteIfExists(file.toPath());
+			} else {
+				Content tempContent = new Content();
+				tempContent.calendarId = calendarId;
+				tempContent.changes = changes;
+				File tempFile = new File(file.getAbsolutePath() + ".tmp");
+				try (Writer tempOut = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+					tempOut.write(jsonFactory.toString(tempContent));
+				}
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			changed = false;
+		} catch (IOException e) {
+			LOGGER.error("Ignore " + file.getAbsolutePath(), e);
+		}
+	}
+}
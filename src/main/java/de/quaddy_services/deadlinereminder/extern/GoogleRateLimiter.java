@@ -0,0 +1,258 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+
+/**
+ * Token bucket for the calls to the Google calendar api.
+ *
+ * One permit is one HTTP call: a batch of up to 50 operations takes one permit,
+ * like a single request. The bucket holds up to one second of calls.
+ *
+ * The bucket refills with the current rate. Each throttled call (403
+ * rateLimitExceeded, 429, 5xx) halves the rate and is retried after an
+ * exponential backoff with jitter (or the Retry-After of Google). Each
+ * successful call increases the rate again up to the configured maximum.
+ *
+ * https://developers.google.com/calendar/api/guides/errors
+ */
+public class GoogleRateLimiter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleRateLimiter.class);
+
+	/**
+	 * Calls per second when Google does not complain.
+	 */
+	public static final double DEFAULT_MAX_RATE = Double
+			.parseDouble(System.getProperty("deadlinereminder.callsPerSecond", "5"));
+
+	private static final double MIN_RATE = 0.2;
+	private static final double RATE_INCREASE = 0.1;
+	static final int MAX_RETRIES = 6;
+	private static final long BACKOFF_BASE_MILLIS = 1000;
+	private static final long BACKOFF_MAX_MILLIS = 64000;
+
+	private final double maxRate;
+	private final Random random = new Random();
+	private double rate;
+	private double tokens;
+	private long lastRefillNanos;
+
+	private final AtomicLong callCount = new AtomicLong();
+	private final AtomicLong throttledCount = new AtomicLong();
+	private final AtomicLong retriedCount = new AtomicLong();
+	private final AtomicLong waitedMillis = new AtomicLong();
+
+	public GoogleRateLimiter() {
+		this(DEFAULT_MAX_RATE);
+	}
+
+	public GoogleRateLimiter(double aMaxRate) {
+		maxRate = Math.max(MIN_RATE, aMaxRate);
+		rate = maxRate;
+		tokens = maxRate;
+		lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * Execute the request as soon as the bucket allows and retry it when Google
+	 * throttles.
+	 */
+	public <T> T execute(AbstractGoogleClientRequest<T> aRequest) throws IOException {
+		int tempAttempt = 0;
+		while (true) {
+			acquire(1);
+			try {
+				T tempResult = aRequest.execute();
+				succeeded(1);
+				return tempResult;
+			} catch (GoogleJsonResponseException e) {
+				if (!isRetriable(e.getStatusCode(), e.getDetails())) {
+					throw e;
+				}
+				throttled(1);
+				if (tempAttempt >= MAX_RETRIES) {
+					throw e;
+				}
+				backoff(tempAttempt, e.getHeaders());
+				tempAttempt++;
+			}
+		}
+	}
+
+	/**
+	 * Wait until aPermits HTTP calls are allowed.
+	 */
+	public void acquire(int aPermits) {
+		long tempWaitMillis;
+		synchronized (this) {
+			refill();
+			tokens -= aPermits;
+			callCount.addAndGet(aPermits);
+			if (tokens >= 0) {
+				return;
+			}
+			tempWaitMillis = (long) Math.ceil(-tokens * 1000 / rate);
+		}
+		sleep(tempWaitMillis);
+	}
+
+	private void refill() {
+		long tempNow = System.nanoTime();
+		tokens = Math.min(rate, tokens + (tempNow - lastRefillNanos) * rate / 1e9);
+		lastRefillNanos = tempNow;
+	}
+
+	/**
+	 * Additive increase after successful calls.
+	 */
+	public synchronized void succeeded(int aCount) {
+		if (rate < maxRate) {
+			rate = Math.min(maxRate, rate + RATE_INCREASE * aCount);
+		}
+	}
+
+	/**
+	 * Multiplicative decrease after Google refused aCount calls.
+	 */
+	public synchronized void throttled(int aCount) {
+		throttledCount.addAndGet(aCount);
+		refill();
+		rate = Math.max(MIN_RATE, rate / 2);
+	}
+
+	/**
+	 * Wait before the next try.
+	 *
+	 * @param aAttempt         0 for the first retry
+	 * @param aResponseHeaders may contain Retry-After
+	 */
+	public void backoff(int aAttempt, HttpHeaders aResponseHeaders) {
+		long tempWaitMillis;
+		synchronized (this) {
+			retriedCount.incrementAndGet();
+			long tempBackoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(aAttempt, 16));
+			tempWaitMillis = tempBackoff + (long) (random.nextDouble() * BACKOFF_BASE_MILLIS);
+		}
+		long tempRetryAfter = getRetryAfterMillis(aResponseHeaders);
+		if (tempRetryAfter > tempWaitMillis) {
+			tempWaitMillis = tempRetryAfter;
+		}
+		LOGGER.info("Throttled by Google, wait " + tempWaitMillis + "ms, rate=" + getRate());
+		sleep(tempWaitMillis);
+	}
+
+	/**
+	 * 403 is used by Google for quota errors, but also for real permission
+	 * problems.
+	 */
+	public static boolean isRetriable(int aStatusCode, GoogleJsonError aError) {
+		if (aStatusCode == 429 || aStatusCode >= 500) {
+			return true;
+		}
+		if (aStatusCode == 403 && aError != null) {
+			List<GoogleJsonError.ErrorInfo> tempErrors = aError.getErrors();
+			if (tempErrors != null) {
+				for (GoogleJsonError.ErrorInfo tempErrorInfo : tempErrors) {
+					String tempReason = tempErrorInfo.getReason();
+					if ("rateLimitExceeded".equals(tempReason) || "userRateLimitExceeded".equals(tempReason)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A whole call failed: throttled, a server error or a timeout. Without
+	 * network (e.g. ConnectException) it is not retried, the outbox sends the
+	 * changes with the next sync.
+	 */
+	public static boolean isRetriable(IOException anException) {
+		if (anException instanceof GoogleJsonResponseException) {
+			GoogleJsonResponseException tempException = (GoogleJsonResponseException) anException;
+			return isRetriable(tempException.getStatusCode(), tempException.getDetails());
+		}
+		if (anException instanceof HttpResponseException) {
+			return isRetriable(((HttpResponseException) anException).getStatusCode(), null);
+		}
+		return anException instanceof SocketTimeoutException;
+	}
+
+	/**
+	 * Retry-After is either delay-seconds or a HTTP-date.
+	 */
+	static long getRetryAfterMillis(HttpHeaders aResponseHeaders) {
+		if (aResponseHeaders == null) {
+			return 0;
+		}
+		String tempRetryAfter = aResponseHeaders.getRetryAfter();
+		if (tempRetryAfter == null) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(tempRetryAfter.trim()) * 1000;
+		} catch (NumberFormatException e) {
+			try {
+				ZonedDateTime tempDate = ZonedDateTime.parse(tempRetryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, tempDate.toInstant().toEpochMilli() - System.currentTimeMillis());
+			} catch (RuntimeException e2) {
+				LOGGER.debug("Ignore Retry-After " + tempRetryAfter, e2);
+				return 0;
+			}
+		}
+	}
+
+	protected void sleep(long aMillis) {
+		if (aMillis <= 0) {
+			return;
+		}
+		waitedMillis.addAndGet(aMillis);
+		try {
+			Thread.sleep(aMillis);
+		} catch (InterruptedException e) {
+			LOGGER.warn("Error", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	public long getCallCount() {
+		return callCount.get();
+	}
+
+	public long getThrottledCount() {
+		return throttledCount.get();
+	}
+
+	public long getRetriedCount() {
+		return retriedCount.get();
+	}
+
+	public long getWaitedMillis() {
+		return waitedMillis.get();
+	}
+
+	@Override
+	public String toString() {
+		return "GoogleRateLimiter [rate=" + getRate() + ", calls=" + getCallCount() + ", throttled="
+				+ getThrottledCount() + ", retried=" + getRetriedCount() + ", waitedMillis=" + getWaitedMillis() + "]";
+	}
+}
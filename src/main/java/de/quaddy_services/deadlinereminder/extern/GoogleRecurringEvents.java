@@ -0,0 +1,157 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.Recurrence;
+
+/**
+ * Maps a repeating termin.txt line to one recurring Google event (RRULE).
+ * Done occurrences are excluded with EXDATE.
+ *
+ * https://developers.google.com/calendar/api/guides/recurringevents
+ */
+public class GoogleRecurringEvents {
+
+	private GoogleRecurringEvents() {
+	}
+
+	/**
+	 * Calendar.add keeps the shortened day for all following months (31.01. ->
+	 * 28.02. -> 28.03.), a RRULE skips the months without that day. So these
+	 * rules are still synced as single events.
+	 */
+	public static boolean isSupported(Recurrence aRecurrence) {
+		switch (aRecurrence.getUnit()) {
+		case Calendar.MONTH:
+			return aRecurrence.getStartDayOfMonth() <= 28;
+		case Calendar.YEAR:
+			return !aRecurrence.isStartFebruary29();
+		case Calendar.WEEK_OF_YEAR:
+		case Calendar.DAY_OF_YEAR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	public static String getId(Recurrence aRecurrence) {
+		return GoogleEventIds.forRecurrence(new java.sql.Date(aRecurrence.getStart().getTime()) + "|"
+				+ aRecurrence.getUnit() + "|" + aRecurrence.getStep() + "|" + aRecurrence.getInfo());
+	}
+
+	/**
+	 * The series starts at the first occurrence still tracked: earlier ones are
+	 * forgotten or done, the overdue ones are synced as single events.
+	 *
+	 * @param aFrom midnight of today
+	 * @return the first occurrence at or after aFrom
+	 */
+	public static Date getFirstOccurrence(Recurrence aRecurrence, Date aFrom) {
+		List<Date> tempOccurrences = aRecurrence.getOccurrences();
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.setTime(aRecurrence.getStart());
+		for (Date tempOccurrence : tempOccurrences) {
+			if (!tempOccurrence.before(aFrom)) {
+				return tempOccurrence;
+			}
+			tempCal.setTime(tempOccurrence);
+		}
+		// supported rules keep the day of month, so stepping on gives the series
+		while (tempCal.getTime().before(aFrom)) {
+			tempCal.add(aRecurrence.getUnit(), aRecurrence.getStep());
+		}
+		return tempCal.getTime();
+	}
+
+	/**
+	 * @param aFirst     the first occurrence of the series, see
+	 *                   getFirstOccurrence
+	 * @param aDeadlines the deadlines of aRecurrence, the done ones are excluded
+	 */
+	public static List<String> getRecurrenceLines(Recurrence aRecurrence, Date aFirst, List<Deadline> aDeadlines,
+			TimeZone aTimeZone) {
+		List<String> tempLines = new ArrayList<>(2);
+		tempLines.add("RRULE:FREQ=" + getFrequency(aRecurrence.getUnit()) + ";INTERVAL=" + aRecurrence.getStep());
+		Set<String> tempOpenDays = new HashSet<>();
+		for (Deadline tempDeadline : aDeadlines) {
+			if (!tempDeadline.isDone()) {
+				tempOpenDays.add(getDay(tempDeadline.getWhen()));
+			}
+		}
+		boolean tempWholeDay = aRecurrence.createDeadline(aRecurrence.getStart()).isWholeDayEvent();
+		SimpleDateFormat tempDateTimeFormat = new SimpleDateFormat("yyyyMMdd'T'HHmmss");
+		tempDateTimeFormat.setTimeZone(aTimeZone);
+		StringBuilder tempExDates = new StringBuilder();
+		for (Date tempOccurrence : aRecurrence.getOccurrences()) {
+			String tempDay = getDay(tempOccurrence);
+			if (tempOccurrence.before(aFirst) || tempOpenDays.contains(tempDay)) {
+				continue;
+			}
+			if (tempExDates.length() > 0) {
+				tempExDates.append(',');
+			}
+			if (tempWholeDay) {
+				tempExDates.append(tempDay);
+			} else {
+				tempExDates.append(tempDateTimeFormat.format(aRecurrence.createDeadline(tempOccurrence).getWhen()));
+			}
+		}
+		if (tempExDates.length() > 0) {
+			if (tempWholeDay) {
+				tempLines.add("EXDATE;VALUE=DATE:" + tempExDates);
+			} else {
+				tempLines.add("EXDATE;TZID=" + aTimeZone.getID() + ":" + tempExDates);
+			}
+		}
+		return tempLines;
+	}
+
+	private static String getFrequency(int aUnit) {
+		switch (aUnit) {
+		case Calendar.YEAR:
+			return "YEARLY";
+		case Calendar.MONTH:
+			return "MONTHLY";
+		case Calendar.WEEK_OF_YEAR:
+			return "WEEKLY";
+		default:
+			return "DAILY";
+		}
+	}
+
+	/**
+	 * @return yyyyMMdd in the default time zone
+	 */
+	static String getDay(Date aDate) {
+		return new SimpleDateFormat("yyyyMMdd").format(aDate);
+	}
+
+	/**
+	 * @return the day of the occurrence an instance override of a recurring event
+	 *         replaces, null if unknown
+	 */
+	static String getOriginalDay(Event aInstance) {
+		EventDateTime tempOriginalStart = aInstance.getOriginalStartTime();
+		if (tempOriginalStart == null) {
+			return null;
+		}
+		if (tempOriginalStart.getDateTime() != null) {
+			return getDay(new Date(tempOriginalStart.getDateTime().getValue()));
+		}
+		if (tempOriginalStart.getDate() != null) {
+			return tempOriginalStart.getDate().toStringRfc3339().replace("-", "");
+		}
+		return null;
+	}
+}
@@ -9,37 +9,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.client.util.DateTime;
-import com.google.api.services.calendar.Calendar.Events.Delete;
-import com.google.api.services.calendar.Calendar.Events.Insert;
-import com.google.api.services.calendar.Calendar.Events.Patch;
-import com.google.api.services.calendar.CalendarScopes;
 import com.google.api.services.calendar.model.CalendarList;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
@@ -47,11 +38,12 @@ import com.google.api.services.calendar.model.Event.ExtendedProperties;
 import com.google.api.services.calendar.model.EventDateTime;
 import com.google.api.services.calendar.model.Events;
 
+import de.quaddy_services.deadlinereminder.DateTimeCodec;
 import de.quaddy_services.deadlinereminder.Deadline;
 import de.quaddy_services.deadlinereminder.DeadlineComparator;
+import de.quaddy_services.deadlinereminder.Recurrence;
 import de.quaddy_services.deadlinereminder.Storage;
 import de.quaddy_services.deadlinereminder.file.FileStorage;
-import de.quaddy_services.deadlinereminder.gui.DeadlineGui;
 
 /**
  * https://code.google.com/apis/console/
@@ -66,9 +58,57 @@ public class GoogleSync {
 	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleSync.class);
 	private static final boolean DEBUG = false;
 
-	private static final DateFormat DATE_FORMAT = new SimpleDateFormat("dd.MM.yy");
+	/**
+	 * Use the nextSyncToken of Events.list to only fetch the changes since the
+	 * last sync. -Ddeadlinereminder.incrementalSync=false to always list all
+	 * events.
+	 */
+	private static final boolean INCREMENTAL_SYNC = Boolean
+			.parseBoolean(System.getProperty("deadlinereminder.incrementalSync", "true"));
+
+	/**
+	 * Without syncToken only list the events from yesterday up to the too far
+	 * away date. -Ddeadlinereminder.listWindow=false to list all.
+	 */
+	private static final boolean LIST_WINDOW = Boolean
+			.parseBoolean(System.getProperty("deadlinereminder.listWindow", "true"));
+
+	/**
+	 * -Ddeadlinereminder.recurringEvents=true to sync a repeating termin.txt line
+	 * as one recurring Google event instead of one event per occurrence.
+	 */
+	private static final boolean RECURRING_EVENTS = Boolean
+			.parseBoolean(System.getProperty("deadlinereminder.recurringEvents", "false"));
+
+	/**
+	 * Overdue events keep a stable id and are moved to today with one patch.
+	 * -Ddeadlinereminder.overdueRollover=false to delete and insert them every
+	 * day.
+	 */
+	private static final boolean OVERDUE_ROLLOVER = Boolean
+			.parseBoolean(System.getProperty("deadlinereminder.overdueRollover", "true"));
+
+	/**
+	 * Event ids computed from date and text of termin.txt entries, so a repeated
+	 * insert is a 409 instead of a duplicate. -Ddeadlinereminder.deterministicIds=false
+	 * to let Google choose the ids.
+	 */
+	private static final boolean DETERMINISTIC_IDS = Boolean
+			.parseBoolean(System.getProperty("deadlinereminder.deterministicIds", "true"));
+
+	/**
+	 * Only the fields read by push(..)
+	 */
+	private static final String LIST_FIELDS = "nextPageToken,nextSyncToken,"
+			+ "items(id,status,summary,start,end,transparency,created,updated,extendedProperties,"
+			+ "recurrence,recurringEventId,originalStartTime)";
+
 	private DateTime lastSyncStarted = null;
 	private int syncErrorCount = 0;
+	private GoogleEventCache eventCache = null;
+	private GoogleOutbox outbox = null;
+	private final GoogleRateLimiter rateLimiter = new GoogleRateLimiter();
+	private final GoogleClientManager clientManager = new GoogleClientManager();
 
 	private Thread t = null;
 	private LogListener logListener = null;
@@ -110,6 +150,7 @@ public class GoogleSync {
 						String tempUserName = System.getProperty("user.name", "-");
 						PersistentCredentialStore tempPersistentCredentialStore = new PersistentCredentialStore();
 						tempPersistentCredentialStore.delete(tempUserName);
+						clientManager.invalidate(tempUserName);
 					}
 					OAuth2Native.clearCache();
 				} finally {
@@ -130,6 +171,13 @@ public class GoogleSync {
 		}
 	}
 
+	private void logError(String aString) {
+		LOGGER.error(aString);
+		if (getLogListener() != null) {
+			getLogListener().error(aString);
+		}
+	}
+
 	private void logError(String aString, Exception aE) {
 		LOGGER.error(aString, aE);
 		if (getLogListener() != null) {
@@ -188,39 +236,23 @@ public class GoogleSync {
 	 */
 	protected boolean push(List<Deadline> aOpenDeadlines, DoneSelectionListener aDoneSelectionListener)
 			throws Exception {
-		/** Global instance of the HTTP transport. */
-		HttpTransport HTTP_TRANSPORT = createNetHttpTransport();
-
-		/** Global instance of the JSON factory. */
-		JacksonFactory JSON_FACTORY = new JacksonFactory();
-		// authorization
-		Credential credential = OAuth2Native.authorize(HTTP_TRANSPORT, JSON_FACTORY, new LocalServerReceiver(),
-				Arrays.asList(CalendarScopes.CALENDAR));
-		// set up global Calendar instance
-		com.google.api.services.calendar.Calendar client = new com.google.api.services.calendar.Calendar.Builder(
-				HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName("DeadlineReminder/1.0")
-				.setHttpRequestInitializer(credential).build();
+		String tempUserName = System.getProperty("user.name", "-");
+		com.google.api.services.calendar.Calendar client = clientManager.getClient(tempUserName);
 
 		try {
-			return push(client, aOpenDeadlines, aDoneSelectionListener);
+			// a copy, aOpenDeadlines may be a snapshot of the model
+			return push(client, new ArrayList<>(aOpenDeadlines), aDoneSelectionListener);
 		} catch (com.google.api.client.auth.oauth2.TokenResponseException e) {
 			logError("OAuth error", e);
 			logInfo("Next time request new authentication token.");
-			String tempUserName = System.getProperty("user.name", "-");
 			PersistentCredentialStore tempPersistentCredentialStore = new PersistentCredentialStore();
 			tempPersistentCredentialStore.delete(tempUserName);
 			OAuth2Native.clearCache();
+			clientManager.invalidate(tempUserName);
 			throw e;
 		}
 	}
 
-	/**
-	 *
-	 */
-	private NetHttpTransport createNetHttpTransport() {
-		return new NetHttpTransport.Builder().build();
-	}
-
 	private boolean push(com.google.api.services.calendar.Calendar client, List<Deadline> aOpenDeadlines,
 			DoneSelectionListener aDoneSelectionListener) throws IOException {
 
@@ -229,7 +261,7 @@ public class GoogleSync {
 		com.google.api.services.calendar.Calendar.CalendarList.List tempGoogleCalendarList = client.calendarList()
 				.list();
 		// https://developers.google.com/calendar/v3/reference/calendarList/list
-		CalendarList tempCalendarList = config(tempGoogleCalendarList).execute();
+		CalendarList tempCalendarList = rateLimiter.execute(config(tempGoogleCalendarList));
 		String tempDeadlineCalendarId = null;
 		if (tempCalendarList.getItems() != null) {
 			for (CalendarListEntry tempEntry : tempCalendarList.getItems()) {
@@ -250,38 +282,71 @@ public class GoogleSync {
 			return false;
 		}
 
+		GoogleOutbox tempOutbox = getOutbox(client);
+		tempOutbox.setCalendarId(tempDeadlineCalendarId);
+		GoogleBatch tempBatch = new GoogleBatch(client, tempDeadlineCalendarId, GoogleBatch.DEFAULT_BATCH_SIZE,
+				rateLimiter, tempOutbox.createResultListener(createBatchResultListener()));
+		if (!tempOutbox.isEmpty()) {
+			// e.g. network was gone during the last sync. Send before listing, so the
+			// changes are already part of the list.
+			logInfo("Send changes of last sync: " + tempOutbox.size());
+			tempOutbox.send(tempBatch);
+		}
+
 		Calendar tempTooFarAway = Calendar.getInstance();
 		tempTooFarAway.add(Calendar.YEAR, 2);
 
+		// an older event can not match an open deadline any more
+		Date tempReconcileStart = getYesterday();
+		for (Deadline tempDeadline : aOpenDeadlines) {
+			if (tempDeadline.getWhen().before(tempReconcileStart)) {
+				tempReconcileStart = midnight(tempDeadline.getWhen());
+			}
+		}
 		ArrayList<Event> tempCurrentGoogleEvents;
-		tempCurrentGoogleEvents = getCurrentItems(client, tempDeadlineCalendarId);
+		tempCurrentGoogleEvents = getCurrentItems(client, tempDeadlineCalendarId, tempReconcileStart,
+				tempTooFarAway.getTime());
 		logInfo("Already at Google (including history+deleted): " + tempCurrentGoogleEvents.size());
 
+		Map<String, List<Deadline>> tempDeadlinesById = new HashMap<>();
+		for (Deadline tempDeadline : aOpenDeadlines) {
+			String tempDeadlineId = tempDeadline.getId();
+			if (tempDeadlineId != null) {
+				tempDeadlinesById.computeIfAbsent(tempDeadlineId, k -> new ArrayList<>(1)).add(tempDeadline);
+			}
+		}
 		List<Deadline> tempRemovedDeadlines = new ArrayList<>();
+		Set<String> tempCancelledIds = new HashSet<>();
 		for (Iterator<Event> iCurrent = tempCurrentGoogleEvents.iterator(); iCurrent.hasNext();) {
 			Event tempGoogleEvent = iCurrent.next();
 			String tempStatus = tempGoogleEvent.getStatus();
 			if ("cancelled".equals(tempStatus)) {
 				// deleted
 				iCurrent.remove();
+				tempCancelledIds.add(tempGoogleEvent.getId());
 				// and remove from deadlines shown in the gui
-				String tempGoogleId = tempGoogleEvent.getId();
-				for (Iterator<Deadline> iDeadline = aOpenDeadlines.iterator(); iDeadline.hasNext();) {
-					Deadline tempDeadline = iDeadline.next();
-					String tempDeadlineId = tempDeadline.getId();
-					if (tempDeadlineId != null && tempGoogleId.equals(tempDeadlineId)) {
-						iDeadline.remove();
-						tempRemovedDeadlines.add(tempDeadline);
-					}
+				List<Deadline> tempSameId = tempDeadlinesById.remove(tempGoogleEvent.getId());
+				if (tempSameId != null) {
+					tempRemovedDeadlines.addAll(tempSameId);
 				}
 			}
 		}
 		if (tempRemovedDeadlines.size() > 0) {
+			Set<Deadline> tempRemoved = Collections.newSetFromMap(new IdentityHashMap<>());
+			tempRemoved.addAll(tempRemovedDeadlines);
+			aOpenDeadlines.removeIf(tempRemoved::contains);
 			aDoneSelectionListener.removeDeadlines(tempRemovedDeadlines);
 		}
 		logInfo("Already at Google (including history): " + tempCurrentGoogleEvents.size());
 
-		Map<Event, Deadline> tempNewEvents = new IdentityHashMap<>();
+		Set<Deadline> tempRecurringDeadlines = Collections.newSetFromMap(new IdentityHashMap<>());
+		if (RECURRING_EVENTS) {
+			syncRecurringEvents(tempCurrentGoogleEvents, tempCancelledIds, aOpenDeadlines, tempOutbox,
+					aDoneSelectionListener, tempRecurringDeadlines);
+		}
+
+		GoogleEventIndex<Deadline> tempNewEvents = new GoogleEventIndex<>();
+		Set<String> tempNewEventIds = new HashSet<>();
 		Map<String, Deadline> tempManuallyAddedByGoogleIds = new HashMap<>();
 		for (Deadline tempDeadline : aOpenDeadlines) {
 			if (tempDeadline.isAddedByGoogle()) {
@@ -290,22 +355,30 @@ public class GoogleSync {
 			if (tempDeadline.getWhen().after(tempTooFarAway.getTime())) {
 				continue;
 			}
+			if (tempRecurringDeadlines.contains(tempDeadline)) {
+				// part of a recurring event
+				continue;
+			}
 			Event event = createGoogleEventFromDeadline(tempDeadline);
+			if (event.getId() != null && !tempNewEventIds.add(event.getId())) {
+				// Same date and text twice, one event at Google is enough.
+				LOGGER.info("Same event twice: " + shortInfo(event));
+				continue;
+			}
 			tempNewEvents.put(event, tempDeadline);
 		}
 		logInfo("Matching local events: " + tempNewEvents.size());
-		List<Event> tempAlreadyKeptEvents = new ArrayList<>();
+		GoogleEventIndex<Event> tempAlreadyKeptEvents = new GoogleEventIndex<>();
 		Set<Event> tempDuplicateGoogleEvents = new HashSet<>();
 		long tempNow = System.currentTimeMillis();
 		for (Iterator<Event> iCurrent = tempCurrentGoogleEvents.iterator(); iCurrent.hasNext();) {
 			Event tempGoogleEvent = iCurrent.next();
 			if ("transparent".equals(tempGoogleEvent.getTransparency())) {
-				Event tempSameEvent = getSameEvent(tempNewEvents.keySet(), tempGoogleEvent);
+				Event tempSameEvent = tempNewEvents.getSame(tempGoogleEvent);
 				if (tempSameEvent != null) {
 					Deadline tempDeadline = tempNewEvents.get(tempSameEvent);
 					logInfo("Google calendar entry was marked available and so make it done. tempDeadline="
 							+ tempDeadline);
-					tempDeadline.setDone(true);
 					aDoneSelectionListener.deadlineDone(tempDeadline);
 				}
 			}
@@ -318,9 +391,19 @@ public class GoogleSync {
 			if (tempSummary.startsWith(OVERDUE_MARKER)) {
 				// Overdue events are deleted and recreated next day. The original event is
 				// already kept in calendar.
-				Event tempSameEvent = getSameEvent(tempNewEvents.keySet(), tempGoogleEvent);
+				Event tempSameEvent = tempNewEvents.getSame(tempGoogleEvent);
 				if (tempSameEvent != null) {
-					LOGGER.info("Overdue " + tempSummary + " already correct.");
+					if (isSameId(tempGoogleEvent, tempSameEvent)
+							&& isChanged(tempSameEvent, tempGoogleEvent)) {
+						logInfo("Move overdue " + tempSummary + " to " + tempSameEvent.getStart());
+						Event tempPatch = new Event();
+						tempPatch.setSummary(tempSameEvent.getSummary());
+						tempPatch.setStart(tempSameEvent.getStart());
+						tempPatch.setEnd(tempSameEvent.getEnd());
+						tempOutbox.patch(tempGoogleEvent, tempPatch);
+					} else {
+						LOGGER.info("Overdue " + tempSummary + " already correct.");
+					}
 					iCurrent.remove(); // do not delete on Google
 					// do not add
 					if (tempNewEvents.remove(tempSameEvent) == null) {
@@ -328,13 +411,13 @@ public class GoogleSync {
 					}
 					continue;
 				}
-			} else if (isContainedIn(tempNewEvents.keySet(), tempGoogleEvent)) {
+			} else if (tempNewEvents.containsSame(tempGoogleEvent)) {
 				// Is still open. Avoid adding past events twice.
-				if (isContainedIn(tempAlreadyKeptEvents, tempGoogleEvent)) {
+				if (tempAlreadyKeptEvents.containsSame(tempGoogleEvent)) {
 					LOGGER.info("Duplicate Google entry: " + tempSummary + " event=" + tempGoogleEvent);
 					tempDuplicateGoogleEvents.add(tempGoogleEvent);
 				} else {
-					tempAlreadyKeptEvents.add(tempGoogleEvent);
+					tempAlreadyKeptEvents.put(tempGoogleEvent, tempGoogleEvent);
 				}
 			} else {
 				if (tempDate != null && tempDate.getValue() < tempNow) {
@@ -360,29 +443,22 @@ public class GoogleSync {
 				LOGGER.info("Will be deleted below: {} as duplicate.", tempCurrentGoogleEvent);
 				continue;
 			}
-			boolean tempRemoved = false;
-			for (Iterator<Map.Entry<Event, Deadline>> iNew = tempNewEvents.entrySet().iterator(); iNew.hasNext();) {
-				Map.Entry<Event, Deadline> tempMapEntry = iNew.next();
-				Event tempNewEvent = tempMapEntry.getKey();
-				boolean tempSameId = isSameId(tempCurrentGoogleEvent, tempNewEvent);
-				if (tempSameId || isSame(tempCurrentGoogleEvent, tempNewEvent)) {
-					if (tempSameId) {
-						if (isUpdated(tempNewEvent, tempCurrentGoogleEvent)) {
-							Deadline tempDeadline = createDeadlineFromGoogleEvent(tempCurrentGoogleEvent);
-							logInfo("Add the updated values to from-google file "
-									+ tempDeadline.getTextWithoutRepeatingInfo());
-							aDoneSelectionListener.addNewDeadline(tempDeadline);
-						}
+			Event tempNewEvent = tempNewEvents.getSame(tempCurrentGoogleEvent);
+			if (tempNewEvent != null) {
+				// Only entries of termin-added-by-google.txt are updated from Google
+				if (tempNewEvents.get(tempNewEvent).isAddedByGoogle()
+						&& isSameId(tempCurrentGoogleEvent, tempNewEvent)) {
+					if (isUpdated(tempNewEvent, tempCurrentGoogleEvent)) {
+						Deadline tempDeadline = createDeadlineFromGoogleEvent(tempCurrentGoogleEvent);
+						logInfo("Add the updated values to from-google file "
+								+ tempDeadline.getTextWithoutRepeatingInfo());
+						aDoneSelectionListener.addNewDeadline(tempDeadline);
 					}
-					LOGGER.debug("Nothing to do, just keep both entries: tempNewEvent=" + shortInfo(tempNewEvent)
-							+ " tempCurrentGoogleEvent=" + shortInfo(tempCurrentGoogleEvent));
-					iCurrent.remove();
-					iNew.remove();
-					tempRemoved = true;
-					break;
 				}
-			}
-			if (tempRemoved) {
+				LOGGER.debug("Nothing to do, just keep both entries: tempNewEvent=" + shortInfo(tempNewEvent)
+						+ " tempCurrentGoogleEvent=" + shortInfo(tempCurrentGoogleEvent));
+				iCurrent.remove();
+				tempNewEvents.remove(tempNewEvent);
 				continue;
 			}
 			EventDateTime tempStart = tempCurrentGoogleEvent.getStart();
@@ -401,7 +477,9 @@ public class GoogleSync {
 					if ("transparent".equals(tempCurrentGoogleEvent.getTransparency())) {
 						// "transparent" will be ticked as done on next sync.
 						logInfo("Make the wholeday event not checked: " + tempSummary);
-						googleUpdateEventTransparency(client, tempDeadlineCalendarId, tempCurrentGoogleEvent, "opaque");
+						Event tempPatch = new Event();
+						tempPatch.setTransparency("opaque");
+						tempOutbox.patch(tempCurrentGoogleEvent, tempPatch);
 					}
 				}
 				Deadline tempManuallyAddedByGoogle = tempManuallyAddedByGoogleIds.get(tempCurrentGoogleEvent.getId());
@@ -422,77 +500,184 @@ public class GoogleSync {
 		logInfo("Already at Google to be deleted: " + tempCurrentGoogleEvents.size());
 		logInfo("To be added to Google: " + tempNewEvents.size());
 		for (Event tempEvent : tempNewEvents.keySet()) {
-			googleInsertEvent(client, tempDeadlineCalendarId, tempEvent);
-			slowDown();
+			insertOrRestore(tempOutbox, tempEvent, tempCancelledIds);
 		}
 
 		logInfo("Now delete: " + tempCurrentGoogleEvents.size());
 		for (Event tempEvent : tempCurrentGoogleEvents) {
-			googleDeleteEvent(client, tempDeadlineCalendarId, tempEvent);
-			slowDown();
+			logInfo("googleDeleteEvent " + tempEvent.getStart() + " " + getSummary(tempEvent) + " " + tempEvent);
+			tempOutbox.delete(tempEvent);
+		}
+		tempOutbox.send(tempBatch);
+		if (eventCache != null) {
+			saveEventCache(client);
+		}
+		if (!tempBatch.getFailed().isEmpty()) {
+			throw new IOException(tempBatch.getFailed().size() + " of the Google calendar changes failed, first: "
+					+ tempBatch.getFailed().get(0));
 		}
 		setLastSyncStarted(new DateTime(tempStartMillis));
+		logInfo("Finished with " + rateLimiter);
 		return true;
 	}
 
+	/**
+	 * One recurring Google event per repeating termin.txt line. The occurrences
+	 * from today on are covered by it, overdue ones are still synced as single
+	 * events.
+	 *
+	 * @param aCurrentGoogleEvents the recurring events and their instance
+	 *                             overrides are removed
+	 * @param aCovered             gets the deadlines covered by a recurring event
+	 */
+	private void syncRecurringEvents(List<Event> aCurrentGoogleEvents, Set<String> aCancelledIds,
+			List<Deadline> aOpenDeadlines, GoogleOutbox aOutbox, DoneSelectionListener aDoneSelectionListener,
+			Set<Deadline> aCovered) {
+		Map<String, Recurrence> tempRecurrences = new LinkedHashMap<>();
+		Map<String, List<Deadline>> tempDeadlinesById = new HashMap<>();
+		for (Deadline tempDeadline : aOpenDeadlines) {
+			Recurrence tempRecurrence = tempDeadline.getRecurrence();
+			if (tempRecurrence != null && GoogleRecurringEvents.isSupported(tempRecurrence)) {
+				String tempId = GoogleRecurringEvents.getId(tempRecurrence);
+				tempRecurrences.put(tempId, tempRecurrence);
+				tempDeadlinesById.computeIfAbsent(tempId, k -> new ArrayList<>()).add(tempDeadline);
+			}
+		}
+		Map<String, Event> tempExisting = new HashMap<>();
+		// done at Google, the deadlines themselves are changed by the listener only
+		Set<Deadline> tempDone = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Iterator<Event> iCurrent = aCurrentGoogleEvents.iterator(); iCurrent.hasNext();) {
+			Event tempGoogleEvent = iCurrent.next();
+			String tempRecurringEventId = tempGoogleEvent.getRecurringEventId();
+			if (GoogleEventIds.isRecurrenceId(tempRecurringEventId)) {
+				// Changed occurrence of a recurring event
+				iCurrent.remove();
+				List<Deadline> tempDeadlines = tempDeadlinesById.get(tempRecurringEventId);
+				if (tempDeadlines != null && "transparent".equals(tempGoogleEvent.getTransparency())) {
+					String tempDay = GoogleRecurringEvents.getOriginalDay(tempGoogleEvent);
+					for (Deadline tempDeadline : tempDeadlines) {
+						if (!tempDeadline.isDone() && GoogleRecurringEvents.getDay(tempDeadline.getWhen()).equals(tempDay)
+								&& tempDone.add(tempDeadline)) {
+							logInfo("Google calendar occurrence was marked available and so make it done. tempDeadline="
+									+ tempDeadline);
+							aDoneSelectionListener.deadlineDone(tempDeadline);
+						}
+					}
+				}
+			} else if (GoogleEventIds.isRecurrenceId(tempGoogleEvent.getId())
+					&& tempGoogleEvent.getRecurrence() != null) {
+				iCurrent.remove();
+				tempExisting.put(tempGoogleEvent.getId(), tempGoogleEvent);
+			}
+		}
+		Date tempTodayMorning = midnight(new Date());
+		for (Map.Entry<String, Recurrence> tempEntry : tempRecurrences.entrySet()) {
+			String tempId = tempEntry.getKey();
+			List<Deadline> tempDeadlines = tempDeadlinesById.get(tempId);
+			for (Deadline tempDeadline : tempDeadlines) {
+				if (!tempDeadline.getWhen().before(tempTodayMorning)) {
+					aCovered.add(tempDeadline);
+				}
+			}
+			List<Deadline> tempNotDone = new ArrayList<>(tempDeadlines);
+			tempNotDone.removeIf(tempDone::contains);
+			Event tempWanted = createGoogleEventFromRecurrence(tempEntry.getValue(), tempNotDone);
+			Event tempGoogleEvent = tempExisting.remove(tempId);
+			if (tempGoogleEvent == null) {
+				logInfo("Add recurring event " + tempWanted.getSummary() + " " + tempWanted.getRecurrence());
+				insertOrRestore(aOutbox, tempWanted, aCancelledIds);
+			} else if (isChanged(tempWanted, tempGoogleEvent)) {
+				logInfo("Update recurring event " + tempWanted.getSummary() + " " + tempWanted.getRecurrence());
+				aOutbox.patch(tempGoogleEvent, tempWanted);
+			}
+		}
+		for (Event tempGoogleEvent : tempExisting.values()) {
+			logInfo("Delete recurring event " + tempGoogleEvent.getSummary());
+			aOutbox.delete(tempGoogleEvent);
+		}
+		logInfo("Recurring events: " + tempRecurrences.size() + " covering " + aCovered.size() + " deadlines");
+	}
+
+	/**
+	 * An event deleted at Google keeps its id, so it can not be inserted again.
+	 */
+	private void insertOrRestore(GoogleOutbox aOutbox, Event aEvent, Set<String> aCancelledIds) {
+		if (aEvent.getId() != null && aCancelledIds.contains(aEvent.getId())) {
+			logInfo("Restore deleted " + aEvent.getStart() + " " + aEvent.getSummary());
+			aOutbox.patch(aEvent, aEvent.clone().setStatus("confirmed"));
+		} else {
+			aOutbox.insert(aEvent);
+		}
+	}
+
+	private Event createGoogleEventFromRecurrence(Recurrence aRecurrence, List<Deadline> aDeadlines) {
+		Date tempFirstDay = GoogleRecurringEvents.getFirstOccurrence(aRecurrence, midnight(new Date()));
+		Deadline tempFirst = aRecurrence.createDeadline(tempFirstDay);
+		Event event = new Event();
+		event.setId(GoogleRecurringEvents.getId(aRecurrence));
+		ExtendedProperties tempExtendedProperties = new ExtendedProperties();
+		event.setExtendedProperties(tempExtendedProperties);
+		String tempText = tempFirst.getTextWithoutRepeatingInfo();
+		tempExtendedProperties.put("TextWithoutRepeatingInfo", tempText);
+		event.setSummary(tempText.trim());
+		boolean tempIsWholeDayEvent = tempFirst.isWholeDayEvent();
+		setStartAndEnd(event, tempFirst.getWhen(), tempFirst.getWhenEndTime(), tempIsWholeDayEvent);
+		if (!tempIsWholeDayEvent) {
+			// required for recurring events
+			event.getStart().setTimeZone(timeZone.getID());
+			event.getEnd().setTimeZone(timeZone.getID());
+		}
+		event.setRecurrence(GoogleRecurringEvents.getRecurrenceLines(aRecurrence, tempFirstDay, aDeadlines, timeZone));
+		event.setDescription("READ-ONLY. See termin.txt\n\n - since ("
+				+ DateTimeCodec.formatDateWithDay(aRecurrence.getStart()) + ")");
+		return event;
+	}
+
 	private String shortInfo(Event aNewEvent) {
 		EventDateTime tempStart = aNewEvent.getStart();
 		DateTime tempDate = tempStart.getDate();
 		String tempString = aNewEvent.getId() + " ";
 		if (tempDate != null) {
-			tempString += DATE_FORMAT.format(tempDate.getValue());
+			tempString += DateTimeCodec.formatShortDate(tempDate.getValue());
 		}
 		DateTime tempDateTime = tempStart.getDateTime();
 		if (tempDateTime != null) {
-			tempString += DATE_FORMAT.format(tempDateTime.getValue());
+			tempString += DateTimeCodec.formatShortDate(tempDateTime.getValue());
 		}
 		tempString += " " + getSummary(aNewEvent);
 		return tempString;
 	}
 
-	private void googleDeleteEvent(com.google.api.services.calendar.Calendar aClient, String aDeadlineCalendarId,
-			Event anEvent) throws IOException, GoogleJsonResponseException {
-		String tempSummary = getSummary(anEvent);
-		EventDateTime tempStart = anEvent.getStart();
-
-		Delete tempDelete = aClient.events().delete(aDeadlineCalendarId, anEvent.getId());
-		try {
-			logInfo("googleDeleteEvent " + tempStart + " " + tempSummary + " " + anEvent);
-			config(tempDelete).execute();
-		} catch (GoogleJsonResponseException e) {
-			logError("Error deleting " + tempStart + " " + getSummary(anEvent) + " " + anEvent, e);
-			throw e;
-		}
-	}
+	private GoogleBatch.ResultListener createBatchResultListener() {
+		return new GoogleBatch.ResultListener() {
 
-	private void googleInsertEvent(com.google.api.services.calendar.Calendar aClient, String aDeadlineCalendarId,
-			Event anEvent) throws IOException, GoogleJsonResponseException {
-		EventDateTime tempStart = anEvent.getStart();
-		Insert tempConfig = config(aClient.events().insert(aDeadlineCalendarId, anEvent));
-		try {
-			Event tempResult = tempConfig.execute();
-			logInfo("Added " + tempStart + " " + getSummary(anEvent) + " " + tempResult);
-		} catch (GoogleJsonResponseException e) {
-			logError("Error adding " + tempStart + " " + getSummary(anEvent) + " " + anEvent, e);
-			throw e;
-		}
-	}
+			@Override
+			public void success(GoogleBatch.Operation aOperation, Event aResult) {
+				if (eventCache != null) {
+					eventCache.applied(aOperation, aResult);
+				}
+				Event tempEvent = aOperation.getEvent();
+				switch (aOperation.getType()) {
+				case INSERT:
+					logInfo("Added " + tempEvent.getStart() + " " + getSummary(tempEvent) + " " + aResult);
+					break;
+				case PATCH:
+					logInfo("Updated " + tempEvent.getStart() + " " + getSummary(tempEvent) + " "
+							+ aOperation.getPatch() + " " + aResult);
+					break;
+				default:
+					LOGGER.debug("Deleted " + tempEvent.getStart() + " " + getSummary(tempEvent));
+					break;
+				}
+			}
 
-	private void googleUpdateEventTransparency(com.google.api.services.calendar.Calendar aClient,
-			String aDeadlineCalendarId, Event anEvent, String aTransparency)
-			throws IOException, GoogleJsonResponseException {
-		EventDateTime tempStart = anEvent.getStart();
-		Event tempPatch = new Event();
-		tempPatch.setTransparency(aTransparency);
-		Patch tempConfig = config(aClient.events().patch(aDeadlineCalendarId, anEvent.getId(), tempPatch));
-		try {
-			Event tempResult = tempConfig.execute();
-			logInfo("Updated " + tempStart + " " + getSummary(anEvent) + " Transparence=" + aTransparency + " "
-					+ tempResult);
-		} catch (GoogleJsonResponseException e) {
-			logError("Error adding " + tempStart + " " + getSummary(anEvent) + " " + anEvent, e);
-			throw e;
-		}
+			@Override
+			public void failure(GoogleBatch.Operation aOperation, GoogleJsonError aError) {
+				Event tempEvent = aOperation.getEvent();
+				logError("Error on " + aOperation.getType() + " " + tempEvent.getStart() + " " + getSummary(tempEvent)
+						+ " " + tempEvent + ": " + aError);
+			}
+		};
 	}
 
 	private boolean isSameId(Event aEvent, Event aNewEvent) {
@@ -673,24 +858,6 @@ public class GoogleSync {
 		return lastSyncStarted;
 	}
 
-	private boolean isContainedIn(Collection<Event> aNewEvents, Event aEvent) {
-		for (Event tempNewEvent : aNewEvents) {
-			if (isSame(aEvent, tempNewEvent)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	private Event getSameEvent(Collection<Event> aNewEvents, Event aEvent) {
-		for (Event tempNewEvent : aNewEvents) {
-			if (isSame(aEvent, tempNewEvent)) {
-				return tempNewEvent;
-			}
-		}
-		return null;
-	}
-
 	private void logInfo(String aString) {
 		LOGGER.info(aString);
 		if (getLogListener() != null) {
@@ -698,27 +865,6 @@ public class GoogleSync {
 		}
 	}
 
-	private void logDebug(String aString) {
-		LOGGER.debug(aString);
-	}
-
-	/**
-	 * Avoid
-	 *
-	 * com.google.api.client.googleapis.json.GoogleJsonResponseException: 403
-	 * Forbidden { "code" : 403, "errors" : [ { "domain" : "usageLimits", "message"
-	 * : "Rate Limit Exceeded", "reason" : "rateLimitExceeded" } ], "message" :
-	 * "Rate Limit Exceeded"
-	 *
-	 */
-	private void slowDown() {
-		try {
-			Thread.sleep(1000);
-		} catch (InterruptedException e) {
-			logWarn("Error", e);
-		}
-	}
-
 	private void logWarn(String aString, Throwable aE) {
 		LOGGER.warn(aString, aE);
 		if (getLogListener() != null) {
@@ -726,49 +872,80 @@ public class GoogleSync {
 		}
 	}
 
-	private boolean isSame(Event aOldEvent, Event aNewEvent) {
-		if (isSameId(aOldEvent, aNewEvent)) {
-			return true;
+	private Date getYesterday() {
+		Calendar tempYesterday = Calendar.getInstance();
+		tempYesterday.setTime(midnight(new Date()));
+		tempYesterday.add(Calendar.DAY_OF_YEAR, -1);
+		return tempYesterday.getTime();
+	}
+
+	/**
+	 * @param aReconcileStart events which ended before are not cached
+	 * @param aTooFarAway     later events are not needed
+	 */
+	ArrayList<Event> getCurrentItems(com.google.api.services.calendar.Calendar client,
+			String tempDeadlineCalendarId, Date aReconcileStart, Date aTooFarAway) throws IOException {
+		if (!INCREMENTAL_SYNC) {
+			com.google.api.services.calendar.Calendar.Events.List tempList = createEventsList(client,
+					tempDeadlineCalendarId);
+			if (LIST_WINDOW) {
+				// Older events are kept as history in any case. Not combinable with a
+				// syncToken.
+				tempList.setTimeMin(new DateTime(getYesterday(), timeZone));
+				tempList.setTimeMax(new DateTime(aTooFarAway, timeZone));
+			}
+			return new ArrayList<Event>(listEvents(tempList).getItems());
 		}
-		String tempOldSummary = getSummary(aOldEvent);
-		String tempNewSummary = getSummary(aNewEvent);
-		if (tempOldSummary.equals(tempNewSummary) || tempOldSummary.trim().equals(tempNewSummary.trim())) {
-			EventDateTime tempOldStart = aOldEvent.getStart();
-			DateTime tempDT1 = tempOldStart.getDateTime();
-			EventDateTime tempNewStart = aNewEvent.getStart();
-			DateTime tempDT2 = tempNewStart.getDateTime();
-			if (tempDT1 != null && tempDT2 != null) {
-				if (tempDT1.equals(tempDT2)) {
-					return true;
-				}
-				logDebug("Same summary " + tempOldSummary + " but different startdate: " + tempDT1 + " " + tempDT2);
-			}
-			DateTime tempOldStartDate = tempOldStart.getDate();
-			DateTime tempNewStartDate = tempNewStart.getDate();
-			if (tempOldStartDate != null && tempNewStartDate != null) {
-				String tempD1 = tempOldStartDate.toString();
-				String tempD2 = tempNewStartDate.toString();
-				if (tempD1 != null && tempD2 != null) {
-					if (tempD1.equals(tempD2)) {
-						return true;
-					}
-					logDebug("Same summary " + tempOldSummary + " but different date: " + tempD1 + " " + tempD2);
+		GoogleEventCache tempCache = getEventCache(client);
+		if (tempCache.isSyncTokenFor(tempDeadlineCalendarId)) {
+			try {
+				com.google.api.services.calendar.Calendar.Events.List tempList = createEventsList(client,
+						tempDeadlineCalendarId);
+				tempList.setSyncToken(tempCache.getSyncToken());
+				Events tempChanges = listEvents(tempList);
+				logInfo("Changed at Google since last sync: " + tempChanges.getItems().size());
+				tempCache.merge(tempChanges.getItems(), tempChanges.getNextSyncToken());
+				tempCache.evictEndedBefore(aReconcileStart.getTime());
+				saveEventCache(client);
+				return tempCache.getEvents();
+			} catch (GoogleJsonResponseException e) {
+				if (e.getStatusCode() != 410) {
+					throw e;
 				}
+				// 410 Gone: syncToken expired, start again with a full sync
+				logInfo("syncToken is invalid, do a full sync: " + e.getStatusMessage());
+				tempCache.clear();
 			}
 		}
-		return false;
+		Events tempAll = listEvents(createEventsList(client, tempDeadlineCalendarId));
+		tempCache.reset(tempDeadlineCalendarId, tempAll.getItems(), tempAll.getNextSyncToken());
+		tempCache.evictEndedBefore(aReconcileStart.getTime());
+		saveEventCache(client);
+		return tempCache.getEvents();
 	}
 
-	private ArrayList<Event> getCurrentItems(com.google.api.services.calendar.Calendar client,
-			String tempDeadlineCalendarId) throws IOException {
+	private com.google.api.services.calendar.Calendar.Events.List createEventsList(
+			com.google.api.services.calendar.Calendar client, String tempDeadlineCalendarId) throws IOException {
 		com.google.api.services.calendar.Calendar.Events.List tempList = client.events().list(tempDeadlineCalendarId);
 		// https://developers.google.com/calendar/v3/reference/events/list
 		tempList.setShowDeleted(true);
+		tempList.setMaxResults(2500);
+		// https://developers.google.com/calendar/api/guides/performance#partial-response
+		tempList.setFields(LIST_FIELDS);
+		return tempList;
+	}
 
+	/**
+	 * No config(..): The response stays gzip compressed (Accept-Encoding and
+	 * "gzip" in the user agent)
+	 *
+	 * @return all pages in one Events with the nextSyncToken of the last page.
+	 */
+	private Events listEvents(com.google.api.services.calendar.Calendar.Events.List aList) throws IOException {
 		ArrayList<Event> tempCurrentEvents = new ArrayList<Event>();
 		while (true) {
 			if (DEBUG) {
-				InputStream tempExecuteAsInputStream = tempList.executeAsInputStream();
+				InputStream tempExecuteAsInputStream = aList.executeAsInputStream();
 				int a = 0;
 				while (0 < (a = tempExecuteAsInputStream.available())) {
 					byte[] tempB = new byte[a];
@@ -776,19 +953,52 @@ public class GoogleSync {
 					System.out.print(new String(tempB));
 				}
 			}
-			Events tempExecute = config(tempList).execute();
+			Events tempExecute = rateLimiter.execute(aList);
 			List<Event> tempItems = tempExecute.getItems();
 			if (tempItems != null) {
 				tempCurrentEvents.addAll(tempItems);
 			}
 			String tempNextPageToken = tempExecute.getNextPageToken();
 			if (tempNextPageToken == null) {
-				break;
+				Events tempResult = new Events();
+				tempResult.setItems(tempCurrentEvents);
+				tempResult.setNextSyncToken(tempExecute.getNextSyncToken());
+				return tempResult;
 			}
 			logInfo("Next page currentSize=" + tempCurrentEvents.size());
-			tempList.setPageToken(tempNextPageToken);
+			aList.setPageToken(tempNextPageToken);
+		}
+	}
+
+	private GoogleEventCache getEventCache(com.google.api.services.calendar.Calendar client) {
+		if (eventCache == null) {
+			eventCache = new GoogleEventCache();
+			eventCache.load(getEventCacheFile(), client.getJsonFactory());
+		}
+		return eventCache;
+	}
+
+	private GoogleOutbox getOutbox(com.google.api.services.calendar.Calendar client) {
+		if (outbox == null) {
+			outbox = new GoogleOutbox(new FileStorage().getGoogleOutboxFile(), client.getJsonFactory());
+			outbox.load();
 		}
-		return tempCurrentEvents;
+		return outbox;
+	}
+
+	File getEventCacheFile() {
+		return new FileStorage().getGoogleSyncFile();
+	}
+
+	private void saveEventCache(com.google.api.services.calendar.Calendar client) {
+		eventCache.save(getEventCacheFile(), client.getJsonFactory());
+	}
+
+	/**
+	 * Calls per second, throttled and retried calls.
+	 */
+	public GoogleRateLimiter getRateLimiter() {
+		return rateLimiter;
 	}
 
 	private <R extends AbstractGoogleClientRequest> R config(R aRequest) {
@@ -823,22 +1033,46 @@ public class GoogleSync {
 			tempIsWholeDayEvent = aDeadline.isWholeDayEvent();
 		}
 		String tempId = aDeadline.getId();
-		if (tempId != null) {
+		if (tempIsOverdue && OVERDUE_ROLLOVER) {
+			// Same id each day, so the event at Google is moved instead of recreated.
+			event.setId(GoogleEventIds.forOverdue(
+					new Timestamp(aDeadline.getWhen().getTime()) + "|" + tempTextWithoutRepeatingInfo));
+		} else if (tempId != null) {
 			if (tempIsOverdue) {
 				// Create a new calendar entry in the google calendar (on next day)
 				logInfo(tempText + " is overdue and so do not takeover Google Id " + tempId);
 			} else {
 				event.setId(tempId);
 			}
+		} else if (DETERMINISTIC_IDS && !tempIsOverdue) {
+			Date tempWhenEndTime = aDeadline.getWhenEndTime();
+			event.setId(GoogleEventIds.forDeadline(new Timestamp(aDeadline.getWhen().getTime()) + "|"
+					+ (tempWhenEndTime == null ? "" : new Timestamp(tempWhenEndTime.getTime())) + "|"
+					+ tempTextWithoutRepeatingInfo));
 		}
 		tempExtendedProperties.put("TextWithoutRepeatingInfo", tempText);
 		event.setSummary(tempText.trim());
-		if (tempIsWholeDayEvent) {
-			String tempDateOnlyString = new java.sql.Date(tempStartDateTime.getTime()).toString();
+		setStartAndEnd(event, tempStartDateTime, aDeadline.getWhenEndTime(), tempIsWholeDayEvent);
+		String tempDescription = "";
+		tempDescription += "READ-ONLY. See termin.txt";
+		if (aDeadline.getRepeating() != null) {
+			tempDescription += "\n\n - since (" + DateTimeCodec.formatDateWithDay(aDeadline.getRepeating()) + ")";
+			tempDescription += "\n\n " + aDeadline.getInfo();
+		}
+		event.setDescription(tempDescription);
+		return event;
+	}
+
+	/**
+	 * @param aEnd null for the same time as aStart
+	 */
+	private void setStartAndEnd(Event event, Date aStart, Date aEnd, boolean aWholeDay) {
+		if (aWholeDay) {
+			String tempDateOnlyString = new java.sql.Date(aStart.getTime()).toString();
 			event.setStart(new EventDateTime().setDate(new DateTime(tempDateOnlyString))); // force
 																							// DateTime.dateOnly=true
 			Calendar tempEndDateTimeCal = Calendar.getInstance();
-			tempEndDateTimeCal.setTime(tempStartDateTime);
+			tempEndDateTimeCal.setTime(aStart);
 			tempEndDateTimeCal.setTimeZone(timeZone);
 			tempEndDateTimeCal.add(Calendar.DAY_OF_YEAR, 1);
 			tempEndDateTimeCal.add(Calendar.HOUR_OF_DAY, 2); // add 2 hours to ensure with DST it gives next date.
@@ -846,27 +1080,19 @@ public class GoogleSync {
 			event.setEnd(new EventDateTime().setDate(new DateTime(tempDateOnlyString)));
 			// event.setEnd(null); // "message" : "Missing end time.",
 		} else {
-			DateTime start = new DateTime(tempStartDateTime, timeZone);
+			DateTime start = new DateTime(aStart, timeZone);
 			event.setStart(new EventDateTime().setDateTime(start));
 
 			Date tempWhenEndDateTime;
-			tempWhenEndDateTime = aDeadline.getWhenEndTime();
+			tempWhenEndDateTime = aEnd;
 			if (tempWhenEndDateTime == null) {
 				// event.setEnd(null); // "message" : "Missing end time.",
-				tempWhenEndDateTime = aDeadline.getWhen();
+				tempWhenEndDateTime = aStart;
 			}
 			Date endDate = new Date(tempWhenEndDateTime.getTime());
 			DateTime end = new DateTime(endDate, timeZone);
 			event.setEnd(new EventDateTime().setDateTime(end));
 		}
-		String tempDescription = "";
-		tempDescription += "READ-ONLY. See termin.txt";
-		if (aDeadline.getRepeating() != null) {
-			tempDescription += "\n\n - since (" + DeadlineGui.dateFormatWithDay.format(aDeadline.getRepeating()) + ")";
-			tempDescription += "\n\n " + aDeadline.getInfo();
-		}
-		event.setDescription(tempDescription);
-		return event;
 	}
 
 	private Date midnight(Date aDate) {
@@ -919,7 +1145,40 @@ public class GoogleSync {
 		return tempDeadline;
 	}
 
-	private String getSummary(Event anEvent) {
+	/**
+	 * @return true in case the event at Google must be patched (summary,
+	 *         recurrence, start or end differ)
+	 */
+	static boolean isChanged(Event aWanted, Event aGoogle) {
+		if (aGoogle.getSummary() == null || !getSummary(aWanted).equals(getSummary(aGoogle))) {
+			return true;
+		}
+		if (!Objects.equals(aWanted.getRecurrence(), aGoogle.getRecurrence())) {
+			return true;
+		}
+		return !isSameTime(aWanted.getStart(), aGoogle.getStart())
+				|| !isSameTime(aWanted.getEnd(), aGoogle.getEnd());
+	}
+
+	private static boolean isSameTime(EventDateTime aWanted, EventDateTime aGoogle) {
+		if (aWanted == null || aGoogle == null) {
+			return aWanted == aGoogle;
+		}
+		return isSameTime(aWanted.getDate(), aGoogle.getDate())
+				&& isSameTime(aWanted.getDateTime(), aGoogle.getDateTime());
+	}
+
+	private static boolean isSameTime(DateTime aWanted, DateTime aGoogle) {
+		if (aWanted == null || aGoogle == null) {
+			return aWanted == aGoogle;
+		}
+		if (aWanted.isDateOnly()) {
+			return aWanted.toStringRfc3339().equals(aGoogle.toStringRfc3339());
+		}
+		return aWanted.getValue() == aGoogle.getValue();
+	}
+
+	static String getSummary(Event anEvent) {
 		String tempGoogleSummary = anEvent.getSummary();
 		String tempOneLineSummary = tempGoogleSummary.replace('\r', ' ').replace('\n', ' ').replace('\t', ' ');
 		String tempTrimmedSummary = tempOneLineSummary.trim();
@@ -0,0 +1,71 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bloom filter of done keys with about 1% false positives (10 bits and 7
+ * probes per key).
+ */
+class BloomFilter {
+	private static final int BITS_PER_KEY = 10;
+	private static final int PROBES = 7;
+
+	private final long[] bits;
+
+	BloomFilter(int aExpectedKeys) {
+		this(new long[Math.max(1, (aExpectedKeys * BITS_PER_KEY + 63) / 64)]);
+	}
+
+	private BloomFilter(long[] aBits) {
+		bits = aBits;
+	}
+
+	void add(DoneIndex.Key aKey) {
+		long tempHash1 = mix(aKey.when ^ aKey.hash);
+		long tempHash2 = mix(tempHash1 + aKey.hash) | 1;
+		long tempBitCount = bits.length * 64L;
+		for (int i = 0; i < PROBES; i++) {
+			long tempBit = Math.floorMod(tempHash1 + i * tempHash2, tempBitCount);
+			bits[(int) (tempBit >>> 6)] |= 1L << tempBit;
+		}
+	}
+
+	boolean mightContain(DoneIndex.Key aKey) {
+		long tempHash1 = mix(aKey.when ^ aKey.hash);
+		long tempHash2 = mix(tempHash1 + aKey.hash) | 1;
+		long tempBitCount = bits.length * 64L;
+		for (int i = 0; i < PROBES; i++) {
+			long tempBit = Math.floorMod(tempHash1 + i * tempHash2, tempBitCount);
+			if ((bits[(int) (tempBit >>> 6)] & (1L << tempBit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void write(DataOutput aOut) throws IOException {
+		aOut.writeInt(bits.length);
+		for (long tempWord : bits) {
+			aOut.writeLong(tempWord);
+		}
+	}
+
+	static BloomFilter read(DataInput aIn) throws IOException {
+		long[] tempBits = new long[aIn.readInt()];
+		for (int i = 0; i < tempBits.length; i++) {
+			tempBits[i] = aIn.readLong();
+		}
+		return new BloomFilter(tempBits);
+	}
+
+	/**
+	 * Finalizer of SplitMix64
+	 */
+	private static long mix(long aValue) {
+		long tempValue = (aValue ^ (aValue >>> 30)) * 0xbf58476d1ce4e5b9L;
+		tempValue = (tempValue ^ (tempValue >>> 27)) * 0x94d049bb133111ebL;
+		return tempValue ^ (tempValue >>> 31);
+	}
+}
@@ -0,0 +1,299 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.Recurrence;
+
+/**
+ * Parses the lines of the termin files from one char buffer.
+ *
+ * The date "dd.MM.yyyy", the "ID:" prefix and the "*2w" repeating info are
+ * scanned directly in the buffer. Only the text of a deadline becomes a String.
+ * Malformed lines are collected as diagnostics and (as before) shown as a
+ * deadline for today.
+ *
+ * Not thread safe, use one instance per file or chunk.
+ */
+class DeadlineParser {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineParser.class);
+
+	private static final int DATE_LENGTH = 10;
+
+	private final boolean repeating;
+	private final List<RecurrenceRule> rules;
+	private final int previousYear;
+	private final Calendar calendar = Calendar.getInstance();
+	/**
+	 * Lenient like before for dates not matching dd.MM.yyyy exactly (e.g.
+	 * "1.1.2020")
+	 */
+	private final DateFormat lenientDateFormat = new SimpleDateFormat("dd.MM.yyyy");
+	private final Map<Integer, Long> midnightByDate = new HashMap<>();
+	private final List<String> diagnostics = new ArrayList<>();
+	private int lineNumber = 0;
+
+	/**
+	 * @param aRepeating expand lines starting with "*" after the date (termin.txt)
+	 */
+	DeadlineParser(boolean aRepeating) {
+		this(aRepeating, null);
+	}
+
+	/**
+	 * @param aRules if not null, lines starting with "*" after the date are
+	 *               compiled into this list instead of being expanded
+	 */
+	DeadlineParser(boolean aRepeating, List<RecurrenceRule> aRules) {
+		repeating = aRepeating;
+		rules = aRules;
+		previousYear = calendar.get(Calendar.YEAR) - 1;
+	}
+
+	/**
+	 * Read everything and parse it.
+	 */
+	List<Deadline> parse(Reader aReader) throws IOException {
+		char[] tempChars = new char[8192];
+		int tempLength = 0;
+		int tempRead;
+		while ((tempRead = aReader.read(tempChars, tempLength, tempChars.length - tempLength)) >= 0) {
+			tempLength += tempRead;
+			if (tempLength == tempChars.length) {
+				tempChars = Arrays.copyOf(tempChars, tempChars.length * 2);
+			}
+		}
+		return parse(tempChars, 0, tempLength);
+	}
+
+	/**
+	 * @param aEnd exclusive
+	 * @return the deadlines in the order of the lines
+	 */
+	List<Deadline> parse(char[] aChars, int aStart, int aEnd) {
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		int tempPos = aStart;
+		while (tempPos < aEnd) {
+			int tempLineEnd = tempPos;
+			while (tempLineEnd < aEnd && aChars[tempLineEnd] != '\n' && aChars[tempLineEnd] != '\r') {
+				tempLineEnd++;
+			}
+			lineNumber++;
+			parseLine(aChars, tempPos, tempLineEnd, tempDeadlines);
+			tempPos = tempLineEnd;
+			// \n, \r or \r\n like BufferedReader.readLine()
+			if (tempPos < aEnd && aChars[tempPos] == '\r') {
+				tempPos++;
+				if (tempPos < aEnd && aChars[tempPos] == '\n') {
+					tempPos++;
+				}
+			} else if (tempPos < aEnd) {
+				tempPos++;
+			}
+		}
+		return tempDeadlines;
+	}
+
+	/**
+	 * @return "line: message" for each malformed line
+	 */
+	List<String> getDiagnostics() {
+		return diagnostics;
+	}
+
+	private void parseLine(char[] aChars, int aStart, int aEnd, List<Deadline> aDeadlines) {
+		if (startsWith(aChars, aStart, aEnd, FileStorage.INFO_PREFIX)
+				|| startsWith(aChars, aStart, aEnd, FileStorage.INFO_PREFIX2) || isBlank(aChars, aStart, aEnd)) {
+			return;
+		}
+		int tempPos = aStart;
+		String tempId = null;
+		if (startsWith(aChars, aStart, aEnd, FileStorage.ID_PREFIX)) {
+			int tempIdStart = aStart + FileStorage.ID_PREFIX.length();
+			int tempTabPos = indexOf(aChars, tempIdStart, aEnd, '\t');
+			if (tempTabPos < 0) {
+				addError(aChars, aStart, aEnd, "missing tab after " + FileStorage.ID_PREFIX, aDeadlines);
+				return;
+			}
+			tempId = new String(aChars, tempIdStart, tempTabPos - tempIdStart);
+			tempPos = tempTabPos + 1;
+			if (equals(aChars, tempPos, aEnd, FileStorage.DELETED_MARKER)) {
+				// return deleted deadline as previously the un.deleted one was added
+				// while parsing the file
+				Deadline tempDeadline = new Deadline();
+				tempDeadline.setId(tempId);
+				tempDeadline.setDeleted(true);
+				tempDeadline.setWhen(new Date());
+				aDeadlines.add(tempDeadline);
+				return;
+			}
+		}
+		if (aEnd - tempPos < DATE_LENGTH) {
+			addError(aChars, tempPos, aEnd, "expected dd.MM.yyyy", aDeadlines);
+			return;
+		}
+		long tempMidnight = parseDate(aChars, tempPos);
+		if (tempMidnight == Long.MIN_VALUE) {
+			tempMidnight = parseDateLenient(aChars, tempPos);
+			if (tempMidnight == Long.MIN_VALUE) {
+				addError(aChars, tempPos, aEnd, "invalid date, expected dd.MM.yyyy", aDeadlines);
+				return;
+			}
+		}
+		int tempInfoStart = tempPos + DATE_LENGTH;
+		String tempInfo = new String(aChars, tempInfoStart, aEnd - tempInfoStart);
+		try {
+			if (repeating && tempInfoStart < aEnd && aChars[tempInfoStart] == '*') {
+				if (rules == null) {
+					addRepeating(aDeadlines, new Date(tempMidnight), tempInfo);
+				} else {
+					rules.add(RecurrenceRule.compile(new Date(tempMidnight), tempInfo));
+				}
+			} else {
+				Deadline tempDeadline = new Deadline();
+				tempDeadline.setId(tempId);
+				tempDeadline.setWhen(new Date(tempMidnight));
+				tempDeadline.setInfo(tempInfo);
+				tempDeadline.extractTimeFromInfo();
+				aDeadlines.add(tempDeadline);
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Ignore line " + lineNumber, e);
+			addError(aChars, tempPos, aEnd, e.toString(), aDeadlines);
+		}
+	}
+
+	private void addError(char[] aChars, int aStart, int aEnd, String aMessage, List<Deadline> aDeadlines) {
+		String tempLine = new String(aChars, aStart, aEnd - aStart);
+		diagnostics.add(lineNumber + ": " + aMessage + " '" + tempLine + "'");
+		Deadline tempDeadline = new Deadline();
+		tempDeadline.setWhen(new Date());
+		tempDeadline.setInfo(tempLine + " " + aMessage);
+		aDeadlines.add(tempDeadline);
+	}
+
+	/**
+	 * "dd.MM.yyyy", '?' is read as 0, year 0000 is the previous year.
+	 *
+	 * @return midnight or Long.MIN_VALUE if not exactly this format
+	 */
+	private long parseDate(char[] aChars, int aPos) {
+		if (aChars[aPos + 2] != '.' || aChars[aPos + 5] != '.') {
+			return Long.MIN_VALUE;
+		}
+		int tempDay = digits(aChars, aPos, 2);
+		int tempMonth = digits(aChars, aPos + 3, 2);
+		int tempYear = digits(aChars, aPos + 6, 4);
+		if (tempDay < 0 || tempMonth < 0 || tempYear < 0) {
+			return Long.MIN_VALUE;
+		}
+		if (tempYear == 0) {
+			tempYear = previousYear;
+		}
+		return getMidnight(tempYear, tempMonth, tempDay);
+	}
+
+	private static int digits(char[] aChars, int aPos, int aCount) {
+		int tempValue = 0;
+		for (int i = aPos; i < aPos + aCount; i++) {
+			char tempChar = aChars[i];
+			if (tempChar == '?') {
+				tempChar = '0';
+			} else if (tempChar < '0' || tempChar > '9') {
+				return -1;
+			}
+			tempValue = tempValue * 10 + (tempChar - '0');
+		}
+		return tempValue;
+	}
+
+	/**
+	 * Same as the lenient SimpleDateFormat (e.g. 31.02. is 02.03.)
+	 */
+	private long getMidnight(int aYear, int aMonth, int aDay) {
+		Integer tempKey = aYear * 10000 + aMonth * 100 + aDay;
+		Long tempMidnight = midnightByDate.get(tempKey);
+		if (tempMidnight == null) {
+			calendar.clear();
+			calendar.set(aYear, aMonth - 1, aDay);
+			tempMidnight = calendar.getTimeInMillis();
+			midnightByDate.put(tempKey, tempMidnight);
+		}
+		return tempMidnight;
+	}
+
+	private long parseDateLenient(char[] aChars, int aPos) {
+		String tempDateChars = new String(aChars, aPos, DATE_LENGTH).replace('?', '0');
+		if (tempDateChars.endsWith("0000")) {
+			tempDateChars = tempDateChars.substring(0, tempDateChars.length() - 4) + previousYear;
+		}
+		try {
+			return lenientDateFormat.parse(tempDateChars).getTime();
+		} catch (ParseException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	private static boolean startsWith(char[] aChars, int aStart, int aEnd, String aPrefix) {
+		int tempLength = aPrefix.length();
+		if (aEnd - aStart < tempLength) {
+			return false;
+		}
+		for (int i = 0; i < tempLength; i++) {
+			if (aChars[aStart + i] != aPrefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equals(char[] aChars, int aStart, int aEnd, String aString) {
+		return aEnd - aStart == aString.length() && startsWith(aChars, aStart, aEnd, aString);
+	}
+
+	private static int indexOf(char[] aChars, int aStart, int aEnd, char aChar) {
+		for (int i = aStart; i < aEnd; i++) {
+			if (aChars[i] == aChar) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Like String.trim().length() == 0
+	 */
+	private static boolean isBlank(char[] aChars, int aStart, int aEnd) {
+		for (int i = aStart; i < aEnd; i++) {
+			if (aChars[i] > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void addRepeating(List<Deadline> tempDeadlines, Date tempDate, String tempInfo) {
+		RecurrenceRule tempRule = RecurrenceRule.compile(tempDate, tempInfo);
+		LOGGER.debug("rule=" + tempRule);
+		List<Date> tempOccurrences = tempRule.getOccurrences(Calendar.getInstance());
+		Recurrence tempRecurrence = new Recurrence(tempDate, tempRule.getUnit(), tempRule.getStep(), tempInfo,
+				tempRule.getTextWithoutRepeatingInfo(), tempOccurrences);
+		for (Date tempWhen : tempOccurrences) {
+			tempDeadlines.add(tempRecurrence.createDeadline(tempWhen));
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+
+/**
+ * Done deadlines of past years, moved out of termin-done.txt into
+ * termin-done-yyyy.txt.gz (UTF-8, one gzip member per archive run) with a
+ * bloom filter in termin-done-yyyy.bloom.
+ *
+ * A segment is only read if its bloom filter might contain a deadline, or on
+ * demand with readDeadlines(year).
+ */
+class DoneArchive {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DoneArchive.class);
+
+	private final File directory;
+
+	private final Map<Integer, BloomFilter> bloomFilters = new HashMap<>();
+	private final Map<Integer, Set<DoneIndex.Key>> segments = new HashMap<>();
+
+	DoneArchive(File aDirectory) {
+		directory = aDirectory;
+	}
+
+	File getSegmentFile(int aYear) {
+		return new File(directory, "termin-done-" + aYear + ".txt.gz");
+	}
+
+	private File getBloomFile(int aYear) {
+		return new File(directory, "termin-done-" + aYear + ".bloom");
+	}
+
+	boolean isDone(Deadline aDeadline) throws IOException {
+		if (aDeadline.getWhen() == null) {
+			return false;
+		}
+		int tempYear = getYear(aDeadline.getWhen().getTime());
+		BloomFilter tempBloomFilter = getBloomFilter(tempYear);
+		DoneIndex.Key tempKey = new DoneIndex.Key(aDeadline);
+		if (tempBloomFilter == null || !tempBloomFilter.mightContain(tempKey)) {
+			return false;
+		}
+		Set<DoneIndex.Key> tempKeys = segments.get(tempYear);
+		if (tempKeys == null) {
+			tempKeys = new HashSet<>();
+			for (Deadline tempDeadline : readDeadlines(tempYear)) {
+				tempKeys.add(new DoneIndex.Key(tempDeadline));
+			}
+			segments.put(tempYear, tempKeys);
+		}
+		return tempKeys.contains(tempKey);
+	}
+
+	private BloomFilter getBloomFilter(int aYear) throws IOException {
+		if (bloomFilters.containsKey(aYear)) {
+			return bloomFilters.get(aYear);
+		}
+		BloomFilter tempBloomFilter = null;
+		File tempFile = getBloomFile(aYear);
+		if (tempFile.exists()) {
+			try (DataInputStream tempIn = new DataInputStream(Files.newInputStream(tempFile.toPath()))) {
+				tempBloomFilter = BloomFilter.read(tempIn);
+			}
+		}
+		bloomFilters.put(aYear, tempBloomFilter);
+		return tempBloomFilter;
+	}
+
+	/**
+	 * All done deadlines of the segment, e.g. for a history.
+	 */
+	List<Deadline> readDeadlines(int aYear) throws IOException {
+		File tempFile = getSegmentFile(aYear);
+		if (!tempFile.exists()) {
+			return new ArrayList<>();
+		}
+		DeadlineParser tempParser = new DeadlineParser(false);
+		try (BufferedReader tempReader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new FileInputStream(tempFile)), StandardCharsets.UTF_8))) {
+			List<Deadline> tempDeadlines = tempParser.parse(tempReader);
+			for (String tempDiagnostic : tempParser.getDiagnostics()) {
+				LOGGER.error("Ignore " + tempFile.getName() + ":" + tempDiagnostic);
+			}
+			return tempDeadlines;
+		}
+	}
+
+	/**
+	 * Moves the lines of deadlines before aBeforeYear into the segments. A
+	 * comment line goes with the next deadline.
+	 *
+	 * @return the lines to keep
+	 */
+	List<String> archive(List<String> aLines, int aBeforeYear) throws IOException {
+		List<String> tempKeep = new ArrayList<>();
+		Map<Integer, List<String>> tempArchive = new TreeMap<>();
+		List<String> tempComments = new ArrayList<>();
+		DeadlineParser tempParser = new DeadlineParser(false);
+		for (String tempLine : aLines) {
+			List<Deadline> tempDeadlines = tempParser.parse(tempLine.toCharArray(), 0, tempLine.length());
+			if (tempDeadlines.isEmpty()) {
+				tempComments.add(tempLine);
+				continue;
+			}
+			List<String> tempTarget = tempKeep;
+			// malformed lines are returned with the current time, so they are kept
+			int tempYear = getYear(tempDeadlines.get(0).getWhen().getTime());
+			if (tempYear < aBeforeYear) {
+				tempTarget = tempArchive.computeIfAbsent(tempYear, k -> new ArrayList<>());
+			}
+			tempTarget.addAll(tempComments);
+			tempComments.clear();
+			tempTarget.add(tempLine);
+		}
+		tempKeep.addAll(tempComments);
+		for (Map.Entry<Integer, List<String>> tempEntry : tempArchive.entrySet()) {
+			append(tempEntry.getKey(), tempEntry.getValue());
+		}
+		return tempKeep;
+	}
+
+	private void append(int aYear, List<String> aLines) throws IOException {
+		File tempFile = getSegmentFile(aYear);
+		try (Writer tempOut = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tempFile, true)),
+				StandardCharsets.UTF_8)) {
+			for (String tempLine : aLines) {
+				tempOut.write(tempLine);
+				tempOut.write('\n');
+			}
+		}
+		List<Deadline> tempDeadlines = readDeadlines(aYear);
+		BloomFilter tempBloomFilter = new BloomFilter(tempDeadlines.size());
+		for (Deadline tempDeadline : tempDeadlines) {
+			tempBloomFilter.add(new DoneIndex.Key(tempDeadline));
+		}
+		File tempBloomFile = getBloomFile(aYear);
+		File tempNewFile = new File(tempBloomFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream tempOut = new DataOutputStream(new FileOutputStream(tempNewFile))) {
+			tempBloomFilter.write(tempOut);
+		}
+		Files.move(tempNewFile.toPath(), tempBloomFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		bloomFilters.put(aYear, tempBloomFilter);
+		segments.remove(aYear);
+		LOGGER.info("Archived " + aLines.size() + " lines to " + tempFile.getName() + ", total " + tempDeadlines.size());
+	}
+
+	static int getYear(long aWhen) {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.setTimeInMillis(aWhen);
+		return tempCal.get(Calendar.YEAR);
+	}
+}
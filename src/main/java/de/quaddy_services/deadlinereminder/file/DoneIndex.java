@@ -0,0 +1,309 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+
+/**
+ * The done deadlines of termin-done.txt as (when, hash of info), so
+ * getOpenDeadlines does not need to compare every open deadline with every
+ * done one.
+ *
+ * The keys are kept in termin-done.idx: a header with the number of bytes of
+ * termin-done.txt already indexed, followed by the keys. On startup only the
+ * lines appended since then are parsed. If the indexed part of termin-done.txt
+ * was changed (shorter, or its last bytes differ) the index is rebuilt.
+ */
+class DoneIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DoneIndex.class);
+
+	private static final int MAGIC = 0x44524449; // DRDI
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 4;
+	private static final int KEY_LENGTH = 8 + 8;
+	/**
+	 * Bytes before the indexed length to detect a changed termin-done.txt
+	 */
+	private static final int CHECK_LENGTH = 4096;
+
+	private final File doneFile;
+	private final File indexFile;
+
+	/**
+	 * Replaced instead of cleared on a rebuild, so a view of getView stays
+	 * consistent without the lock of update
+	 */
+	private volatile Set<Key> keys = ConcurrentHashMap.newKeySet();
+	private long indexedLength;
+	private long indexedCrc;
+	private int persistedCount;
+	private long oldest = Long.MAX_VALUE;
+	private final List<Key> unpersisted = new ArrayList<>();
+	private boolean loaded;
+
+	DoneIndex(File aDoneFile, File aIndexFile) {
+		doneFile = aDoneFile;
+		indexFile = aIndexFile;
+	}
+
+	/**
+	 * Read the lines appended to termin-done.txt since the last call.
+	 */
+	void update() throws IOException {
+		if (!loaded) {
+			loaded = true;
+			load();
+		}
+		if (!doneFile.exists()) {
+			if (indexedLength > 0) {
+				clear();
+				save();
+			}
+			return;
+		}
+		try (FileChannel tempChannel = FileChannel.open(doneFile.toPath(), StandardOpenOption.READ)) {
+			long tempLength = tempChannel.size();
+			if (tempLength < indexedLength || indexedCrc != getCheckCrc(tempChannel, indexedLength)) {
+				LOGGER.info("Rebuild index of " + doneFile + " as it was changed");
+				clear();
+			} else if (tempLength == indexedLength) {
+				return;
+			}
+			long tempStart = System.currentTimeMillis();
+			ByteBuffer tempHead = read(tempChannel, 0, (int) Math.min(tempLength, 4));
+			Charset tempCharset = MappedDeadlineLoader.getCharset(tempHead);
+			long tempFrom = Math.max(indexedLength, MappedDeadlineLoader.getBomLength(tempHead));
+			if (tempLength - tempFrom > Integer.MAX_VALUE) {
+				throw new IOException("Too large: " + doneFile);
+			}
+			ByteBuffer tempTail = read(tempChannel, tempFrom, (int) (tempLength - tempFrom));
+			// a line still being written is read next time
+			int tempEnd = getLastLineEnd(tempTail, tempFrom, tempCharset);
+			tempTail.limit(tempEnd);
+			CharBuffer tempChars = tempCharset.decode(tempTail);
+			DeadlineParser tempParser = new DeadlineParser(false);
+			List<Deadline> tempDeadlines = tempParser.parse(tempChars.array(),
+					tempChars.arrayOffset() + tempChars.position(), tempChars.arrayOffset() + tempChars.limit());
+			for (String tempDiagnostic : tempParser.getDiagnostics()) {
+				LOGGER.error("Ignore " + doneFile.getName() + ":" + tempDiagnostic);
+			}
+			for (Deadline tempDeadline : tempDeadlines) {
+				if (!tempDeadline.isDeleted()) {
+					Key tempKey = new Key(tempDeadline);
+					if (keys.add(tempKey)) {
+						unpersisted.add(tempKey);
+						oldest = Math.min(oldest, tempKey.when);
+					}
+				}
+			}
+			indexedLength = tempFrom + tempEnd;
+			indexedCrc = getCheckCrc(tempChannel, indexedLength);
+			LOGGER.info("Indexed " + tempDeadlines.size() + " done deadlines of " + doneFile.getName() + " in "
+					+ (System.currentTimeMillis() - tempStart) + "ms, total=" + keys.size());
+		}
+		save();
+	}
+
+	boolean isDone(Deadline aDeadline) {
+		return keys.contains(new Key(aDeadline));
+	}
+
+	/**
+	 * @return isDone of the keys indexed so far (and later, but never less),
+	 *         may be called without the lock of update
+	 */
+	Predicate<Deadline> getView() {
+		final Set<Key> tempKeys = keys;
+		return aDeadline -> tempKeys.contains(new Key(aDeadline));
+	}
+
+	int size() {
+		return keys.size();
+	}
+
+	/**
+	 * @return the earliest done deadline, Long.MAX_VALUE if none
+	 */
+	long getOldest() {
+		return oldest;
+	}
+
+	private void clear() {
+		keys = ConcurrentHashMap.newKeySet();
+		unpersisted.clear();
+		indexedLength = 0;
+		indexedCrc = 0;
+		persistedCount = 0;
+		oldest = Long.MAX_VALUE;
+	}
+
+	private void load() {
+		if (!indexFile.exists()) {
+			return;
+		}
+		try (RandomAccessFile tempIn = new RandomAccessFile(indexFile, "r")) {
+			if (tempIn.length() < HEADER_LENGTH || tempIn.readInt() != MAGIC || tempIn.readInt() != VERSION) {
+				LOGGER.info("Ignore " + indexFile);
+				return;
+			}
+			long tempIndexedLength = tempIn.readLong();
+			long tempIndexedCrc = tempIn.readLong();
+			int tempCount = tempIn.readInt();
+			if (tempIn.length() < HEADER_LENGTH + (long) tempCount * KEY_LENGTH) {
+				LOGGER.info("Ignore truncated " + indexFile);
+				return;
+			}
+			ByteBuffer tempKeys = ByteBuffer.allocate(tempCount * KEY_LENGTH);
+			tempIn.readFully(tempKeys.array());
+			for (int i = 0; i < tempCount; i++) {
+				Key tempKey = new Key(tempKeys.getLong(), tempKeys.getLong());
+				keys.add(tempKey);
+				oldest = Math.min(oldest, tempKey.when);
+			}
+			indexedLength = tempIndexedLength;
+			indexedCrc = tempIndexedCrc;
+			persistedCount = tempCount;
+		} catch (IOException e) {
+			LOGGER.error("Ignore " + indexFile, e);
+			clear();
+		}
+	}
+
+	/**
+	 * Append the new keys, then update the header. Keys after the count of the
+	 * header are ignored when loading.
+	 */
+	private void save() throws IOException {
+		try (RandomAccessFile tempOut = new RandomAccessFile(indexFile, "rw")) {
+			if (persistedCount == 0) {
+				tempOut.setLength(0);
+				tempOut.writeInt(MAGIC);
+				tempOut.writeInt(VERSION);
+				tempOut.writeLong(0);
+				tempOut.writeLong(0);
+				tempOut.writeInt(0);
+			}
+			ByteBuffer tempKeys = ByteBuffer.allocate(unpersisted.size() * KEY_LENGTH);
+			for (Key tempKey : unpersisted) {
+				tempKeys.putLong(tempKey.when);
+				tempKeys.putLong(tempKey.hash);
+			}
+			tempOut.seek(HEADER_LENGTH + (long) persistedCount * KEY_LENGTH);
+			tempOut.write(tempKeys.array());
+			tempOut.getFD().sync();
+			persistedCount += unpersisted.size();
+			unpersisted.clear();
+			tempOut.seek(8);
+			tempOut.writeLong(indexedLength);
+			tempOut.writeLong(indexedCrc);
+			tempOut.writeInt(persistedCount);
+		}
+	}
+
+	private static long getCheckCrc(FileChannel aChannel, long aLength) throws IOException {
+		int tempCheckLength = (int) Math.min(aLength, CHECK_LENGTH);
+		CRC32 tempCrc = new CRC32();
+		tempCrc.update(read(aChannel, aLength - tempCheckLength, tempCheckLength).array(), 0, tempCheckLength);
+		return tempCrc.getValue();
+	}
+
+	private static ByteBuffer read(FileChannel aChannel, long aPosition, int aLength) throws IOException {
+		ByteBuffer tempBuffer = ByteBuffer.allocate(aLength);
+		while (tempBuffer.hasRemaining()) {
+			if (aChannel.read(tempBuffer, aPosition + tempBuffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		tempBuffer.flip();
+		return tempBuffer;
+	}
+
+	/**
+	 * @return the position after the last '\n' in aBytes, 0 if none
+	 */
+	private static int getLastLineEnd(ByteBuffer aBytes, long aOffset, Charset aCharset) {
+		if (StandardCharsets.UTF_8.equals(aCharset)) {
+			for (int i = aBytes.limit() - 1; i >= 0; i--) {
+				if (aBytes.get(i) == '\n') {
+					return i + 1;
+				}
+			}
+			return 0;
+		}
+		boolean tempLittleEndian = StandardCharsets.UTF_16LE.equals(aCharset);
+		// code units start at even file positions after the 2 bytes BOM
+		int tempFirst = (int) (aOffset & 1);
+		for (int i = aBytes.limit() - 2; i >= tempFirst; i--) {
+			if (((aOffset + i) & 1) != 0) {
+				continue;
+			}
+			byte tempLow = aBytes.get(tempLittleEndian ? i : i + 1);
+			byte tempHigh = aBytes.get(tempLittleEndian ? i + 1 : i);
+			if (tempLow == '\n' && tempHigh == 0) {
+				return i + 2;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * FNV-1a, 64 bit: String.hashCode collides too often for an index which
+	 * is never compared to the text.
+	 */
+	static long hash(String aInfo) {
+		long tempHash = 0xcbf29ce484222325L;
+		if (aInfo != null) {
+			for (int i = 0; i < aInfo.length(); i++) {
+				tempHash ^= aInfo.charAt(i);
+				tempHash *= 0x100000001b3L;
+			}
+		}
+		return tempHash;
+	}
+
+	static final class Key {
+		final long when;
+		final long hash;
+
+		Key(Deadline aDeadline) {
+			this(aDeadline.getWhen() == null ? Long.MIN_VALUE : aDeadline.getWhen().getTime(),
+					hash(aDeadline.getInfo()));
+		}
+
+		Key(long aWhen, long aHash) {
+			when = aWhen;
+			hash = aHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(when) * 31 + Long.hashCode(hash);
+		}
+
+		@Override
+		public boolean equals(Object aObj) {
+			if (!(aObj instanceof Key)) {
+				return false;
+			}
+			Key tempOther = (Key) aObj;
+			return when == tempOther.when && hash == tempOther.hash;
+		}
+	}
+}
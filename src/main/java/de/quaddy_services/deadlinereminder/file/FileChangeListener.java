@@ -0,0 +1,14 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.util.Set;
+
+public interface FileChangeListener {
+
+	/**
+	 * Called on the watcher thread once the files are quiet again.
+	 *
+	 * @param aFileNames the changed files of the watched directory
+	 */
+	void filesChanged(Set<String> aFileNames);
+
+}
@@ -0,0 +1,101 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Adler32;
+
+/**
+ * Size and modification time of a file. The modification time may be too
+ * coarse for two saves within the same second: so a file changed within
+ * TIMESTAMP_GRANULARITY_MILLIS gets an Adler-32 of its content as well. An
+ * older file is not read, a later save has a later modification time.
+ */
+public final class FileFingerprint {
+	/**
+	 * FAT stores 2 seconds, most others 1 second or better
+	 */
+	static final long TIMESTAMP_GRANULARITY_MILLIS = 2000;
+
+	private final long length;
+	private final long lastModified;
+	private final long checksum;
+
+	private FileFingerprint(long aLength, long aLastModified, long aChecksum) {
+		length = aLength;
+		lastModified = aLastModified;
+		checksum = aChecksum;
+	}
+
+	public static FileFingerprint of(File aFile) throws IOException {
+		return of(aFile, System.currentTimeMillis());
+	}
+
+	static FileFingerprint of(File aFile, long aNow) throws IOException {
+		if (!aFile.exists()) {
+			return new FileFingerprint(-1, 0, 0);
+		}
+		long tempLastModified = aFile.lastModified();
+		long tempLength = aFile.length();
+		if (Math.abs(aNow - tempLastModified) > TIMESTAMP_GRANULARITY_MILLIS) {
+			return new FileFingerprint(tempLength, tempLastModified, 0);
+		}
+		Adler32 tempAdler32 = new Adler32();
+		tempLength = 0;
+		try (FileChannel tempChannel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer tempBuffer = ByteBuffer.allocate(64 * 1024);
+			int tempRead;
+			while ((tempRead = tempChannel.read(tempBuffer)) >= 0) {
+				tempLength += tempRead;
+				tempBuffer.flip();
+				tempAdler32.update(tempBuffer);
+				tempBuffer.clear();
+			}
+		}
+		// never 0, which stands for "not read"
+		return new FileFingerprint(tempLength, tempLastModified, tempAdler32.getValue() | 1L << 32);
+	}
+
+	/**
+	 * Reads the content only if size and modification time are the same and
+	 * this fingerprint was taken within the granularity of the modification
+	 * time.
+	 *
+	 * @return true if aFile is still the same as this fingerprint
+	 */
+	public boolean isUnchanged(File aFile) throws IOException {
+		if (!aFile.exists()) {
+			return length == -1;
+		}
+		if (aFile.length() != length || aFile.lastModified() != lastModified) {
+			return false;
+		}
+		if (checksum == 0) {
+			// taken later than the granularity, so a save since would have changed the time
+			return true;
+		}
+		return equals(of(aFile, lastModified));
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(length) * 31 + Long.hashCode(lastModified);
+	}
+
+	@Override
+	public boolean equals(Object aObj) {
+		if (!(aObj instanceof FileFingerprint)) {
+			return false;
+		}
+		FileFingerprint tempOther = (FileFingerprint) aObj;
+		return length == tempOther.length && lastModified == tempOther.lastModified
+				&& checksum == tempOther.checksum;
+	}
+
+	@Override
+	public String toString() {
+		return "FileFingerprint [length=" + length + ", lastModified=" + lastModified + ", checksum=" + checksum + "]";
+	}
+}
@@ -10,20 +10,27 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringReader;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.quaddy_services.deadlinereminder.DateTimeCodec;
 import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.DeadlineComparator;
 import de.quaddy_services.deadlinereminder.Storage;
 
 public class FileStorage implements Storage {
@@ -31,18 +38,45 @@ public class FileStorage implements Storage {
 
 	public static final String TERMIN_TXT = "termin.txt";
 	public static final String TERMIN_GOOGLE_ADDED_TXT = "termin-added-by-google.txt";
-	private static final String INFO_PREFIX = "--";
-	private static final String INFO_PREFIX2 = "#";
-	private static final String ID_PREFIX = "ID:";
+	static final String INFO_PREFIX = "--";
+	static final String INFO_PREFIX2 = "#";
+	static final String ID_PREFIX = "ID:";
 	public static final String TERMIN_DONE_TXT = "termin-done.txt";
-	private static DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
-	private static DateFormat timeFormat = new SimpleDateFormat("HH:mm");
+	public static final String TERMIN_DONE_IDX = "termin-done.idx";
 
 	private static final Object MONITOR = new Object();
 
 	public static final String TERMIN_LAST_SYNC_TXT = "termin-last-sync.txt";
 
-	private static final String DELETED_MARKER = "DELETED_MARKER";
+	public static final String TERMIN_GOOGLE_SYNC_JSON = "termin-google-sync.json";
+
+	public static final String TERMIN_GOOGLE_OUTBOX_JSON = "termin-google-outbox.json";
+
+	static final String DELETED_MARKER = "DELETED_MARKER";
+
+	private static final double COMPACT_DEAD_RATIO = Double
+			.parseDouble(System.getProperty("deadlinereminder.compactDeadRatio", "1.0"));
+
+	private static final long COMPACT_BYTES = Long.getLong("deadlinereminder.compactBytes", 1024 * 1024);
+
+	/**
+	 * Parsed lines per file name, to parse only changed files again
+	 */
+	private final Map<String, ParsedFile> parsedFiles = new HashMap<>();
+	private DoneIndex doneIndex;
+	private DoneArchive doneArchive;
+	/**
+	 * Found by the last load, done by maintain()
+	 */
+	private boolean compactionDue;
+	private boolean archiveDue;
+	/**
+	 * The single deadlines of sortedGoogleAdded and sortedTermin for
+	 * iterateOpenDeadlines, sorted by DeadlineComparator
+	 */
+	private List<Deadline> sortedSingles;
+	private ParsedFile sortedGoogleAdded;
+	private ParsedFile sortedTermin;
 
 	public FileStorage() {
 		super();
@@ -60,23 +94,46 @@ public class FileStorage implements Storage {
 		return getDirectory().getAbsolutePath() + "/" + TERMIN_TXT;
 	}
 
+	@Override
+	public List<File> getSourceFiles() {
+		String tempDirectory = getDirectory().getAbsolutePath() + "/";
+		return Arrays.asList(new File(tempDirectory + TERMIN_TXT), new File(tempDirectory + TERMIN_GOOGLE_ADDED_TXT),
+				new File(tempDirectory + TERMIN_DONE_TXT));
+	}
+
 	@Override
 	public List<Deadline> getOpenDeadlines(Date to) {
+		return copy(getOpenDeadlines(to, Collections.<File, FileFingerprint> emptyMap()));
+	}
+
+	/**
+	 * The deadlines are shared with the cache of the parsed files
+	 */
+	@Override
+	public List<Deadline> getOpenDeadlines(Date to, Map<File, FileFingerprint> aFingerprints) {
 		synchronized (MONITOR) {
 			try {
 				// Read all google deadlines
-				List<Deadline> tempDeadlinesFromGoogle = readDeadlines(null, TERMIN_GOOGLE_ADDED_TXT);
-				for (Deadline tempDeadlineFromGoogle : tempDeadlinesFromGoogle) {
-					tempDeadlineFromGoogle.setAddedByGoogle(true);
-				}
-				List<Deadline> tempDeadlinesFromTerminTxt = readDeadlines(to, TERMIN_TXT);
-
-				List<Deadline> tempDoneDeadlines = readDeadlines(null, TERMIN_DONE_TXT);
+				List<Deadline> tempLinesFromGoogle = parseDeadlines(null, TERMIN_GOOGLE_ADDED_TXT, aFingerprints);
+				List<Deadline> tempDeadlinesFromGoogle = replay(null, TERMIN_GOOGLE_ADDED_TXT, tempLinesFromGoogle);
+				compactionDue = isCompactionDue(tempLinesFromGoogle.size(), tempDeadlinesFromGoogle.size(),
+						getGoogleAddedFile().length());
+				List<Deadline> tempDeadlinesFromTerminTxt = readDeadlines(to, TERMIN_TXT, aFingerprints);
+
+				DoneIndex tempDoneIndex = getDoneIndex();
+				tempDoneIndex.update();
+				archiveDue = tempDoneIndex.getOldest() < getStartOfYear(getArchiveBeforeYear());
 				List<Deadline> tempFound = new ArrayList<Deadline>();
-				tempFound.addAll(tempDeadlinesFromGoogle);
-				tempFound.addAll(tempDeadlinesFromTerminTxt);
-
-				tempFound.removeAll(tempDoneDeadlines);
+				for (Deadline tempDeadline : tempDeadlinesFromGoogle) {
+					if (!isDone(tempDeadline)) {
+						tempFound.add(tempDeadline);
+					}
+				}
+				for (Deadline tempDeadline : tempDeadlinesFromTerminTxt) {
+					if (!isDone(tempDeadline)) {
+						tempFound.add(tempDeadline);
+					}
+				}
 
 				return tempFound;
 			} catch (Exception e) {
@@ -85,296 +142,430 @@ public class FileStorage implements Storage {
 		}
 	}
 
+	/**
+	 * Repeating lines of termin.txt are not expanded: each rule creates its
+	 * deadlines in the window while the sorted sources are merged. The single
+	 * deadlines are sorted once per change of the files and copied as they are
+	 * read. The done check does not lock, except for archived years.
+	 */
+	@Override
+	public Iterator<Deadline> iterateOpenDeadlines(Date aFrom, Date aTo) {
+		synchronized (MONITOR) {
+			try {
+				Map<File, FileFingerprint> tempNoFingerprints = Collections.emptyMap();
+				ParsedFile tempGoogleAdded = parseFile(null, TERMIN_GOOGLE_ADDED_TXT, tempNoFingerprints, false);
+				ParsedFile tempTermin = parseFile(null, TERMIN_TXT, tempNoFingerprints, true);
+				if (sortedSingles == null || sortedGoogleAdded != tempGoogleAdded || sortedTermin != tempTermin) {
+					List<Deadline> tempSingles = replay(null, TERMIN_GOOGLE_ADDED_TXT, tempGoogleAdded.deadlines);
+					tempSingles.addAll(replay(null, TERMIN_TXT, tempTermin.deadlines));
+					Collections.sort(tempSingles, new DeadlineComparator());
+					sortedSingles = tempSingles;
+					sortedGoogleAdded = tempGoogleAdded;
+					sortedTermin = tempTermin;
+				}
+				DoneIndex tempDoneIndex = getDoneIndex();
+				tempDoneIndex.update();
+				final Predicate<Deadline> tempDone = tempDoneIndex.getView();
+				final long tempArchived = getStartOfYear(getArchiveBeforeYear());
+
+				List<Iterator<Deadline>> tempSources = new ArrayList<>();
+				tempSources.add(window(sortedSingles, aFrom, aTo));
+				for (RecurrenceRule tempRule : tempTermin.rules) {
+					tempSources.add(tempRule.deadlines(aFrom, aTo));
+				}
+				return new SortedMerge<>(tempSources, new DeadlineComparator(), aDeadline -> {
+					if (tempDone.test(aDeadline)) {
+						return true;
+					}
+					if (aDeadline.getWhenMillis() >= tempArchived) {
+						return false;
+					}
+					synchronized (MONITOR) {
+						try {
+							return getDoneArchive().isDone(aDeadline);
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				});
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * @param aSorted sorted by DeadlineComparator, never changed
+	 * @return copies of the deadlines of aSorted in [aFrom, aTo), created as they
+	 *         are read
+	 */
+	private static Iterator<Deadline> window(final List<Deadline> aSorted, Date aFrom, Date aTo) {
+		long tempFrom = aFrom.getTime();
+		final long tempTo = aTo.getTime();
+		int tempLow = 0;
+		int tempHigh = aSorted.size();
+		while (tempLow < tempHigh) {
+			int tempMiddle = (tempLow + tempHigh) >>> 1;
+			if (aSorted.get(tempMiddle).getWhenMillis() < tempFrom) {
+				tempLow = tempMiddle + 1;
+			} else {
+				tempHigh = tempMiddle;
+			}
+		}
+		final int tempStart = tempLow;
+		return new Iterator<Deadline>() {
+			private int index = tempStart;
+
+			@Override
+			public boolean hasNext() {
+				return index < aSorted.size() && aSorted.get(index).getWhenMillis() < tempTo;
+			}
+
+			@Override
+			public Deadline next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				// shared with the cache of the parsed files
+				return new Deadline(aSorted.get(index++));
+			}
+		};
+	}
+
 	public File getLastSyncFile() {
 		return new File(getDirectory().getAbsolutePath() + "/" + TERMIN_LAST_SYNC_TXT);
 	}
 
-	private List<Deadline> readDeadlines(Date to, String tempFileName) throws FileNotFoundException, IOException {
-		List<Deadline> tempMatchingDeadlines = new ArrayList<Deadline>();
-		File tempFile = new File(getDirectory().getAbsolutePath() + "/" + tempFileName);
-		BufferedReader tempReader = createReader(tempFile);
-		Map<String, Deadline> tempIdsAdded = new HashMap<>();
-		String tempLine;
-		while (null != (tempLine = tempReader.readLine())) {
-			List<Deadline> tempDeadlines = parseDeadline(tempLine, to != null);
-			for (Deadline tempDeadline : tempDeadlines) {
-				if (tempDeadline != null) {
-					if (to != null && to.before(tempDeadline.getWhen())) {
-						LOGGER.debug("Skip tooFarAway from " + tempFileName + " " + tempDeadline.getInfo());
-					} else {
-						String tempId = tempDeadline.getId();
-						if (tempId != null) {
-							Deadline tempPreviouslyAdded = tempIdsAdded.put(tempId, tempDeadline);
-							if (tempPreviouslyAdded != null) {
-								// Remove the outdated one (termin-added-from-google is appended always)
-								tempMatchingDeadlines.remove(tempPreviouslyAdded);
-							}
-						}
-						tempMatchingDeadlines.add(tempDeadline);
-					}
-				}
+	private boolean isDone(Deadline aDeadline) throws IOException {
+		if (getDoneIndex().isDone(aDeadline)) {
+			return true;
+		}
+		Date tempWhen = aDeadline.getWhen();
+		return tempWhen != null && tempWhen.getTime() < getStartOfYear(getArchiveBeforeYear())
+				&& getDoneArchive().isDone(aDeadline);
+	}
+
+	/**
+	 * Done deadlines of years before are archived: repeating deadlines start at
+	 * most one year ago.
+	 */
+	private int getArchiveBeforeYear() {
+		return Calendar.getInstance().get(Calendar.YEAR) - 1;
+	}
+
+	private static long getStartOfYear(int aYear) {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.clear();
+		tempCal.set(aYear, Calendar.JANUARY, 1);
+		return tempCal.getTimeInMillis();
+	}
+
+	/**
+	 * Move the done deadlines before aBeforeYear from termin-done.txt to the
+	 * yearly archive.
+	 */
+	private void archiveDone(int aBeforeYear) throws IOException {
+		File tempFile = new File(getDirectory().getAbsolutePath() + "/" + TERMIN_DONE_TXT);
+		List<String> tempLines = new ArrayList<>();
+		try (BufferedReader tempReader = createReader(tempFile)) {
+			String tempLine;
+			while ((tempLine = tempReader.readLine()) != null) {
+				tempLines.add(tempLine);
 			}
 		}
-		tempReader.close();
-		removeAllDeleted(tempMatchingDeadlines);
-		return tempMatchingDeadlines;
+		List<String> tempKeep = getDoneArchive().archive(tempLines, aBeforeYear);
+		if (tempKeep.size() == tempLines.size()) {
+			return;
+		}
+		File tempNewFile = new File(tempFile.getAbsolutePath() + ".tmp");
+		Files.deleteIfExists(tempNewFile.toPath());
+		try (BufferedWriter tempFileWriter = createFileWriter(tempNewFile)) {
+			for (String tempLine : tempKeep) {
+				tempFileWriter.append(tempLine);
+				tempFileWriter.append(System.lineSeparator());
+			}
+		}
+		Files.move(tempNewFile.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
 	}
 
 	/**
-	 * While adding the IDs it may be non-deleted or deleted. With
-	 * tempPreviouslyAdded above we found the latest state of google event.
-	 * 
-	 * @param aMatchingDeadlines
+	 * @return the done deadlines archived for aYear, empty if not archived
 	 */
-	private void removeAllDeleted(List<Deadline> aMatchingDeadlines) {
-		for (Iterator<Deadline> i = aMatchingDeadlines.iterator(); i.hasNext();) {
-			Deadline tempDeadline = i.next();
-			if (tempDeadline.isDeleted()) {
-				i.remove();
+	public List<Deadline> getArchivedDoneDeadlines(int aYear) {
+		synchronized (MONITOR) {
+			try {
+				return getDoneArchive().readDeadlines(aYear);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
 			}
 		}
 	}
 
-	protected BufferedReader createReader(File tempFile) throws IOException {
-		if (!tempFile.exists()) {
-			LOGGER.info("File does not exist: " + tempFile.getAbsolutePath());
-			tempFile.createNewFile();
-			return new BufferedReader(new StringReader(""));
+	/**
+	 * Only to be called in synchronized (MONITOR)
+	 */
+	protected DoneArchive getDoneArchive() {
+		if (doneArchive == null) {
+			doneArchive = new DoneArchive(getDirectory());
 		}
-		String tempEncoding = "UTF-8";
-		// https://dzone.com/articles/java-may-use-utf-8-as-its-default-charset
-		UnicodeReader tempIn = new UnicodeReader(new FileInputStream(tempFile), tempEncoding);
-		LOGGER.debug("Read " + tempFile + " with encoding=" + tempIn.getEncoding());
-		return new BufferedReader(tempIn);
+		return doneArchive;
 	}
 
-	private List<Deadline> parseDeadline(String aLine, boolean aRepeating) {
-		List<Deadline> tempDeadlines = new ArrayList<Deadline>();
-		String tempLine = aLine;
-		if (tempLine.startsWith(INFO_PREFIX)) {
-			return tempDeadlines;
+	/**
+	 * Only to be called in synchronized (MONITOR)
+	 */
+	protected DoneIndex getDoneIndex() {
+		if (doneIndex == null) {
+			doneIndex = new DoneIndex(new File(getDirectory().getAbsolutePath() + "/" + TERMIN_DONE_TXT),
+					new File(getDirectory().getAbsolutePath() + "/" + TERMIN_DONE_IDX));
 		}
-		if (tempLine.startsWith(INFO_PREFIX2)) {
-			return tempDeadlines;
+		return doneIndex;
+	}
+
+	private File getGoogleAddedFile() {
+		return new File(getDirectory().getAbsolutePath() + "/" + TERMIN_GOOGLE_ADDED_TXT);
+	}
+
+	/**
+	 * Google events and nextSyncToken of the last incremental sync.
+	 */
+	public File getGoogleSyncFile() {
+		return new File(getDirectory().getAbsolutePath() + "/" + TERMIN_GOOGLE_SYNC_JSON);
+	}
+
+	/**
+	 * Google calendar changes not yet acknowledged by Google.
+	 */
+	public File getGoogleOutboxFile() {
+		return new File(getDirectory().getAbsolutePath() + "/" + TERMIN_GOOGLE_OUTBOX_JSON);
+	}
+
+	private List<Deadline> readDeadlines(Date to, String tempFileName, Map<File, FileFingerprint> aFingerprints)
+			throws FileNotFoundException, IOException {
+		return replay(to, tempFileName, parseDeadlines(to, tempFileName, aFingerprints));
+	}
+
+	/**
+	 * @return all lines of the file as deadlines, including the outdated and
+	 *         deleted ones
+	 * @param aFingerprints already taken, the others are taken here
+	 */
+	private List<Deadline> parseDeadlines(Date to, String tempFileName, Map<File, FileFingerprint> aFingerprints)
+			throws IOException {
+		return parseFile(to, tempFileName, aFingerprints, false).deadlines;
+	}
+
+	/**
+	 * @param aRules the repeating lines are compiled into ParsedFile.rules
+	 *               instead of being expanded (to is ignored then)
+	 */
+	private ParsedFile parseFile(Date to, String tempFileName, Map<File, FileFingerprint> aFingerprints,
+			boolean aRules) throws IOException {
+		File tempFile = new File(getDirectory().getAbsolutePath() + "/" + tempFileName);
+		// repeating deadlines depend on today
+		String tempCacheKey = (aRules ? "rules" : String.valueOf(to != null)) + "|"
+				+ new java.sql.Date(System.currentTimeMillis());
+		String tempCacheName = aRules ? tempFileName + "|rules" : tempFileName;
+		FileFingerprint tempFingerprint = aFingerprints.get(tempFile);
+		if (tempFingerprint == null) {
+			tempFingerprint = FileFingerprint.of(tempFile);
 		}
-		if (tempLine.trim().length() == 0) {
-			return tempDeadlines;
+		ParsedFile tempParsedFile = parsedFiles.get(tempCacheName);
+		if (tempParsedFile != null && tempParsedFile.key.equals(tempCacheKey)
+				&& (tempParsedFile.fingerprint.equals(tempFingerprint)
+						|| tempParsedFile.fingerprint.isUnchanged(tempFile))) {
+			LOGGER.debug("Unchanged " + tempFileName);
+			return tempParsedFile;
 		}
-		String tempId;
-		if (tempLine.startsWith(ID_PREFIX)) {
-			int tempTabPos = tempLine.indexOf("\t");
-			tempId = tempLine.substring(ID_PREFIX.length(), tempTabPos);
-			tempLine = tempLine.substring(tempTabPos + 1);
-			if (DELETED_MARKER.equals(tempLine)) {
-				// return deleted deadline as previously the un.deleted one was added
-				// while parsing the file
-				Deadline tempDeadline = new Deadline();
-				tempDeadline.setId(tempId);
-				tempDeadline.setDeleted(true);
-				tempDeadline.setWhen(new Date());
-				tempDeadlines.add(tempDeadline);
-				return tempDeadlines;
+		List<Deadline> tempDeadlines;
+		List<String> tempDiagnostics;
+		List<RecurrenceRule> tempRules = new ArrayList<>();
+		if (aRules) {
+			DeadlineParser tempParser = new DeadlineParser(true, tempRules);
+			try (BufferedReader tempReader = createReader(tempFile)) {
+				tempDeadlines = tempParser.parse(tempReader);
 			}
+			tempDiagnostics = tempParser.getDiagnostics();
+		} else if (isLoadMapped(tempFile)) {
+			MappedDeadlineLoader tempLoader = new MappedDeadlineLoader(to != null);
+			tempDeadlines = tempLoader.load(tempFile);
+			tempDiagnostics = tempLoader.getDiagnostics();
 		} else {
-			tempId = null;
-		}
-		try {
-			String tempDateChars = tempLine.substring(0, 10);
-			tempDateChars = tempDateChars.replace('?', '0');
-			if (tempDateChars.endsWith("0000")) {
-				Calendar tempCal = Calendar.getInstance();
-				int tempCurrentYear = tempCal.get(Calendar.YEAR) - 1;
-				tempDateChars = tempDateChars.substring(0, tempDateChars.length() - 4) + tempCurrentYear;
-			}
-			Date tempDate = dateFormat.parse(tempDateChars);
-			String tempInfo = tempLine.substring(10);
-			if (tempInfo.startsWith("*") && aRepeating) {
-				// repeating
-				addRepeating(tempDeadlines, tempDate, tempInfo);
-			} else {
-				Deadline tempDeadline = new Deadline();
-				tempDeadline.setId(tempId);
-				tempDeadline.setWhen(tempDate);
-				tempDeadline.setInfo(tempInfo);
-				tempDeadline.extractTimeFromInfo();
-				tempDeadlines.add(tempDeadline);
+			DeadlineParser tempParser = new DeadlineParser(to != null);
+			try (BufferedReader tempReader = createReader(tempFile)) {
+				tempDeadlines = tempParser.parse(tempReader);
 			}
-		} catch (Exception e) {
-			LOGGER.error("Ignore '" + tempLine + "'", e);
-			if (tempLine.trim().length() > 0) {
-				Deadline tempDeadline = new Deadline();
-				tempDeadline.setWhen(new Date());
-				tempDeadline.setInfo(tempLine + " " + e);
-				tempDeadlines.add(tempDeadline);
+			tempDiagnostics = tempParser.getDiagnostics();
+		}
+		for (String tempDiagnostic : tempDiagnostics) {
+			LOGGER.error("Ignore " + tempFileName + ":" + tempDiagnostic);
+		}
+		if (TERMIN_GOOGLE_ADDED_TXT.equals(tempFileName)) {
+			for (Deadline tempDeadline : tempDeadlines) {
+				tempDeadline.setAddedByGoogle(true);
 			}
 		}
-		return tempDeadlines;
+		tempParsedFile = new ParsedFile(tempFingerprint, tempCacheKey, tempDeadlines, tempRules);
+		parsedFiles.put(tempCacheName, tempParsedFile);
+		return tempParsedFile;
 	}
 
-	private class UnitAndStep {
-		int unit;
-		int step;
-		String textWithoutRepeatingInfo;
+	/**
+	 * The deadlines are changed later on (e.g. done, addedByGoogle)
+	 */
+	private static List<Deadline> copy(List<Deadline> aDeadlines) {
+		List<Deadline> tempCopy = new ArrayList<>(aDeadlines.size());
+		for (Deadline tempDeadline : aDeadlines) {
+			tempCopy.add(new Deadline(tempDeadline));
+		}
+		return tempCopy;
+	}
 
-		public UnitAndStep(int aUnit, int aStep, String aTextWithoutRepeatingInfo) {
-			super();
-			unit = aUnit;
-			step = aStep;
-			textWithoutRepeatingInfo = aTextWithoutRepeatingInfo;
+	private static class ParsedFile {
+		private final FileFingerprint fingerprint;
+		private final String key;
+		private final List<Deadline> deadlines;
+		private final List<RecurrenceRule> rules;
+
+		ParsedFile(FileFingerprint aFingerprint, String aKey, List<Deadline> aDeadlines,
+				List<RecurrenceRule> aRules) {
+			fingerprint = aFingerprint;
+			key = aKey;
+			deadlines = aDeadlines;
+			rules = aRules;
 		}
+	}
 
-		/**
-		 *
-		 */
-		@Override
-		public String toString() {
-			StringBuilder tempBuilder = new StringBuilder();
-			tempBuilder.append("UnitAndStep [unit=");
-			tempBuilder.append(unit);
-			tempBuilder.append(", step=");
-			tempBuilder.append(step);
-			tempBuilder.append(", ");
-			if (textWithoutRepeatingInfo != null) {
-				tempBuilder.append("textWithoutRepeatingInfo=");
-				tempBuilder.append(textWithoutRepeatingInfo);
-				tempBuilder.append(", ");
+	/**
+	 * termin-added-from-google is appended always: the latest line of an ID wins
+	 * and takes the position of that line. A DELETED_MARKER removes the ID.
+	 */
+	private List<Deadline> replay(Date to, String tempFileName, List<Deadline> aDeadlines) {
+		// ID or the index for deadlines without ID
+		Map<Object, Deadline> tempLatest = new LinkedHashMap<>();
+		for (int i = 0; i < aDeadlines.size(); i++) {
+			Deadline tempDeadline = aDeadlines.get(i);
+			if (to != null && to.before(tempDeadline.getWhen())) {
+				LOGGER.debug("Skip tooFarAway from " + tempFileName + " " + tempDeadline.getInfo());
+			} else {
+				String tempId = tempDeadline.getId();
+				if (tempId == null) {
+					tempLatest.put(Integer.valueOf(i), tempDeadline);
+				} else {
+					tempLatest.remove(tempId);
+					if (!tempDeadline.isDeleted()) {
+						tempLatest.put(tempId, tempDeadline);
+					}
+				}
 			}
-			tempBuilder.append("]");
-			return tempBuilder.toString();
 		}
+		return new ArrayList<>(tempLatest.values());
 	}
 
-	private void addRepeating(List<Deadline> tempDeadlines, Date tempDate, String tempInfo) {
-		Calendar tempStartingPoint = Calendar.getInstance();
-		UnitAndStep tempStepAndUnit = getStepAndUnit(tempInfo);
-		LOGGER.debug("stepAndUnit=" + tempStepAndUnit);
-		int tempMaxAddCount;
-		if (tempStepAndUnit.unit == Calendar.YEAR) {
-			tempStartingPoint.add(Calendar.YEAR, -1);
-			tempMaxAddCount = Math.max(1, 4 / tempStepAndUnit.step);
-		} else if (tempStepAndUnit.unit == Calendar.MONTH) {
-			tempStartingPoint.add(Calendar.MONTH, -3);
-			tempMaxAddCount = Math.max(3, 12 / tempStepAndUnit.step);
-		} else if (tempStepAndUnit.unit == Calendar.WEEK_OF_YEAR) {
-			tempStartingPoint.add(Calendar.WEEK_OF_YEAR, -3);
-			tempMaxAddCount = Math.max(10, 40 / tempStepAndUnit.step);
-		} else if (tempStepAndUnit.unit == Calendar.DAY_OF_YEAR) {
-			tempStartingPoint.add(Calendar.DAY_OF_YEAR, -3);
-			tempMaxAddCount = 30;
-		} else {
-			LOGGER.error("No valid range " + tempInfo);
-			return;
-		}
-		Calendar tempCal = Calendar.getInstance();
-		tempCal.set(Calendar.HOUR_OF_DAY, 0);
-		tempCal.set(Calendar.MINUTE, 0);
-		tempCal.set(Calendar.SECOND, 0);
-		tempCal.set(Calendar.MILLISECOND, 0);
-		int tempPreviousYear = tempCal.get(Calendar.YEAR) - 1;
-		tempCal.setTime(tempDate);
-		// Begin one year before
-		int tempDateYear = tempCal.get(Calendar.YEAR);
-		while (tempDateYear < tempPreviousYear) {
-			tempCal.add(tempStepAndUnit.unit, tempStepAndUnit.step);
-			tempDateYear = tempCal.get(Calendar.YEAR);
+	/**
+	 * Rewrite termin-added-by-google.txt when there are more outdated lines than
+	 * deadlinereminder.compactDeadRatio * live lines or the file is larger than
+	 * deadlinereminder.compactBytes.
+	 */
+	boolean isCompactionDue(int aLineCount, int aLiveCount, long aFileLength) {
+		int tempDeadCount = aLineCount - aLiveCount;
+		if (tempDeadCount <= 0) {
+			return false;
 		}
-		// LOGGER.info("tempCal="+tempCal.getTime());
-		LOGGER.debug("tempStartingPoint=" + tempStartingPoint.getTime());
-		int tempAddCount = 0;
-		while (true) {
-			if (tempStartingPoint.before(tempCal)) {
-				LOGGER.debug("Match " + tempCal.getTime() + " for " + tempDate + " " + tempInfo);
-				Deadline tempDeadline = new Deadline();
-				Date tempWhen = tempCal.getTime();
-				tempDeadline.setWhen(tempWhen);
-				tempDeadline.setInfo(tempInfo);
-				tempDeadline.setTextWithoutRepeatingInfo(tempStepAndUnit.textWithoutRepeatingInfo);
-				tempDeadline.extractTimeFromInfo();
-				if (tempStepAndUnit.unit == Calendar.YEAR) {
-					tempDeadline.setRepeating(tempDate);
+		return tempDeadCount >= COMPACT_DEAD_RATIO * Math.max(1, aLiveCount) || aFileLength >= COMPACT_BYTES;
+	}
+
+	/**
+	 * Compacts termin-added-by-google.txt and archives termin-done.txt if the
+	 * last load found it due. Not part of loading: the file may still be mapped
+	 * by the load (replacing it fails on Windows then), a failure is logged and
+	 * tried again next time.
+	 */
+	@Override
+	public void maintain() {
+		synchronized (MONITOR) {
+			if (compactionDue) {
+				try {
+					compactGoogleAdded();
+					compactionDue = false;
+				} catch (IOException | RuntimeException e) {
+					LOGGER.error("Compaction of " + TERMIN_GOOGLE_ADDED_TXT + " failed, try again later", e);
 				}
-				tempDeadlines.add(tempDeadline);
-				tempAddCount++;
-				if (tempAddCount >= tempMaxAddCount) {
-					break;
+			}
+			if (archiveDue) {
+				try {
+					archiveDone(getArchiveBeforeYear());
+					archiveDue = false;
+				} catch (IOException | RuntimeException e) {
+					LOGGER.error("Archive of " + TERMIN_DONE_TXT + " failed, try again later", e);
+				}
+				try {
+					getDoneIndex().update();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.error("Reading " + TERMIN_DONE_TXT + " failed", e);
 				}
 			}
-			tempCal.add(tempStepAndUnit.unit, tempStepAndUnit.step);
 		}
 	}
 
-	private UnitAndStep getStepAndUnit(String anInfo) {
-		int tempSpace = anInfo.indexOf(' ');
-		if (tempSpace > 0) {
-			char tempType;
-			Integer tempCount;
-			String tempTextWithoutRepeatingInfo = "*" + anInfo.substring(tempSpace + 1);
-			if (tempSpace == 1) {
-				// Annual event
-				tempType = 'Y';
-				tempCount = 1;
-			} else {
-				String tempNextWord = anInfo.substring(1, tempSpace);
-				try {
-					String tempCountString = tempNextWord.substring(0, tempNextWord.length() - 1);
-					try {
-						tempCount = new Integer(tempCountString);
-						if (tempCount < 1) {
-							tempCount = 1;
-						}
-						tempType = tempNextWord.charAt(tempNextWord.length() - 1);
-					} catch (NumberFormatException e) {
-						tempCount = 1;
-						if (tempNextWord.length() == 1) {
-							tempType = tempNextWord.charAt(0);
-						} else {
-							// Annual event
-							tempType = 'Y';
-							tempTextWithoutRepeatingInfo = anInfo;
+	/**
+	 * Keeps the latest line of each ID, written to a temporary file which then
+	 * replaces the original.
+	 */
+	void compactGoogleAdded() throws IOException {
+		synchronized (MONITOR) {
+			File tempFile = getGoogleAddedFile();
+			Map<Object, String> tempLatest = new LinkedHashMap<>();
+			int tempLineCount = 0;
+			try (BufferedReader tempReader = createReader(tempFile)) {
+				String tempLine;
+				while ((tempLine = tempReader.readLine()) != null) {
+					tempLineCount++;
+					int tempTabPos = tempLine.indexOf('\t');
+					if (tempLine.startsWith(ID_PREFIX) && tempTabPos > 0) {
+						String tempId = tempLine.substring(ID_PREFIX.length(), tempTabPos);
+						tempLatest.remove(tempId);
+						if (!tempLine.substring(tempTabPos + 1).equals(DELETED_MARKER)) {
+							tempLatest.put(tempId, tempLine);
 						}
+					} else if (!tempLine.trim().isEmpty()) {
+						tempLatest.put(Integer.valueOf(tempLineCount), tempLine);
 					}
-				} catch (Exception e) {
-					LOGGER.info("Ignore " + anInfo);
-					LOGGER.debug("Ignore", e);
-					// Annual event
-					tempType = 'Y';
-					tempCount = 1;
 				}
 			}
-			int tempUnit;
-			switch (tempType) {
-			case 'd':
-				tempUnit = Calendar.DAY_OF_YEAR;
-				break;
-			case 'D':
-				tempUnit = Calendar.DAY_OF_YEAR;
-				break;
-			case 'w':
-				tempUnit = Calendar.WEEK_OF_YEAR;
-				break;
-			case 'W':
-				tempUnit = Calendar.WEEK_OF_YEAR;
-				break;
-			case 'm':
-				tempUnit = Calendar.MONTH;
-				break;
-			case 'M':
-				tempUnit = Calendar.MONTH;
-				break;
-			case 'y':
-				tempUnit = Calendar.YEAR;
-				break;
-			case 'Y':
-				tempUnit = Calendar.YEAR;
-				break;
-			default:
-				tempUnit = Calendar.YEAR;
-				break;
+			File tempNewFile = new File(tempFile.getAbsolutePath() + ".tmp");
+			Files.deleteIfExists(tempNewFile.toPath());
+			try (BufferedWriter tempFileWriter = createFileWriter(tempNewFile)) {
+				for (String tempLine : tempLatest.values()) {
+					tempFileWriter.append(tempLine);
+					tempFileWriter.append(System.lineSeparator());
+				}
 			}
-			UnitAndStep tempUnitAndStep = new UnitAndStep(tempUnit, tempCount, tempTextWithoutRepeatingInfo);
-			return tempUnitAndStep;
+			Files.move(tempNewFile.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.info("Compacted " + tempFile + " from " + tempLineCount + " to " + tempLatest.size() + " lines");
+		}
+	}
+
+	/**
+	 * Large files are memory mapped and parsed in parallel chunks.
+	 */
+	protected boolean isLoadMapped(File aFile) {
+		return MappedDeadlineLoader.isLarge(aFile);
+	}
+
+	protected BufferedReader createReader(File tempFile) throws IOException {
+		if (!tempFile.exists()) {
+			LOGGER.info("File does not exist: " + tempFile.getAbsolutePath());
+			tempFile.createNewFile();
+			return new BufferedReader(new StringReader(""));
 		}
-		return new UnitAndStep(Calendar.YEAR, 1, anInfo);
+		String tempEncoding = "UTF-8";
+		// https://dzone.com/articles/java-may-use-utf-8-as-its-default-charset
+		UnicodeReader tempIn = new UnicodeReader(new FileInputStream(tempFile), tempEncoding);
+		LOGGER.debug("Read " + tempFile + " with encoding=" + tempIn.getEncoding());
+		return new BufferedReader(tempIn);
 	}
 
 	@Override
@@ -387,25 +578,29 @@ public class FileStorage implements Storage {
 				}
 			}
 			if (tempDones.size() > 0) {
-				try (PrintWriter tempDone = new PrintWriter(
-						createFileWriter(new File(getDirectory() + "/" + TERMIN_DONE_TXT)))) {
-					tempDone.println(INFO_PREFIX + new Date());
-					for (Deadline tempDeadline : tempDones) {
-						StringBuilder tempDeadlineText = new StringBuilder();
-						tempDeadlineText.append(dateFormat.format(tempDeadline.getWhen()));
-						if (tempDeadline.isWholeDayEvent()) {
-							// Wholeday event
-						} else {
-							tempDeadlineText.append(" ");
+				// archiveDone must not replace the file between reading it and this append
+				synchronized (MONITOR) {
+					try (PrintWriter tempDone = new PrintWriter(
+							createFileWriter(new File(getDirectory() + "/" + TERMIN_DONE_TXT)))) {
+						tempDone.println(INFO_PREFIX + new Date());
+						for (Deadline tempDeadline : tempDones) {
+							StringBuilder tempDeadlineText = new StringBuilder();
 							Date tempWhen = tempDeadline.getWhen();
-							tempDeadlineText.append(timeFormat.format(tempWhen));
+							DateTimeCodec.appendDate(tempDeadlineText, tempWhen.getTime());
+							if (tempDeadline.isWholeDayEvent()) {
+								// Wholeday event
+							} else {
+								tempDeadlineText.append(" ");
+								DateTimeCodec.appendTime(tempDeadlineText, tempWhen.getTime());
+							}
+							tempDeadlineText.append(" ");
+							tempDeadlineText.append(tempDeadline.getInfo());
+							String tempLine = tempDeadlineText.toString();
+							tempDone.println(tempLine);
+							LOGGER.info(new Date() + ": Confirmed: '" + tempLine + "'");
 						}
-						tempDeadlineText.append(" ");
-						tempDeadlineText.append(tempDeadline.getInfo());
-						String tempLine = tempDeadlineText.toString();
-						tempDone.println(tempLine);
-						LOGGER.info(new Date() + ": Confirmed: '" + tempLine + "'");
 					}
+					getDoneIndex().update();
 				}
 			}
 		} catch (Exception e) {
@@ -416,7 +611,7 @@ public class FileStorage implements Storage {
 	@Override
 	public void addFromGroogle(List<Deadline> aDeadlines) throws IOException {
 		synchronized (MONITOR) {
-			File tempFile = new File(getDirectory().getAbsolutePath() + "/" + TERMIN_GOOGLE_ADDED_TXT);
+			File tempFile = getGoogleAddedFile();
 			try (BufferedWriter tempFileWriter = createFileWriter(tempFile)) {
 				for (Deadline tempDeadline : aDeadlines) {
 					StringBuilder tempDeadlineText = new StringBuilder();
@@ -427,16 +622,16 @@ public class FileStorage implements Storage {
 					}
 					Date tempWhen = tempDeadline.getWhen();
 
-					tempDeadlineText.append(dateFormat.format(tempWhen));
+					DateTimeCodec.appendDate(tempDeadlineText, tempWhen.getTime());
 					if (tempDeadline.isWholeDayEvent()) {
 						// Wholeday event
 					} else {
 						tempDeadlineText.append(" ");
-						tempDeadlineText.append(timeFormat.format(tempWhen));
+						DateTimeCodec.appendTime(tempDeadlineText, tempWhen.getTime());
 						Date tempWhenEndTime = tempDeadline.getWhenEndTime();
 						if (tempWhenEndTime != null) {
 							tempDeadlineText.append("-");
-							tempDeadlineText.append(timeFormat.format(tempWhenEndTime));
+							DateTimeCodec.appendTime(tempDeadlineText, tempWhenEndTime.getTime());
 						}
 					}
 					tempDeadlineText.append(" ");
@@ -452,7 +647,7 @@ public class FileStorage implements Storage {
 	@Override
 	public void removeFromGroogle(List<Deadline> aDeadlines) throws IOException {
 		synchronized (MONITOR) {
-			File tempFile = new File(getDirectory().getAbsolutePath() + "/" + TERMIN_GOOGLE_ADDED_TXT);
+			File tempFile = getGoogleAddedFile();
 			try (BufferedWriter tempFileWriter = createFileWriter(tempFile)) {
 				for (Deadline tempDeadline : aDeadlines) {
 					StringBuilder tempDeadlineText = new StringBuilder();
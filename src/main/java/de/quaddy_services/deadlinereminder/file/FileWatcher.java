@@ -0,0 +1,115 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches some files of a directory with a WatchService. An editor may write a
+ * file several times while saving (or write a temp file and rename it), so the
+ * listener is called once no more events came for the debounce time. Events of
+ * other files (e.g. termin-done.idx written while reloading) do not extend it.
+ */
+public class FileWatcher implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileWatcher.class);
+
+	public static final long DEBOUNCE_MILLIS = Long.getLong("deadlinereminder.watchDebounceMillis", 500);
+
+	private final Path directory;
+	private final Set<String> fileNames;
+	private final long debounceMillis;
+	private final FileChangeListener listener;
+	private WatchService watchService;
+	private Thread thread;
+
+	public FileWatcher(File aDirectory, Set<String> aFileNames, long aDebounceMillis, FileChangeListener aListener) {
+		super();
+		directory = aDirectory.toPath();
+		fileNames = aFileNames;
+		debounceMillis = aDebounceMillis;
+		listener = aListener;
+	}
+
+	public synchronized void start() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		thread = new Thread(this::run, "FileWatcher");
+		thread.setDaemon(true);
+		thread.start();
+		LOGGER.info("Watch " + fileNames + " in " + directory);
+	}
+
+	private void run() {
+		try {
+			long tempDebounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+			while (true) {
+				Set<String> tempChanged = new TreeSet<>();
+				while (tempChanged.isEmpty()) {
+					collect(watchService.take(), tempChanged);
+				}
+				long tempQuietUntil = System.nanoTime() + tempDebounceNanos;
+				long tempWaitNanos;
+				while ((tempWaitNanos = tempQuietUntil - System.nanoTime()) > 0) {
+					WatchKey tempKey = watchService.poll(tempWaitNanos, TimeUnit.NANOSECONDS);
+					if (tempKey != null && collect(tempKey, tempChanged)) {
+						tempQuietUntil = System.nanoTime() + tempDebounceNanos;
+					}
+				}
+				LOGGER.info("Changed " + tempChanged);
+				try {
+					listener.filesChanged(tempChanged);
+				} catch (RuntimeException e) {
+					LOGGER.error("Error", e);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			LOGGER.debug("Stopped watching " + directory);
+		}
+	}
+
+	/**
+	 * @return true if a watched file changed
+	 */
+	private boolean collect(WatchKey aKey, Set<String> aChanged) {
+		boolean tempWatched = false;
+		for (WatchEvent<?> tempEvent : aKey.pollEvents()) {
+			if (tempEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+				aChanged.addAll(fileNames);
+				tempWatched = true;
+			} else {
+				String tempFileName = ((Path) tempEvent.context()).getFileName().toString();
+				if (fileNames.contains(tempFileName)) {
+					aChanged.add(tempFileName);
+					tempWatched = true;
+				}
+			}
+		}
+		aKey.reset();
+		return tempWatched;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchService = null;
+		}
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+
+/**
+ * Loads large termin files (e.g. the always growing termin-done.txt) with
+ * FileChannel.map: the file is split at line ends into chunks which are
+ * decoded and parsed in parallel on the common fork-join pool. The results are
+ * concatenated in file order, so "later ID wins" is the same as with one
+ * thread.
+ */
+class MappedDeadlineLoader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedDeadlineLoader.class);
+
+	/**
+	 * Smaller files are read with one reader.
+	 */
+	static final long PARALLEL_LOAD_BYTES = Long.getLong("deadlinereminder.parallelLoadBytes", 1024 * 1024);
+
+	private static final int MIN_CHUNK_BYTES = 256 * 1024;
+
+	private final boolean repeating;
+	private final int minChunkBytes;
+	private final List<String> diagnostics = new ArrayList<>();
+
+	MappedDeadlineLoader(boolean aRepeating) {
+		this(aRepeating, MIN_CHUNK_BYTES);
+	}
+
+	MappedDeadlineLoader(boolean aRepeating, int aMinChunkBytes) {
+		repeating = aRepeating;
+		minChunkBytes = aMinChunkBytes;
+	}
+
+	static boolean isLarge(File aFile) {
+		long tempLength = aFile.length();
+		return tempLength >= PARALLEL_LOAD_BYTES && tempLength < Integer.MAX_VALUE;
+	}
+
+	List<Deadline> load(File aFile) throws IOException {
+		long tempStart = System.currentTimeMillis();
+		try (FileChannel tempChannel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer tempBuffer = tempChannel.map(FileChannel.MapMode.READ_ONLY, 0, tempChannel.size());
+			Charset tempCharset = getCharset(tempBuffer);
+			int tempBomLength = getBomLength(tempBuffer);
+			List<ForkJoinTask<Chunk>> tempTasks = new ArrayList<>();
+			int tempChunkBytes = Math.max(minChunkBytes,
+					tempBuffer.limit() / (ForkJoinPool.getCommonPoolParallelism() * 4 + 1));
+			int tempChunkStart = tempBomLength;
+			while (tempChunkStart < tempBuffer.limit()) {
+				int tempChunkEnd = findLineEnd(tempBuffer, tempChunkStart + tempChunkBytes, tempCharset);
+				tempTasks.add(ForkJoinPool.commonPool()
+						.submit(new Chunk(slice(tempBuffer, tempChunkStart, tempChunkEnd), tempCharset, tempChunkStart)));
+				tempChunkStart = tempChunkEnd;
+			}
+			List<Deadline> tempDeadlines = new ArrayList<>();
+			for (ForkJoinTask<Chunk> tempTask : tempTasks) {
+				Chunk tempChunk = tempTask.join();
+				tempDeadlines.addAll(tempChunk.deadlines);
+				diagnostics.addAll(tempChunk.diagnostics);
+			}
+			LOGGER.info("Loaded " + tempDeadlines.size() + " deadlines from " + aFile.getName() + " in "
+					+ tempTasks.size() + " chunks in " + (System.currentTimeMillis() - tempStart) + "ms");
+			return tempDeadlines;
+		}
+	}
+
+	List<String> getDiagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * @return the charset of the BOM, UTF-8 without BOM (same default as
+	 *         UnicodeReader in FileStorage.createReader)
+	 */
+	static Charset getCharset(ByteBuffer aHead) {
+		if (startsWith(aHead, 0xFE, 0xFF)) {
+			return StandardCharsets.UTF_16BE;
+		}
+		if (startsWith(aHead, 0xFF, 0xFE)) {
+			return StandardCharsets.UTF_16LE;
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	static int getBomLength(ByteBuffer aHead) {
+		if (startsWith(aHead, 0xEF, 0xBB, 0xBF)) {
+			return 3;
+		}
+		if (startsWith(aHead, 0xFE, 0xFF) || startsWith(aHead, 0xFF, 0xFE)) {
+			return 2;
+		}
+		return 0;
+	}
+
+	private static boolean startsWith(ByteBuffer aBuffer, int... aBytes) {
+		if (aBuffer.limit() < aBytes.length) {
+			return false;
+		}
+		for (int i = 0; i < aBytes.length; i++) {
+			if (aBuffer.get(i) != (byte) aBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the position after the next '\n' at or after aPos (within the
+	 *         buffer)
+	 */
+	private static int findLineEnd(ByteBuffer aBuffer, int aPos, Charset aCharset) {
+		int tempLimit = aBuffer.limit();
+		if (aPos >= tempLimit) {
+			return tempLimit;
+		}
+		if (StandardCharsets.UTF_8.equals(aCharset)) {
+			// 0x0A is never part of a multi byte sequence
+			for (int i = aPos; i < tempLimit; i++) {
+				if (aBuffer.get(i) == '\n') {
+					return i + 1;
+				}
+			}
+			return tempLimit;
+		}
+		boolean tempLittleEndian = StandardCharsets.UTF_16LE.equals(aCharset);
+		// code units start at even positions after the 2 bytes BOM
+		for (int i = aPos + (aPos & 1); i + 1 < tempLimit; i += 2) {
+			byte tempLow = aBuffer.get(tempLittleEndian ? i : i + 1);
+			byte tempHigh = aBuffer.get(tempLittleEndian ? i + 1 : i);
+			if (tempLow == '\n' && tempHigh == 0) {
+				return i + 2;
+			}
+		}
+		return tempLimit;
+	}
+
+	private static ByteBuffer slice(ByteBuffer aBuffer, int aStart, int aEnd) {
+		ByteBuffer tempDuplicate = aBuffer.duplicate();
+		tempDuplicate.position(aStart);
+		tempDuplicate.limit(aEnd);
+		return tempDuplicate.slice();
+	}
+
+	private class Chunk extends ForkJoinTask<Chunk> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient ByteBuffer bytes;
+		private final transient Charset charset;
+		private final int offset;
+		private transient List<Deadline> deadlines;
+		private transient List<String> diagnostics;
+
+		Chunk(ByteBuffer aBytes, Charset aCharset, int aOffset) {
+			bytes = aBytes;
+			charset = aCharset;
+			offset = aOffset;
+		}
+
+		@Override
+		public Chunk getRawResult() {
+			return this;
+		}
+
+		@Override
+		protected void setRawResult(Chunk aValue) {
+			// result is this
+		}
+
+		@Override
+		protected boolean exec() {
+			CharBuffer tempChars = charset.decode(bytes);
+			DeadlineParser tempParser = new DeadlineParser(repeating);
+			deadlines = tempParser.parse(tempChars.array(), tempChars.arrayOffset() + tempChars.position(),
+					tempChars.arrayOffset() + tempChars.limit());
+			diagnostics = new ArrayList<>();
+			for (String tempDiagnostic : tempParser.getDiagnostics()) {
+				diagnostics.add("chunk at byte " + offset + " line " + tempDiagnostic);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,406 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.Recurrence;
+
+/**
+ * A repeating termin.txt line like "01.01.2010*2w Text", compiled once.
+ *
+ * The occurrences are the same as stepping a Calendar from the start date,
+ * but most steps are skipped by arithmetic: Calendar.add keeps a day of month
+ * up to 28 in every month, so many steps are one add. Only a day after the 28th
+ * is stepped until it is shortened (31.01. -> 28.02. -> 28.03.).
+ */
+final class RecurrenceRule {
+	private static final int MAX_CACHE_SIZE = 10000;
+	private static final Map<String, RecurrenceRule> CACHE = new ConcurrentHashMap<>();
+
+	private final long start;
+	private final int unit;
+	private final int step;
+	private final String info;
+	private final String textWithoutRepeatingInfo;
+
+	private RecurrenceRule(long aStart, int aUnit, int aStep, String aInfo, String aTextWithoutRepeatingInfo) {
+		start = aStart;
+		unit = aUnit;
+		step = aStep;
+		info = aInfo;
+		textWithoutRepeatingInfo = aTextWithoutRepeatingInfo;
+	}
+
+	/**
+	 * @param aStart midnight of the date of the line
+	 * @param aInfo  the text after the date, starting with '*'
+	 */
+	static RecurrenceRule compile(Date aStart, String aInfo) {
+		String tempKey = aStart.getTime() + "|" + aInfo;
+		RecurrenceRule tempRule = CACHE.get(tempKey);
+		if (tempRule == null) {
+			tempRule = parse(aStart.getTime(), aInfo);
+			if (CACHE.size() >= MAX_CACHE_SIZE) {
+				CACHE.clear();
+			}
+			CACHE.put(tempKey, tempRule);
+		}
+		return tempRule;
+	}
+
+	Date getStart() {
+		return new Date(start);
+	}
+
+	int getUnit() {
+		return unit;
+	}
+
+	int getStep() {
+		return step;
+	}
+
+	String getInfo() {
+		return info;
+	}
+
+	String getTextWithoutRepeatingInfo() {
+		return textWithoutRepeatingInfo;
+	}
+
+	/**
+	 * How many occurrences are shown
+	 */
+	int getMaxAddCount() {
+		switch (unit) {
+		case Calendar.YEAR:
+			return Math.max(1, 4 / step);
+		case Calendar.MONTH:
+			return Math.max(3, 12 / step);
+		case Calendar.WEEK_OF_YEAR:
+			return Math.max(10, 40 / step);
+		default:
+			return 30;
+		}
+	}
+
+	/**
+	 * Occurrences before aNow minus this are not shown
+	 */
+	private Calendar getStartingPoint(Calendar aNow) {
+		Calendar tempStartingPoint = (Calendar) aNow.clone();
+		switch (unit) {
+		case Calendar.YEAR:
+			tempStartingPoint.add(Calendar.YEAR, -1);
+			break;
+		case Calendar.MONTH:
+			tempStartingPoint.add(Calendar.MONTH, -3);
+			break;
+		case Calendar.WEEK_OF_YEAR:
+			tempStartingPoint.add(Calendar.WEEK_OF_YEAR, -3);
+			break;
+		default:
+			tempStartingPoint.add(Calendar.DAY_OF_YEAR, -3);
+			break;
+		}
+		return tempStartingPoint;
+	}
+
+	/**
+	 * @return the shown occurrences for aNow
+	 */
+	List<Date> getOccurrences(Calendar aNow) {
+		int tempMaxAddCount = getMaxAddCount();
+		List<Date> tempOccurrences = new ArrayList<>(tempMaxAddCount);
+		for (Iterator<Date> i = occurrences(aNow); tempOccurrences.size() < tempMaxAddCount;) {
+			tempOccurrences.add(i.next());
+		}
+		return tempOccurrences;
+	}
+
+	/**
+	 * @return the endless occurrences after the starting point of aNow, computed
+	 *         on demand
+	 */
+	Iterator<Date> occurrences(Calendar aNow) {
+		final Calendar tempStartingPoint = getStartingPoint(aNow);
+		final Calendar tempCal = (Calendar) aNow.clone();
+		tempCal.setTimeInMillis(start);
+		// Begin one year before
+		int tempPreviousYear = aNow.get(Calendar.YEAR) - 1;
+		advance(tempCal, getStepsToYear(tempCal, tempPreviousYear));
+		// close to the starting point, but still before it
+		advance(tempCal, getStepsBefore(tempCal, tempStartingPoint));
+		while (!tempStartingPoint.before(tempCal)) {
+			tempCal.add(unit, step);
+		}
+		return iterate(tempCal);
+	}
+
+	/**
+	 * @param aFrom midnight of the first day
+	 * @return the endless occurrences at or after aFrom, computed on demand
+	 */
+	Iterator<Date> occurrencesFrom(Date aFrom) {
+		Calendar tempFrom = Calendar.getInstance();
+		tempFrom.setTime(aFrom);
+		Calendar tempCal = (Calendar) tempFrom.clone();
+		tempCal.setTimeInMillis(start);
+		advance(tempCal, getStepsBefore(tempCal, tempFrom));
+		while (tempCal.before(tempFrom)) {
+			tempCal.add(unit, step);
+		}
+		return iterate(tempCal);
+	}
+
+	/**
+	 * @param aFrom inclusive
+	 * @param aTo   exclusive
+	 * @return the deadlines of this rule in [aFrom, aTo), created on demand
+	 */
+	Iterator<Deadline> deadlines(final Date aFrom, final Date aTo) {
+		Calendar tempMidnight = Calendar.getInstance();
+		tempMidnight.setTime(aFrom);
+		tempMidnight.set(Calendar.HOUR_OF_DAY, 0);
+		tempMidnight.set(Calendar.MINUTE, 0);
+		tempMidnight.set(Calendar.SECOND, 0);
+		tempMidnight.set(Calendar.MILLISECOND, 0);
+		final Iterator<Date> tempOccurrences = occurrencesFrom(tempMidnight.getTime());
+		// no expanded occurrences, they are endless
+		final Recurrence tempRecurrence = new Recurrence(getStart(), unit, step, info, textWithoutRepeatingInfo,
+				Collections.<Date>emptyList());
+		return new Iterator<Deadline>() {
+			private Deadline next = fetch();
+
+			/**
+			 * The time of the info is added to each occurrence, so only the first day
+			 * may have deadlines before aFrom.
+			 */
+			private Deadline fetch() {
+				while (true) {
+					Deadline tempDeadline = tempRecurrence.createDeadline(tempOccurrences.next());
+					if (!tempDeadline.getWhen().before(aTo)) {
+						return null;
+					}
+					if (!tempDeadline.getWhen().before(aFrom)) {
+						return tempDeadline;
+					}
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Deadline next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Deadline tempDeadline = next;
+				next = fetch();
+				return tempDeadline;
+			}
+		};
+	}
+
+	private Iterator<Date> iterate(final Calendar aCal) {
+		return new Iterator<Date>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Date next() {
+				Date tempOccurrence = aCal.getTime();
+				aCal.add(unit, step);
+				return tempOccurrence;
+			}
+		};
+	}
+
+	/**
+	 * @return the number of steps until aCal is in aYear or later
+	 */
+	private long getStepsToYear(Calendar aCal, int aYear) {
+		long tempDistance;
+		switch (unit) {
+		case Calendar.YEAR:
+			tempDistance = aYear - aCal.get(Calendar.YEAR);
+			break;
+		case Calendar.MONTH:
+			tempDistance = (aYear - aCal.get(Calendar.YEAR)) * 12L - aCal.get(Calendar.MONTH);
+			break;
+		default:
+			Calendar tempTarget = (Calendar) aCal.clone();
+			tempTarget.clear();
+			tempTarget.set(aYear, Calendar.JANUARY, 1);
+			tempDistance = getDays(aCal, tempTarget);
+			break;
+		}
+		if (tempDistance <= 0) {
+			return 0;
+		}
+		long tempStepLength = getStepLength();
+		return (tempDistance + tempStepLength - 1) / tempStepLength;
+	}
+
+	/**
+	 * @return a number of steps which keeps aCal before the day (month, year) of
+	 *         aStartingPoint
+	 */
+	private long getStepsBefore(Calendar aCal, Calendar aStartingPoint) {
+		long tempDistance;
+		switch (unit) {
+		case Calendar.YEAR:
+			tempDistance = aStartingPoint.get(Calendar.YEAR) - aCal.get(Calendar.YEAR);
+			break;
+		case Calendar.MONTH:
+			tempDistance = (aStartingPoint.get(Calendar.YEAR) - aCal.get(Calendar.YEAR)) * 12L
+					+ aStartingPoint.get(Calendar.MONTH) - aCal.get(Calendar.MONTH);
+			break;
+		default:
+			tempDistance = getDays(aCal, aStartingPoint);
+			break;
+		}
+		return Math.max(0, tempDistance / getStepLength() - 1);
+	}
+
+	/**
+	 * @return days for DAY_OF_YEAR and WEEK_OF_YEAR, else months or years
+	 */
+	private long getStepLength() {
+		return unit == Calendar.WEEK_OF_YEAR ? 7L * step : step;
+	}
+
+	private static long getDays(Calendar aFrom, Calendar aTo) {
+		return toEpochDay(aTo) - toEpochDay(aFrom);
+	}
+
+	private static long toEpochDay(Calendar aCal) {
+		return java.time.LocalDate
+				.of(aCal.get(Calendar.YEAR), aCal.get(Calendar.MONTH) + 1, aCal.get(Calendar.DAY_OF_MONTH))
+				.toEpochDay();
+	}
+
+	/**
+	 * Same as aSteps times aCal.add(unit, step)
+	 */
+	private void advance(Calendar aCal, long aSteps) {
+		long tempSteps = aSteps;
+		if (unit == Calendar.MONTH || unit == Calendar.YEAR) {
+			// the day may be shortened by the next step and is kept then
+			while (tempSteps > 0 && aCal.get(Calendar.DAY_OF_MONTH) > 28) {
+				aCal.add(unit, step);
+				tempSteps--;
+			}
+		}
+		while (tempSteps > 0) {
+			long tempChunk = Math.min(tempSteps, Integer.MAX_VALUE / step);
+			aCal.add(unit, (int) (tempChunk * step));
+			tempSteps -= tempChunk;
+		}
+	}
+
+	/**
+	 * "*2w Text": every 2 weeks, "* Text" or "*Text": every year
+	 */
+	private static RecurrenceRule parse(long aStart, String anInfo) {
+		int tempSpace = anInfo.indexOf(' ');
+		if (tempSpace <= 0) {
+			return new RecurrenceRule(aStart, Calendar.YEAR, 1, anInfo, anInfo);
+		}
+		String tempTextWithoutRepeatingInfo = "*" + anInfo.substring(tempSpace + 1);
+		if (tempSpace == 1) {
+			// Annual event
+			return new RecurrenceRule(aStart, Calendar.YEAR, 1, anInfo, tempTextWithoutRepeatingInfo);
+		}
+		// next word is anInfo[1, tempSpace): count and type
+		int tempTypePos = tempSpace - 1;
+		long tempCount = parseCount(anInfo, 1, tempTypePos);
+		char tempType;
+		if (tempCount == Long.MIN_VALUE) {
+			tempCount = 1;
+			if (tempTypePos == 1) {
+				tempType = anInfo.charAt(1);
+			} else {
+				// Annual event
+				tempType = 'Y';
+				tempTextWithoutRepeatingInfo = anInfo;
+			}
+		} else {
+			if (tempCount < 1) {
+				tempCount = 1;
+			}
+			tempType = anInfo.charAt(tempTypePos);
+		}
+		return new RecurrenceRule(aStart, getUnit(tempType), (int) tempCount, anInfo, tempTextWithoutRepeatingInfo);
+	}
+
+	/**
+	 * Same values as Integer.parseInt without the NumberFormatException.
+	 *
+	 * @return Long.MIN_VALUE if not a valid int
+	 */
+	private static long parseCount(String aString, int aStart, int aEnd) {
+		int tempPos = aStart;
+		boolean tempNegative = false;
+		if (tempPos < aEnd && (aString.charAt(tempPos) == '-' || aString.charAt(tempPos) == '+')) {
+			tempNegative = aString.charAt(tempPos) == '-';
+			tempPos++;
+		}
+		if (tempPos >= aEnd) {
+			return Long.MIN_VALUE;
+		}
+		long tempValue = 0;
+		for (; tempPos < aEnd; tempPos++) {
+			char tempChar = aString.charAt(tempPos);
+			if (tempChar < '0' || tempChar > '9') {
+				return Long.MIN_VALUE;
+			}
+			tempValue = tempValue * 10 + (tempChar - '0');
+			if (tempValue > (long) Integer.MAX_VALUE + 1) {
+				return Long.MIN_VALUE;
+			}
+		}
+		if (tempNegative) {
+			tempValue = -tempValue;
+		}
+		if (tempValue > Integer.MAX_VALUE) {
+			return Long.MIN_VALUE;
+		}
+		return tempValue;
+	}
+
+	private static int getUnit(char aType) {
+		switch (aType) {
+		case 'd':
+		case 'D':
+			return Calendar.DAY_OF_YEAR;
+		case 'w':
+		case 'W':
+			return Calendar.WEEK_OF_YEAR;
+		case 'm':
+		case 'M':
+			return Calendar.MONTH;
+		default:
+			return Calendar.YEAR;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RecurrenceRule [start=" + new Date(start) + ", unit=" + unit + ", step=" + step + ", info=" + info
+				+ "]";
+	}
+}
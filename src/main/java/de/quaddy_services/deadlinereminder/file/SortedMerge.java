@@ -0,0 +1,74 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Merges sorted iterators into one sorted iterator. Each source is only read
+ * one element ahead, so endless sources (repeating deadlines) are fine as long
+ * as they end at the window.
+ */
+class SortedMerge<T> implements Iterator<T> {
+	private final PriorityQueue<Source<T>> queue;
+	private final Predicate<T> skip;
+	private T next;
+
+	/**
+	 * @param aSkip elements to leave out, e.g. the done deadlines
+	 */
+	SortedMerge(List<Iterator<T>> aSources, final Comparator<? super T> aComparator, Predicate<T> aSkip) {
+		queue = new PriorityQueue<>(Math.max(1, aSources.size()),
+				(aSource1, aSource2) -> aComparator.compare(aSource1.head, aSource2.head));
+		skip = aSkip;
+		for (Iterator<T> tempIterator : aSources) {
+			if (tempIterator.hasNext()) {
+				queue.add(new Source<>(tempIterator));
+			}
+		}
+		next = fetch();
+	}
+
+	private T fetch() {
+		while (!queue.isEmpty()) {
+			Source<T> tempSource = queue.poll();
+			T tempElement = tempSource.head;
+			if (tempSource.iterator.hasNext()) {
+				tempSource.head = tempSource.iterator.next();
+				queue.add(tempSource);
+			}
+			if (!skip.test(tempElement)) {
+				return tempElement;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public T next() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		T tempElement = next;
+		next = fetch();
+		return tempElement;
+	}
+
+	private static class Source<T> {
+		private final Iterator<T> iterator;
+		private T head;
+
+		Source(Iterator<T> anIterator) {
+			iterator = anIterator;
+			head = anIterator.next();
+		}
+	}
+}
@@ -2,7 +2,6 @@ package de.quaddy_services.deadlinereminder.gui;
 
 import java.awt.CardLayout;
 import java.awt.Color;
-import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
@@ -14,11 +13,11 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,30 +31,34 @@ import javax.swing.JScrollPane;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.quaddy_services.deadlinereminder.DateTimeCodec;
 import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.DeadlineComparator;
 import de.quaddy_services.deadlinereminder.Model;
+import de.quaddy_services.deadlinereminder.ModelDelta;
 import de.quaddy_services.deadlinereminder.ModelLoaderMustBeReleadedListener;
 import de.quaddy_services.deadlinereminder.extern.DoneSelectionListener;
 
 public class DeadlineGui extends JPanel {
-	/**
-	 * Attention, this format is different on JDK8 and JDK11
-	 * So. 04.12.2016
-	 *  vs
-	 * So 04.12.2016 
-	 */
-	public static DateFormat dateFormatWithDay = new SimpleDateFormat("EE dd.MM.yyyy");
-	private static DateFormat timeFormat = new SimpleDateFormat("HH:mm");
-	public static DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
 	private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineGui.class);
 
 	private JPanel statusPanel = new JPanel();
 	private JLabel statusLine = new JLabel();
 
-	private Map<Deadline, JCheckBox> deadlineToCheckBoxMap = new HashMap<>();
+	/**
+	 * The model's instances, equal looking deadlines have their own row.
+	 */
+	private Map<Deadline, JCheckBox> deadlineToCheckBoxMap = new IdentityHashMap<>();
 	private ModelLoaderMustBeReleadedListener modelLoaderMustBeReleadedListener;
 	private Model model;
 
+	private JPanel contentPanel;
+	private GridBagConstraints rowGBC;
+	private Date today;
+	private Date overTomorow;
+	private Date nextWeek;
+	private Date overNextWeek;
+
 	public void setModel(Model aModel) {
 		model = aModel;
 		removeAll();
@@ -85,23 +88,19 @@ public class DeadlineGui extends JPanel {
 		tempGBC.fill = GridBagConstraints.HORIZONTAL;
 		tempGBC.anchor = GridBagConstraints.WEST;
 		tempGBC.gridx = 0;
-		tempGBC.gridy = 0;
+		// below the previous component, so a row can be inserted at its index
+		tempGBC.gridy = GridBagConstraints.RELATIVE;
 		tempGBC.insets = new Insets(0, 0, -6, 0);
 		tempGBC.weightx = 1.0;
-		Calendar tempCal = Calendar.getInstance();
-		Date tempToday = tempCal.getTime();
-		tempCal.add(Calendar.DAY_OF_YEAR, 2);
-		Date tempOverTomorow = tempCal.getTime();
-		tempCal.add(Calendar.DAY_OF_YEAR, 5);
-		Date tempNextWeek = tempCal.getTime();
-		tempCal.add(Calendar.DAY_OF_YEAR, 7);
-		Date tempOverNextWeek = tempCal.getTime();
-		List<Deadline> tempOpenDeadlines = aModel.getOpenDeadlines();
+		contentPanel = tempContentPanel;
+		rowGBC = tempGBC;
+		updateColorLimits();
+		List<Deadline> tempOpenDeadlines = aModel.getOpenInstances();
 		if (tempOpenDeadlines.size() == 0) {
 			tempContentPanel.add(new JLabel("No open deadlines in " + aModel.getSourceInfo()), tempGBC);
 		} else {
 			for (final Deadline tempDeadline : tempOpenDeadlines) {
-				addDeadlineRow(tempContentPanel, tempGBC, tempToday, tempOverTomorow, tempNextWeek, tempOverNextWeek, tempDeadline);
+				addDeadlineRow(tempContentPanel, tempGBC, tempDeadline, -1);
 			}
 		}
 		invalidate();
@@ -109,35 +108,102 @@ public class DeadlineGui extends JPanel {
 		repaint();
 	}
 
-	private void addDeadlineRow(JPanel tempContentPanel, GridBagConstraints tempGBC, Date tempToday, Date tempOverTomorow, Date tempNextWeek,
-			Date tempOverNextWeek, final Deadline tempDeadline) {
-		String tempText = dateFormatWithDay.format(tempDeadline.getWhen()) + ": ";
+	/**
+	 * Removes and inserts only the changed rows of the model, instead of
+	 * building all rows again as setModel. The colors are updated as time
+	 * went by.
+	 */
+	public void applyDelta(ModelDelta aDelta) {
+		if (contentPanel == null || deadlineToCheckBoxMap.isEmpty() || model.size() == 0) {
+			// "No open deadlines" is shown or must be shown
+			setModel(model);
+			return;
+		}
+		for (Deadline tempDeadline : aDelta.getRemoved()) {
+			JCheckBox tempCheckBox = deadlineToCheckBoxMap.remove(tempDeadline);
+			if (tempCheckBox != null) {
+				contentPanel.remove(tempCheckBox.getParent());
+			}
+		}
+		updateColorLimits();
+		List<Deadline> tempAdded = new ArrayList<>(aDelta.getAdded());
+		// Last first, so the next row is mostly already shown
+		Collections.sort(tempAdded, Collections.reverseOrder(new DeadlineComparator()));
+		for (Deadline tempDeadline : tempAdded) {
+			Deadline tempNext = model.getNext(tempDeadline);
+			while (tempNext != null && !deadlineToCheckBoxMap.containsKey(tempNext)) {
+				tempNext = model.getNext(tempNext);
+			}
+			int tempIndex = -1;
+			if (tempNext != null) {
+				tempIndex = contentPanel.getComponentZOrder(deadlineToCheckBoxMap.get(tempNext).getParent());
+			}
+			addDeadlineRow(contentPanel, rowGBC, tempDeadline, tempIndex);
+		}
+		for (Deadline tempDeadline : aDelta.getDoneChanged()) {
+			JCheckBox tempCheckBox = deadlineToCheckBoxMap.get(tempDeadline);
+			if (tempCheckBox != null) {
+				tempCheckBox.setSelected(tempDeadline.isDone());
+			}
+		}
+		for (Map.Entry<Deadline, JCheckBox> tempEntry : deadlineToCheckBoxMap.entrySet()) {
+			updateColor(tempEntry.getValue(), tempEntry.getKey());
+		}
+		if (!aDelta.isEmpty()) {
+			LOGGER.info("Changed rows: " + aDelta);
+		}
+		contentPanel.revalidate();
+		repaint();
+	}
+
+	private void updateColorLimits() {
+		Calendar tempCal = Calendar.getInstance();
+		today = tempCal.getTime();
+		tempCal.add(Calendar.DAY_OF_YEAR, 2);
+		overTomorow = tempCal.getTime();
+		tempCal.add(Calendar.DAY_OF_YEAR, 5);
+		nextWeek = tempCal.getTime();
+		tempCal.add(Calendar.DAY_OF_YEAR, 7);
+		overNextWeek = tempCal.getTime();
+	}
+
+	private void updateColor(JCheckBox aCheckBox, Deadline aDeadline) {
+		Date tempWhen = aDeadline.getWhen();
+		if (tempWhen.before(today)) {
+			aCheckBox.setForeground(Color.RED);
+		} else if (tempWhen.before(overTomorow)) {
+			aCheckBox.setForeground(Color.RED.darker());
+		} else if (tempWhen.before(nextWeek)) {
+			aCheckBox.setForeground(Color.BLUE);
+		} else if (tempWhen.before(overNextWeek)) {
+			aCheckBox.setForeground(Color.BLUE.darker());
+		} else if (aDeadline.getRepeating() != null) {
+			aCheckBox.setForeground(Color.GRAY);
+		}
+	}
+
+	/**
+	 * @param anIndex
+	 *            -1 to append
+	 */
+	private void addDeadlineRow(JPanel tempContentPanel, GridBagConstraints tempGBC, final Deadline tempDeadline, int anIndex) {
+		String tempText = DateTimeCodec.formatDateWithDay(tempDeadline.getWhen()) + ": ";
 		if (!tempDeadline.isWholeDayEvent()) {
-			tempText += timeFormat.format(tempDeadline.getWhen());
+			tempText += DateTimeCodec.formatTime(tempDeadline.getWhen());
 			Date tempWhenEndTime = tempDeadline.getWhenEndTime();
 			if (tempWhenEndTime != null) {
-				tempText += "-" + timeFormat.format(tempWhenEndTime);
+				tempText += "-" + DateTimeCodec.formatTime(tempWhenEndTime);
 			}
 			tempText += " ";
 		}
 		tempText += tempDeadline.getTextWithoutRepeatingInfo();
 		if (tempDeadline.getRepeating() != null) {
-			tempText += " (" + dateFormat.format(tempDeadline.getRepeating()) + ")";
+			tempText += " (" + DateTimeCodec.formatDate(tempDeadline.getRepeating()) + ")";
 		}
 		JCheckBox tempCheckBox = new JCheckBox(tempText);
 		deadlineToCheckBoxMap.put(tempDeadline, tempCheckBox);
 		tempCheckBox.setFont(new Font("Monospaced", 0, 14));
-		if (tempDeadline.getWhen().before(tempToday)) {
-			tempCheckBox.setForeground(Color.RED);
-		} else if (tempDeadline.getWhen().before(tempOverTomorow)) {
-			tempCheckBox.setForeground(Color.RED.darker());
-		} else if (tempDeadline.getWhen().before(tempNextWeek)) {
-			tempCheckBox.setForeground(Color.BLUE);
-		} else if (tempDeadline.getWhen().before(tempOverNextWeek)) {
-			tempCheckBox.setForeground(Color.BLUE.darker());
-		} else if (tempDeadline.getRepeating() != null) {
-			tempCheckBox.setForeground(Color.GRAY);
-		}
+		updateColor(tempCheckBox, tempDeadline);
 
 		JPanel tempOneLine = new JPanel();
 		tempOneLine.setLayout(new GridBagLayout());
@@ -156,16 +222,11 @@ public class DeadlineGui extends JPanel {
 			tempOneLine.add(tempComp, tempOneLineGBC);
 		}
 
-		tempGBC.gridy++;
-		tempContentPanel.add(tempOneLine, tempGBC);
+		tempContentPanel.add(tempOneLine, tempGBC, anIndex);
 		tempCheckBox.addItemListener(new ItemListener() {
 			@Override
 			public void itemStateChanged(ItemEvent aE) {
-				if (aE.getStateChange() == ItemEvent.SELECTED) {
-					tempDeadline.setDone(true);
-				} else {
-					tempDeadline.setDone(false);
-				}
+				model.setDone(tempDeadline, aE.getStateChange() == ItemEvent.SELECTED);
 				LOGGER.info("Selection:" + tempDeadline);
 			}
 		});
@@ -199,21 +260,27 @@ public class DeadlineGui extends JPanel {
 	}
 
 	/**
-	 *
+	 * The changes are submitted to the model, so they run on its writer and
+	 * not on the calling GoogleSync thread.
 	 */
 	public DoneSelectionListener createDoneSelectionListener() {
 		return new DoneSelectionListener() {
 
 			@Override
 			public void deadlineDone(final Deadline aDeadline) {
-				EventQueue.invokeLater(new Runnable() {
+				model.submit(new Runnable() {
 					@Override
 					public void run() {
-						JCheckBox tempCheckBox = deadlineToCheckBoxMap.get(aDeadline);
-						if (tempCheckBox == null) {
-							LOGGER.warn("No checkbox for " + aDeadline);
-						} else {
-							tempCheckBox.setSelected(aDeadline.isDone());
+						// aDeadline is a copy of a snapshot
+						Deadline tempOpen = model.getOpenInstance(aDeadline);
+						if (tempOpen == null) {
+							LOGGER.warn("Not open anymore " + aDeadline);
+							return;
+						}
+						model.setDone(tempOpen, true);
+						JCheckBox tempCheckBox = deadlineToCheckBoxMap.get(tempOpen);
+						if (tempCheckBox != null) {
+							tempCheckBox.setSelected(true);
 						}
 					}
 				});
@@ -221,7 +288,7 @@ public class DeadlineGui extends JPanel {
 
 			@Override
 			public void addNewDeadline(final Deadline aDeadline) {
-				EventQueue.invokeLater(new Runnable() {
+				model.submit(new Runnable() {
 					@Override
 					public void run() {
 						model.getAddedFromGoogle().add(aDeadline);
@@ -233,7 +300,7 @@ public class DeadlineGui extends JPanel {
 
 			@Override
 			public void removeDeadlines(final List<Deadline> aDeadlines) {
-				EventQueue.invokeLater(new Runnable() {
+				model.submit(new Runnable() {
 					@Override
 					public void run() {
 						model.getRemovedFromGoogle().addAll(aDeadlines);
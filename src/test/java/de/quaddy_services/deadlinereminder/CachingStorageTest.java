@@ -0,0 +1,102 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import de.quaddy_services.deadlinereminder.file.FileFingerprint;
+
+import junit.framework.TestCase;
+
+public class CachingStorageTest extends TestCase {
+
+	private static class CountingStorage implements Storage {
+		private final File file;
+		private int loadCount;
+		private Map<File, FileFingerprint> fingerprints;
+
+		CountingStorage(File aFile) {
+			file = aFile;
+		}
+
+		@Override
+		public List<Deadline> getOpenDeadlines(Date aTo) {
+			loadCount++;
+			Deadline tempDeadline = new Deadline();
+			tempDeadline.setWhen(new Date(0));
+			tempDeadline.setInfo("Text " + loadCount);
+			List<Deadline> tempDeadlines = new ArrayList<>();
+			tempDeadlines.add(tempDeadline);
+			return tempDeadlines;
+		}
+
+		@Override
+		public List<Deadline> getOpenDeadlines(Date aTo, Map<File, FileFingerprint> aFingerprints) {
+			fingerprints = aFingerprints;
+			return getOpenDeadlines(aTo);
+		}
+
+		@Override
+		public void saveConfirmedTasks(List<Deadline> aDeadlines) {
+			// not needed
+		}
+
+		@Override
+		public String getSourceInfo() {
+			return file.getAbsolutePath();
+		}
+
+		@Override
+		public List<File> getSourceFiles() {
+			return Collections.singletonList(file);
+		}
+
+		@Override
+		public void addFromGroogle(List<Deadline> aDeadline) {
+			// not needed
+		}
+
+		@Override
+		public void removeFromGroogle(List<Deadline> aRemovedFromGoogle) {
+			// not needed
+		}
+	}
+
+	public void testReloadOnlyChanged() throws Exception {
+		File tempFile = File.createTempFile("termin", ".txt");
+		try {
+			Files.write(tempFile.toPath(), "01.01.2020 A".getBytes(StandardCharsets.UTF_8));
+			CountingStorage tempCountingStorage = new CountingStorage(tempFile);
+			CachingStorage tempStorage = new CachingStorage(tempCountingStorage);
+			Date tempTo = new Date();
+
+			List<Deadline> tempFirst = tempStorage.getOpenDeadlines(tempTo);
+			tempFirst.get(0).setDone(true);
+			List<Deadline> tempSecond = tempStorage.getOpenDeadlines(tempTo);
+			assertEquals(1, tempCountingStorage.loadCount);
+			assertEquals("passed on", FileFingerprint.of(tempFile), tempCountingStorage.fingerprints.get(tempFile));
+			assertEquals("Text 1", tempSecond.get(0).getInfo());
+			assertFalse("a copy", tempSecond.get(0).isDone());
+			assertEquals(1, tempStorage.getHitCount());
+			assertEquals(1, tempStorage.getMissCount());
+
+			// same length and modification time, other content
+			long tempLastModified = tempFile.lastModified();
+			Files.write(tempFile.toPath(), "01.01.2020 B".getBytes(StandardCharsets.UTF_8));
+			tempFile.setLastModified(tempLastModified);
+			assertEquals("Text 2", tempStorage.getOpenDeadlines(tempTo).get(0).getInfo());
+
+			tempStorage.saveConfirmedTasks(tempFirst);
+			tempStorage.getOpenDeadlines(tempTo);
+			assertEquals(3, tempCountingStorage.loadCount);
+			assertEquals(3, tempStorage.getMissCount());
+		} finally {
+			tempFile.delete();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ChunkedListTest extends TestCase {
+
+	private static List<Integer> createList(int aSize) {
+		List<Integer> tempList = new ArrayList<>();
+		for (int i = 0; i < aSize; i++) {
+			tempList.add(i);
+		}
+		return tempList;
+	}
+
+	public void testOf() {
+		assertEquals(0, ChunkedList.of(Collections.emptyList()).size());
+		List<Integer> tempExpected = createList(2 * ChunkedList.CHUNK_SIZE + 3);
+		ChunkedList<Integer> tempList = ChunkedList.of(tempExpected);
+		assertEquals(tempExpected, tempList);
+		assertEquals(tempExpected, new ArrayList<>(tempList));
+		try {
+			tempList.get(tempExpected.size());
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	public void testUnmodifiable() {
+		ChunkedList<Integer> tempList = ChunkedList.of(createList(3));
+		try {
+			tempList.add(4);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			tempList.set(0, 4);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testChangesKeepTheOldList() {
+		List<Integer> tempExpected = createList(ChunkedList.CHUNK_SIZE + 1);
+		ChunkedList<Integer> tempOld = ChunkedList.of(tempExpected);
+		ChunkedList<Integer> tempList = tempOld.replaced(1, -1).inserted(0, -2).removed(ChunkedList.CHUNK_SIZE + 1);
+		assertEquals(tempExpected, tempOld);
+		tempExpected = new ArrayList<>(tempExpected);
+		tempExpected.set(1, -1);
+		tempExpected.add(0, -2);
+		tempExpected.remove(ChunkedList.CHUNK_SIZE + 1);
+		assertEquals(tempExpected, tempList);
+	}
+
+	public void testRandomChanges() {
+		Random tempRandom = new Random(4711);
+		List<Integer> tempExpected = new ArrayList<>();
+		ChunkedList<Integer> tempList = ChunkedList.empty();
+		for (int i = 0; i < 20_000; i++) {
+			int tempAction = tempRandom.nextInt(10);
+			if (tempAction < 6 || tempExpected.isEmpty()) {
+				int tempIndex = tempRandom.nextInt(tempExpected.size() + 1);
+				tempExpected.add(tempIndex, i);
+				tempList = tempList.inserted(tempIndex, i);
+			} else if (tempAction < 9) {
+				int tempIndex = tempRandom.nextInt(tempExpected.size());
+				tempExpected.remove(tempIndex);
+				tempList = tempList.removed(tempIndex);
+			} else {
+				int tempIndex = tempRandom.nextInt(tempExpected.size());
+				tempExpected.set(tempIndex, -i);
+				tempList = tempList.replaced(tempIndex, -i);
+			}
+		}
+		assertEquals(tempExpected.size(), tempList.size());
+		assertEquals(tempExpected, tempList);
+		assertEquals(tempExpected, new ArrayList<>(tempList));
+		while (!tempExpected.isEmpty()) {
+			int tempIndex = tempRandom.nextInt(tempExpected.size());
+			tempExpected.remove(tempIndex);
+			tempList = tempList.removed(tempIndex);
+		}
+		assertTrue(tempList.isEmpty());
+		assertFalse(tempList.iterator().hasNext());
+	}
+}
@@ -0,0 +1,51 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * DateTimeCodec compared with SimpleDateFormat.
+ *
+ * mvn test -Pbenchmark
+ */
+public class DateTimeCodecBenchmark extends TestCase {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DateTimeCodecBenchmark.class);
+
+	private static DateFormat createFormat(String aPattern) {
+		DateFormat tempFormat = new SimpleDateFormat(aPattern);
+		tempFormat.setTimeZone(DateTimeCodec.getTimeZone());
+		return tempFormat;
+	}
+
+	public void testFormat() {
+		DateFormat tempDate = createFormat("dd.MM.yyyy");
+		DateFormat tempTime = createFormat("HH:mm");
+		Date tempWhen = new Date();
+		StringBuilder tempText = new StringBuilder();
+		int tempLength = 0;
+		for (int tempRun = 0; tempRun < 3; tempRun++) {
+			long tempStart = System.nanoTime();
+			for (int i = 0; i < 1_000_000; i++) {
+				tempLength += tempDate.format(tempWhen).length() + tempTime.format(tempWhen).length();
+			}
+			long tempSimpleDateFormat = System.nanoTime() - tempStart;
+			tempStart = System.nanoTime();
+			for (int i = 0; i < 1_000_000; i++) {
+				tempText.setLength(0);
+				DateTimeCodec.appendDate(tempText, tempWhen.getTime());
+				DateTimeCodec.appendTime(tempText.append(' '), tempWhen.getTime());
+				tempLength += tempText.length();
+			}
+			long tempCodec = System.nanoTime() - tempStart;
+			LOGGER.info("1M dd.MM.yyyy HH:mm: SimpleDateFormat=" + tempSimpleDateFormat / 1_000_000 + "ms codec="
+					+ tempCodec / 1_000_000 + "ms");
+		}
+		assertTrue(tempLength > 0);
+	}
+}
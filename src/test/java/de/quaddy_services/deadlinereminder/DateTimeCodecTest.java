@@ -0,0 +1,111 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class DateTimeCodecTest extends TestCase {
+	/**
+	 * 1900 to 2100
+	 */
+	private static final long FROM = -2208988800000L;
+	private static final long RANGE = 6311433600000L;
+
+	private static DateFormat createFormat(String aPattern) {
+		DateFormat tempFormat = new SimpleDateFormat(aPattern);
+		tempFormat.setTimeZone(DateTimeCodec.getTimeZone());
+		return tempFormat;
+	}
+
+	public void testFormatSameAsSimpleDateFormat() {
+		DateFormat tempDate = createFormat("dd.MM.yyyy");
+		DateFormat tempShortDate = createFormat("dd.MM.yy");
+		DateFormat tempDateWithDay = createFormat("EE dd.MM.yyyy");
+		DateFormat tempTime = createFormat("HH:mm");
+		Random tempRandom = new Random(4711);
+		for (int i = 0; i < 10_000; i++) {
+			Date tempWhen = new Date(FROM + (long) (tempRandom.nextDouble() * RANGE));
+			assertEquals(tempDate.format(tempWhen), DateTimeCodec.formatDate(tempWhen));
+			assertEquals(tempShortDate.format(tempWhen), DateTimeCodec.formatShortDate(tempWhen.getTime()));
+			assertEquals(tempDateWithDay.format(tempWhen), DateTimeCodec.formatDateWithDay(tempWhen));
+			assertEquals(tempTime.format(tempWhen), DateTimeCodec.formatTime(tempWhen));
+		}
+	}
+
+	public void testParseTimeSameAsSimpleDateFormat() throws ParseException {
+		DateFormat tempTime = createFormat("HH:mm");
+		Calendar tempCal = Calendar.getInstance(DateTimeCodec.getTimeZone());
+		for (String tempToken : new String[] { "11:00", "11:00h", "25:00", "11:75", "11:-5", "011:00", "1:5", "11:5x",
+				"11:00:30", "99999:00", "12:3456", "11:0,5", "00:00", "23:59" }) {
+			tempCal.setTime(tempTime.parse(tempToken));
+			assertEquals(tempToken, tempCal.get(Calendar.HOUR_OF_DAY) * 60 + tempCal.get(Calendar.MINUTE),
+					DateTimeCodec.parseTime(tempToken));
+		}
+		for (String tempToken : new String[] { "1100", "11:", "11:+5", "1,100:00", "11.00", ":00" }) {
+			assertEquals(tempToken, -1, DateTimeCodec.parseTime(tempToken));
+		}
+	}
+
+	public void testParseDateLenient() throws ParseException {
+		DateFormat tempDate = createFormat("dd.MM.yyyy");
+		for (String tempText : new String[] { "01.01.2020", "29.02.2020", "29.02.2021", "31.04.2022", "00.01.2020",
+				"15.13.2020", "31.10.2021", "28.03.2021" }) {
+			assertEquals(tempText, tempDate.parse(tempText).getTime(), DateTimeCodec.parseDate(tempText));
+		}
+		assertEquals(Long.MIN_VALUE, DateTimeCodec.parseDate("1.1.2020"));
+		assertEquals(Long.MIN_VALUE, DateTimeCodec.parseDate("01.01.20x0"));
+	}
+
+	/**
+	 * The gui, the reload and GoogleSync format at the same time.
+	 */
+	public void testConcurrent() throws Exception {
+		ExecutorService tempExecutor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> tempResults = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final long tempSeed = t;
+				tempResults.add(tempExecutor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						// one SimpleDateFormat per thread as reference
+						DateFormat tempDate = createFormat("dd.MM.yyyy");
+						DateFormat tempTime = createFormat("HH:mm");
+						Random tempRandom = new Random(tempSeed);
+						int tempErrors = 0;
+						for (int i = 0; i < 5_000; i++) {
+							Date tempWhen = new Date(FROM + (long) (tempRandom.nextDouble() * RANGE));
+							String tempText = DateTimeCodec.formatDate(tempWhen) + " "
+									+ DateTimeCodec.formatTime(tempWhen);
+							if (!tempText.equals(tempDate.format(tempWhen) + " " + tempTime.format(tempWhen))) {
+								tempErrors++;
+							}
+							int tempMinutes = tempRandom.nextInt(24 * 60);
+							String tempToken = String.format("%02d:%02d", tempMinutes / 60, tempMinutes % 60);
+							if (DateTimeCodec.parseTime(tempToken) != tempMinutes) {
+								tempErrors++;
+							}
+						}
+						return tempErrors;
+					}
+				}));
+			}
+			for (Future<Integer> tempResult : tempResults) {
+				assertEquals(0, tempResult.get().intValue());
+			}
+		} finally {
+			tempExecutor.shutdown();
+		}
+	}
+}
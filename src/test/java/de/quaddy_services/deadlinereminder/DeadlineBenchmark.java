@@ -0,0 +1,103 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Deadline compared with the implementations before, see DeadlineTest.
+ *
+ * mvn test -Pbenchmark
+ */
+public class DeadlineBenchmark extends TestCase {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineBenchmark.class);
+
+	private static Date getZeroOClock() {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.set(Calendar.HOUR_OF_DAY, 0);
+		tempCal.set(Calendar.MINUTE, 0);
+		tempCal.set(Calendar.SECOND, 0);
+		tempCal.set(Calendar.MILLISECOND, 0);
+		return tempCal.getTime();
+	}
+
+	private static long getUsedMemory() {
+		Runtime tempRuntime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return tempRuntime.totalMemory() - tempRuntime.freeMemory();
+	}
+
+	/**
+	 * Heap of 1 million occurrences of one repeating line.
+	 */
+	public void testMemory1MOccurrences() {
+		Date tempStart = getZeroOClock();
+		Recurrence tempRecurrence = new Recurrence(tempStart, Calendar.DAY_OF_YEAR, 1, "*1d 11:00 Daily",
+				"*11:00 Daily", new ArrayList<Date>());
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.setTime(tempStart);
+		long tempUsedBefore = getUsedMemory();
+		List<Deadline> tempDeadlines = new ArrayList<>(1_000_000);
+		for (int i = 0; i < 1_000_000; i++) {
+			tempDeadlines.add(tempRecurrence.createDeadline(tempCal.getTime()));
+			tempCal.add(Calendar.DAY_OF_YEAR, 1);
+		}
+		long tempBytesPerDeadline = (getUsedMemory() - tempUsedBefore) / tempDeadlines.size();
+		LOGGER.info("1M occurrences: " + tempBytesPerDeadline + " bytes per deadline");
+		assertSame(tempDeadlines.get(0).getInfo(), tempDeadlines.get(999_999).getInfo());
+		assertEquals("*1d Daily", tempDeadlines.get(999_999).getInfo());
+	}
+
+	public void testExtractTimeFromInfo() {
+		Date tempMidnight = getZeroOClock();
+		for (int tempRun = 0; tempRun < 3; tempRun++) {
+			long tempStart = System.nanoTime();
+			for (int i = 0; i < 20_000; i++) {
+				for (String tempLine : DeadlineTest.INFOS) {
+					DeadlineTest.extractTimeFromInfoBefore(DeadlineTest.createDeadline(tempMidnight, tempLine));
+				}
+			}
+			long tempBefore = System.nanoTime() - tempStart;
+			tempStart = System.nanoTime();
+			for (int i = 0; i < 20_000; i++) {
+				for (String tempLine : DeadlineTest.INFOS) {
+					DeadlineTest.createDeadline(tempMidnight, tempLine).extractTimeFromInfo();
+				}
+			}
+			long tempNow = System.nanoTime() - tempStart;
+			LOGGER.info("extractTimeFromInfo of " + 20_000 * DeadlineTest.INFOS.length + " infos: before="
+					+ tempBefore / 1_000_000 + "ms now=" + tempNow / 1_000_000 + "ms factor="
+					+ tempBefore / Math.max(1, tempNow));
+		}
+	}
+
+	public void testSort100k() {
+		List<Deadline> tempDeadlines = DeadlineTest.createRandomDeadlines(new Random(4711), getZeroOClock(), 100_000);
+		Comparator<Deadline> tempBefore = DeadlineTest.createComparatorBefore();
+		for (int tempRun = 0; tempRun < 3; tempRun++) {
+			List<Deadline> tempSortedBefore = new ArrayList<>(tempDeadlines);
+			long tempStart = System.nanoTime();
+			Collections.sort(tempSortedBefore, tempBefore);
+			long tempBeforeNanos = System.nanoTime() - tempStart;
+			List<Deadline> tempSorted = new ArrayList<>(tempDeadlines);
+			tempStart = System.nanoTime();
+			Collections.sort(tempSorted, new DeadlineComparator());
+			long tempNanos = System.nanoTime() - tempStart;
+			for (int i = 0; i < tempSorted.size(); i++) {
+				assertEquals(0, tempBefore.compare(tempSortedBefore.get(i), tempSorted.get(i)));
+			}
+			LOGGER.info("Sort 100k: before=" + tempBeforeNanos / 1_000_000 + "ms now=" + tempNanos / 1_000_000 + "ms");
+		}
+	}
+}
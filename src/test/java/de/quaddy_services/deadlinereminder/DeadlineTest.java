@@ -1,9 +1,18 @@
 package de.quaddy_services.deadlinereminder;
 
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
@@ -15,6 +24,210 @@ public class DeadlineTest extends TestCase {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineTest.class);
 
+	/**
+	 * The occurrences take the texts from the recurrence, the time is the same
+	 * as extractTimeFromInfo of each occurrence.
+	 */
+	public void testOccurrencesOfRecurrence() {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.clear();
+		tempCal.set(2021, Calendar.JANUARY, 1);
+		Recurrence tempRecurrence = new Recurrence(tempCal.getTime(), Calendar.YEAR, 1, "*1y 11:00-12:30 Yearly",
+				"*11:00-12:30 Yearly", new ArrayList<Date>());
+		for (int tempDay = 0; tempDay < 366; tempDay++) {
+			Deadline tempOccurrence = tempRecurrence.createDeadline(tempCal.getTime());
+			Deadline tempExtracted = createDeadline(tempCal.getTime(), "*1y 11:00-12:30 Yearly");
+			tempExtracted.extractTimeFromInfo();
+			assertEquals(tempExtracted.getWhen(), tempOccurrence.getWhen());
+			assertEquals(tempExtracted.getWhenEndTime(), tempOccurrence.getWhenEndTime());
+			assertEquals(tempExtracted.getInfo(), tempOccurrence.getInfo());
+			assertEquals(tempExtracted.getTextWithoutRepeatingInfo(), tempOccurrence.getTextWithoutRepeatingInfo());
+			assertEquals(tempExtracted.getTextKey(), tempOccurrence.getTextKey());
+			assertFalse(tempOccurrence.isWholeDayEvent());
+			assertEquals(tempRecurrence.getStart(), tempOccurrence.getRepeating());
+			assertTrue(tempOccurrence.isSameContent(new Deadline(tempOccurrence)));
+			tempCal.add(Calendar.DAY_OF_YEAR, 1);
+		}
+		Deadline tempOccurrence = tempRecurrence.createDeadline(tempCal.getTime());
+		assertEquals("*1y Yearly", tempOccurrence.getInfo());
+		tempOccurrence.setInfo("changed");
+		assertEquals("changed", tempOccurrence.getInfo());
+		assertEquals("*1y Yearly", tempRecurrence.createDeadline(tempCal.getTime()).getInfo());
+	}
+
+	private static final DateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm");
+
+	/**
+	 * Typical termin.txt infos
+	 */
+	static final String[] INFOS = { "Zahnarzt", "17:00 David Nachhilfe", "*1w 17:00 David Nachhilfe",
+			"14:00-15:30 Meeting", "*14:00 - 15:00 Yoga", "*2w 8:30 Muell", "*Geburtstag Max", "*1m 10:00-10:30 Standup",
+			"25:00 odd", "11:75 odd", "1234 Text", "*3d", "- 09:00 test", "*1d 11:00 testDaily", "12:00 12:00 twice",
+			"Call 12:00 late", "9:00", "*1y 07:15-x Sport", "10:00 -11:00 - Arzt", "*2w 1:00 a1:00" };
+
+	public void testExtractTimeFromInfoSameAsBefore() {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.clear();
+		tempCal.set(2021, Calendar.JANUARY, 1);
+		for (int tempDay = 0; tempDay < 366; tempDay += 3) {
+			for (String tempLine : INFOS) {
+				Deadline tempDeadline = createDeadline(tempCal.getTime(), tempLine);
+				Deadline tempBefore = createDeadline(tempCal.getTime(), tempLine);
+				tempDeadline.extractTimeFromInfo();
+				extractTimeFromInfoBefore(tempBefore);
+				assertEquals(tempLine, toText(tempBefore), toText(tempDeadline));
+			}
+			tempCal.add(Calendar.DAY_OF_YEAR, 3);
+		}
+	}
+
+	public void testWholeDayEvent() {
+		Deadline tempDeadline = createDeadline(getZeroOClock(), "17:00 Test");
+		assertTrue(tempDeadline.isWholeDayEvent());
+		tempDeadline.extractTimeFromInfo();
+		assertFalse(tempDeadline.isWholeDayEvent());
+		tempDeadline.setWhen(getZeroOClock());
+		assertTrue(tempDeadline.isWholeDayEvent());
+		tempDeadline.setWhen(new Date(getZeroOClock().getTime() + 59_999));
+		assertTrue(tempDeadline.isWholeDayEvent());
+	}
+
+	public void testSortSameAsBefore() {
+		Random tempRandom = new Random(4711);
+		List<Deadline> tempDeadlines = createRandomDeadlines(tempRandom, getZeroOClock(), 2_000);
+		Comparator<Deadline> tempBefore = createComparatorBefore();
+		List<Deadline> tempSortedBefore = new ArrayList<>(tempDeadlines);
+		Collections.sort(tempSortedBefore, tempBefore);
+		List<Deadline> tempSorted = new ArrayList<>(tempDeadlines);
+		Collections.sort(tempSorted, new DeadlineComparator());
+		for (int i = 0; i < tempSorted.size(); i++) {
+			assertEquals(0, tempBefore.compare(tempSortedBefore.get(i), tempSorted.get(i)));
+		}
+	}
+
+	/**
+	 * Many on the same day, as whole day events
+	 */
+	static List<Deadline> createRandomDeadlines(Random aRandom, Date aMidnight, int aCount) {
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		for (int i = 0; i < aCount; i++) {
+			Date tempWhen = new Date(aMidnight.getTime() + aRandom.nextInt(365) * 24 * 3600_000L);
+			Deadline tempDeadline = createDeadline(tempWhen, INFOS[aRandom.nextInt(INFOS.length)] + " " + i % 100);
+			tempDeadline.extractTimeFromInfo();
+			tempDeadlines.add(tempDeadline);
+		}
+		return tempDeadlines;
+	}
+
+	/**
+	 * The comparator before DeadlineComparator
+	 */
+	static Comparator<Deadline> createComparatorBefore() {
+		return new Comparator<Deadline>() {
+			@Override
+			public int compare(Deadline o1, Deadline o2) {
+				int tempCompareTo = o1.getWhen().compareTo(o2.getWhen());
+				if (tempCompareTo == 0) {
+					return o1.getTextWithoutRepeatingInfo().compareTo(o2.getTextWithoutRepeatingInfo());
+				}
+				return tempCompareTo;
+			}
+		};
+	}
+
+	/**
+	 * Like RecurrenceRule: "*1w 17:00 Text" has the text "*17:00 Text"
+	 */
+	static Deadline createDeadline(Date aWhen, String aLine) {
+		Deadline tempDeadline = new Deadline();
+		tempDeadline.setWhen(aWhen);
+		tempDeadline.setInfo(aLine);
+		int tempSpace = aLine.indexOf(' ');
+		if (aLine.startsWith("*") && tempSpace > 1) {
+			tempDeadline.setTextWithoutRepeatingInfo("*" + aLine.substring(tempSpace + 1));
+		}
+		return tempDeadline;
+	}
+
+	private static String toText(Deadline aDeadline) {
+		return aDeadline.getWhen().getTime() + "|" + aDeadline.getWhenEndTime() + "|" + aDeadline.getInfo() + "|"
+				+ aDeadline.getTextWithoutRepeatingInfo();
+	}
+
+	/**
+	 * extractTimeFromInfo with StringTokenizer, SimpleDateFormat and Calendar as
+	 * it was before the single pass version.
+	 */
+	static void extractTimeFromInfoBefore(Deadline aDeadline) {
+		StringTokenizer tempTokens = new StringTokenizer(aDeadline.getTextWithoutRepeatingInfo(), "* -");
+		List<String> tempTimeTokens = new ArrayList<>();
+		if (!tempTokens.hasMoreTokens()) {
+			return;
+		}
+		String tempToken = tempTokens.nextToken();
+		if (tempToken.length() <= 3 || !Character.isDigit(tempToken.charAt(0))) {
+			return;
+		}
+		try {
+			Date tempTime = TIME_FORMAT.parse(tempToken);
+			tempTimeTokens.add(tempToken);
+			Date tempDateWithoutTime = aDeadline.getWhen();
+			Calendar tempCal = Calendar.getInstance();
+			tempCal.setTime(tempDateWithoutTime);
+			Calendar tempTimeCal = Calendar.getInstance();
+			tempTimeCal.setTime(tempTime);
+			tempCal.add(Calendar.HOUR_OF_DAY, tempTimeCal.get(Calendar.HOUR_OF_DAY));
+			tempCal.add(Calendar.MINUTE, tempTimeCal.get(Calendar.MINUTE));
+			Date tempDateWithTime = tempCal.getTime();
+			TimeZone tempZone = TimeZone.getDefault();
+			tempCal.add(Calendar.MILLISECOND,
+					tempZone.getOffset(tempDateWithoutTime.getTime()) - tempZone.getOffset(tempDateWithTime.getTime()));
+			aDeadline.setWhen(tempCal.getTime());
+			if (tempTokens.hasMoreTokens()) {
+				tempToken = tempTokens.nextToken();
+				try {
+					tempTime = TIME_FORMAT.parse(tempToken);
+					tempTimeTokens.add(tempToken);
+					tempCal = Calendar.getInstance();
+					tempCal.setTime(tempDateWithoutTime);
+					tempTimeCal = Calendar.getInstance();
+					tempTimeCal.setTime(tempTime);
+					tempCal.add(Calendar.HOUR_OF_DAY, tempTimeCal.get(Calendar.HOUR_OF_DAY));
+					tempCal.add(Calendar.MINUTE, tempTimeCal.get(Calendar.MINUTE));
+					aDeadline.setWhenEndTime(tempCal.getTime());
+				} catch (ParseException e) {
+					// ignore
+				}
+			}
+		} catch (ParseException e) {
+			return;
+		}
+		for (String tempTimeToken : tempTimeTokens) {
+			aDeadline.setInfo(removeTokenBefore(aDeadline.getInfo(), tempTimeToken));
+		}
+		if (aDeadline.getTextWithoutRepeatingInfo() != aDeadline.getInfo()) {
+			String tempText = aDeadline.getTextWithoutRepeatingInfo();
+			for (String tempTimeToken : tempTimeTokens) {
+				tempText = removeTokenBefore(tempText, tempTimeToken);
+			}
+			aDeadline.setTextWithoutRepeatingInfo(tempText);
+		}
+	}
+
+	private static String removeTokenBefore(String aText, String aToken) {
+		int tempPos = aText.indexOf(aToken);
+		if (tempPos < 0) {
+			return aText;
+		}
+		String tempStringUpToPos = aText.substring(0, tempPos);
+		if (tempStringUpToPos.endsWith("-")) {
+			tempStringUpToPos = tempStringUpToPos.substring(0, tempStringUpToPos.length() - 1);
+		} else if (tempStringUpToPos.endsWith("- ")) {
+			tempStringUpToPos = tempStringUpToPos.substring(0, tempStringUpToPos.length() - 2);
+		}
+		return (tempStringUpToPos + aText.substring(tempPos + aToken.length()).trim()).trim();
+	}
+
 	public void testTime() {
 		String tempInfo = "13:00 Test ob Google richtig angezeigt wird (mit Uhrzeit)";
 		Deadline tempDeadline = new Deadline();
@@ -0,0 +1,70 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Model.update of a few changes compared with setOpenDeadlines of all, and
+ * setDone of one deadline.
+ *
+ * mvn test -Pbenchmark
+ */
+public class ModelBenchmark extends TestCase {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ModelBenchmark.class);
+
+	private static Deadline createDeadline(long aWhen, String anInfo) {
+		Deadline tempDeadline = new Deadline();
+		tempDeadline.setWhen(new Date(aWhen));
+		tempDeadline.setInfo(anInfo);
+		tempDeadline.setTextWithoutRepeatingInfo(anInfo);
+		return tempDeadline;
+	}
+
+	private static List<Deadline> copy(List<Deadline> aDeadlines) {
+		List<Deadline> tempCopy = new ArrayList<>();
+		for (Deadline tempDeadline : aDeadlines) {
+			tempCopy.add(new Deadline(tempDeadline));
+		}
+		return tempCopy;
+	}
+
+	public void testUpdate100k() {
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			tempDeadlines.add(createDeadline(i * 60_000L, "Info " + (i % 1000)));
+		}
+		Model tempModel = new Model();
+		long tempStart = System.nanoTime();
+		tempModel.setOpenDeadlines(tempDeadlines);
+		long tempFullNanos = System.nanoTime() - tempStart;
+
+		List<Deadline> tempLoaded = copy(tempDeadlines);
+		for (int i = 0; i < 10; i++) {
+			tempLoaded.set(i * 9_000, createDeadline(i * 9_000 * 60_000L, "Changed " + i));
+		}
+		long tempUpdateNanos = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			// alternate between the changed and the original deadlines
+			List<Deadline> tempReload = copy(i % 2 == 0 ? tempLoaded : tempDeadlines);
+			tempStart = System.nanoTime();
+			tempModel.update(tempReload);
+			tempUpdateNanos = Math.min(tempUpdateNanos, System.nanoTime() - tempStart);
+		}
+		long tempSetDoneNanos = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			Deadline tempOpen = tempModel.getOpenInstances().get(i * 9_000 + 1);
+			tempStart = System.nanoTime();
+			tempModel.setDone(tempOpen, !tempOpen.isDone());
+			tempSetDoneNanos = Math.min(tempSetDoneNanos, System.nanoTime() - tempStart);
+		}
+		LOGGER.info("Model of 100k: setOpenDeadlines " + tempFullNanos / 1_000_000 + "ms, update of 10 changes "
+				+ tempUpdateNanos / 1_000_000 + "ms, setDone " + tempSetDoneNanos / 1_000 + "us");
+		assertEquals(100_000, tempModel.size());
+	}
+}
@@ -0,0 +1,220 @@
+package de.quaddy_services.deadlinereminder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+public class ModelTest extends TestCase {
+
+	private static Deadline createDeadline(long aWhen, String anInfo) {
+		Deadline tempDeadline = new Deadline();
+		tempDeadline.setWhen(new Date(aWhen));
+		tempDeadline.setInfo(anInfo);
+		tempDeadline.setTextWithoutRepeatingInfo(anInfo);
+		return tempDeadline;
+	}
+
+	private static List<Deadline> copy(List<Deadline> aDeadlines) {
+		List<Deadline> tempCopy = new ArrayList<>();
+		for (Deadline tempDeadline : aDeadlines) {
+			tempCopy.add(new Deadline(tempDeadline));
+		}
+		return tempCopy;
+	}
+
+	public void testSorted() {
+		Model tempModel = new Model();
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		tempDeadlines.add(createDeadline(2000, "B"));
+		tempDeadlines.add(createDeadline(1000, "C"));
+		tempDeadlines.add(createDeadline(2000, "A"));
+		tempDeadlines.add(createDeadline(2000, "A"));
+		tempModel.setOpenDeadlines(tempDeadlines);
+		List<Deadline> tempOpen = tempModel.getOpenInstances();
+		assertEquals("equal deadlines are kept", 4, tempOpen.size());
+		assertEquals("C", tempOpen.get(0).getInfo());
+		assertSame(tempDeadlines.get(2), tempOpen.get(1));
+		assertSame(tempDeadlines.get(3), tempOpen.get(2));
+		assertEquals("B", tempOpen.get(3).getInfo());
+		assertSame(tempOpen.get(2), tempModel.getNext(tempOpen.get(1)));
+		assertNull(tempModel.getNext(tempOpen.get(3)));
+	}
+
+	public void testUpdate() {
+		Model tempModel = new Model();
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		tempDeadlines.add(createDeadline(1000, "A"));
+		tempDeadlines.add(createDeadline(2000, "B"));
+		tempDeadlines.add(createDeadline(3000, "C"));
+		tempModel.setOpenDeadlines(tempDeadlines);
+
+		List<Deadline> tempLoaded = copy(tempDeadlines);
+		assertTrue(tempModel.update(tempLoaded).isEmpty());
+		assertSame("open instances are kept", tempDeadlines.get(0), tempModel.getOpenInstances().get(0));
+
+		tempLoaded = copy(tempDeadlines);
+		tempLoaded.remove(1);
+		Deadline tempNew = createDeadline(2500, "D");
+		tempLoaded.add(tempNew);
+		tempLoaded.add(createDeadline(3000, "C"));
+		tempLoaded.get(0).setDone(true);
+		ModelDelta tempDelta = tempModel.update(tempLoaded);
+		assertEquals(2, tempDelta.getAdded().size());
+		assertSame(tempNew, tempDelta.getAdded().get(0));
+		assertEquals(Collections.singletonList(tempDeadlines.get(1)), tempDelta.getRemoved());
+		assertEquals(Collections.singletonList(tempDeadlines.get(0)), tempDelta.getDoneChanged());
+		assertTrue(tempDeadlines.get(0).isDone());
+
+		List<Deadline> tempOpen = tempModel.getOpenInstances();
+		assertEquals(4, tempOpen.size());
+		assertSame(tempDeadlines.get(0), tempOpen.get(0));
+		assertSame(tempNew, tempOpen.get(1));
+		assertSame(tempDeadlines.get(2), tempOpen.get(2));
+		assertEquals("C", tempOpen.get(3).getInfo());
+	}
+
+	public void testUpdateChangedEndTime() {
+		Model tempModel = new Model();
+		Deadline tempDeadline = createDeadline(1000, "A");
+		tempModel.setOpenDeadlines(Collections.singletonList(tempDeadline));
+		Deadline tempLoaded = new Deadline(tempDeadline);
+		tempLoaded.setWhenEndTime(new Date(5000));
+		ModelDelta tempDelta = tempModel.update(Collections.singletonList(tempLoaded));
+		assertEquals(Collections.singletonList(tempLoaded), tempDelta.getAdded());
+		assertEquals(Collections.singletonList(tempDeadline), tempDelta.getRemoved());
+	}
+
+	public void testSnapshot() {
+		final List<Runnable> tempWriterQueue = new ArrayList<>();
+		final Model tempModel = new Model(new Executor() {
+			@Override
+			public void execute(Runnable aCommand) {
+				tempWriterQueue.add(aCommand);
+			}
+		});
+		final List<Deadline> tempDeadlines = new ArrayList<>();
+		tempDeadlines.add(createDeadline(2000, "B"));
+		tempModel.setOpenDeadlines(tempDeadlines);
+		ModelSnapshot tempFirst = tempModel.getSnapshot();
+		try {
+			tempFirst.getOpenDeadlines().clear();
+			fail("unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		final List<String> tempOrder = new ArrayList<>();
+		tempModel.submit(new Runnable() {
+			@Override
+			public void run() {
+				tempOrder.add("update");
+				List<Deadline> tempLoaded = copy(tempDeadlines);
+				tempLoaded.add(createDeadline(1000, "A"));
+				tempModel.update(tempLoaded);
+			}
+		});
+		tempModel.submit(new Runnable() {
+			@Override
+			public void run() {
+				tempOrder.add("unchanged");
+				tempModel.update(copy(tempModel.getOpenDeadlines()));
+			}
+		});
+		assertSame("not run yet", tempFirst, tempModel.getSnapshot());
+		for (Runnable tempRunnable : tempWriterQueue) {
+			tempRunnable.run();
+		}
+		assertEquals(Arrays.asList("update", "unchanged"), tempOrder);
+		ModelSnapshot tempSecond = tempModel.getSnapshot();
+		assertEquals(tempFirst.getVersion() + 1, tempSecond.getVersion());
+		assertEquals(1, tempFirst.getOpenDeadlines().size());
+		assertEquals("A", tempSecond.getOpenDeadlines().get(0).getInfo());
+		assertSame("unchanged copy", tempFirst.getOpenDeadlines().get(0), tempSecond.getOpenDeadlines().get(1));
+		assertNotSame(tempDeadlines.get(0), tempSecond.getOpenDeadlines().get(1));
+	}
+
+	public void testSnapshotIsNotChanged() {
+		Model tempModel = new Model();
+		Deadline tempDeadline = createDeadline(1000, "A");
+		tempModel.setOpenDeadlines(Collections.singletonList(tempDeadline));
+		Deadline tempCopy = tempModel.getOpenDeadlines().get(0);
+		assertSame(tempDeadline, tempModel.getOpenInstance(tempCopy));
+
+		tempModel.setDone(tempDeadline, true);
+		assertFalse("published before", tempCopy.isDone());
+		Deadline tempDoneCopy = tempModel.getOpenDeadlines().get(0);
+		assertTrue(tempDoneCopy.isDone());
+		assertSame(tempDeadline, tempModel.getOpenInstance(tempDoneCopy));
+		assertSame("older snapshot", tempDeadline, tempModel.getOpenInstance(tempCopy));
+
+		tempModel.update(Collections.<Deadline> emptyList());
+		assertNull(tempModel.getOpenInstance(tempDoneCopy));
+	}
+
+	public void testUpdateFewChanges() {
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			tempDeadlines.add(createDeadline(i * 60_000L, "Info " + (i % 100)));
+		}
+		Model tempModel = new Model();
+		tempModel.setOpenDeadlines(tempDeadlines);
+		List<Deadline> tempLoaded = copy(tempDeadlines);
+		for (int i = 0; i < 10; i++) {
+			tempLoaded.set(i * 90, createDeadline(i * 90 * 60_000L, "Changed " + i));
+		}
+		ModelDelta tempDelta = tempModel.update(copy(tempLoaded));
+		assertEquals(10, tempDelta.getAdded().size());
+		assertEquals(10, tempDelta.getRemoved().size());
+		assertEquals(1_000, tempModel.size());
+		assertEquals("Changed 1", tempModel.getOpenDeadlines().get(90).getInfo());
+		assertSame(tempDeadlines.get(91), tempModel.getOpenInstances().get(91));
+	}
+
+	/**
+	 * Large enough that a few changes are applied copy on write
+	 */
+	public void testCopyOnWrite() {
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			tempDeadlines.add(createDeadline(i * 60_000L, "Info " + (i % 100)));
+		}
+		Model tempModel = new Model();
+		tempModel.setOpenDeadlines(tempDeadlines);
+		ModelSnapshot tempFirst = tempModel.getSnapshot();
+		List<Deadline> tempLoaded = copy(tempDeadlines);
+
+		tempModel.setDone(tempDeadlines.get(5_000), true);
+		List<Deadline> tempSecond = tempModel.getOpenDeadlines();
+		assertFalse(tempFirst.getOpenDeadlines().get(5_000).isDone());
+		assertTrue(tempSecond.get(5_000).isDone());
+		assertSame(tempDeadlines.get(5_000), tempModel.getOpenInstance(tempSecond.get(5_000)));
+		assertSame("unchanged copy", tempFirst.getOpenDeadlines().get(4_999), tempSecond.get(4_999));
+
+		tempLoaded.remove(7_000);
+		tempLoaded.remove(10);
+		tempLoaded.add(createDeadline(100 * 60_000L + 1, "Added"));
+		tempLoaded.add(createDeadline(0, "Added first"));
+		ModelDelta tempDelta = tempModel.update(tempLoaded);
+		assertEquals(2, tempDelta.getAdded().size());
+		assertEquals(2, tempDelta.getRemoved().size());
+		assertEquals(Collections.singletonList(tempDeadlines.get(5_000)), tempDelta.getDoneChanged());
+		assertFalse(tempDeadlines.get(5_000).isDone());
+
+		List<Deadline> tempOpen = tempModel.getOpenInstances();
+		List<Deadline> tempPublished = tempModel.getOpenDeadlines();
+		assertEquals(tempOpen.size(), tempPublished.size());
+		for (int i = 0; i < tempOpen.size(); i++) {
+			assertSame(tempOpen.get(i), tempModel.getOpenInstance(tempPublished.get(i)));
+			assertEquals(tempOpen.get(i).isDone(), tempPublished.get(i).isDone());
+		}
+		assertEquals("Added first", tempPublished.get(0).getInfo());
+		assertEquals("Info 0", tempPublished.get(1).getInfo());
+		assertEquals("Added", tempPublished.get(101).getInfo());
+		assertEquals(10_000, tempFirst.getOpenDeadlines().size());
+	}
+}
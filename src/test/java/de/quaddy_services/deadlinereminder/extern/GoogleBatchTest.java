@@ -0,0 +1,246 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.calendar.model.Event;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the batches against a local fake of the Google batch endpoint.
+ */
+public class GoogleBatchTest extends TestCase {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBatchTest.class);
+
+	private static final String BOUNDARY = "batch_fake";
+
+	private HttpServer server;
+	private List<String> receivedBatches = new ArrayList<>();
+	private int busyCount = 0;
+	private int unavailableCount = 0;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/batch/calendar/v3", anExchange -> {
+			String tempRequest = read(anExchange.getRequestBody());
+			receivedBatches.add(tempRequest);
+			if (unavailableCount > 0) {
+				unavailableCount--;
+				anExchange.sendResponseHeaders(503, -1);
+				anExchange.close();
+				return;
+			}
+			LOGGER.info("Batch request=" + tempRequest);
+			StringBuilder tempResponse = new StringBuilder();
+			for (String tempPart : tempRequest.split("Content-Type: application/http")) {
+				if (tempPart.startsWith("--") || !tempPart.contains("HTTP/1.1")) {
+					continue;
+				}
+				tempResponse.append("--" + BOUNDARY + "\r\n");
+				tempResponse.append("Content-Type: application/http\r\n\r\n");
+				if (tempPart.contains("/events/busy") && busyCount++ == 0) {
+					tempResponse.append("HTTP/1.1 403 Forbidden\r\nContent-Type: application/json\r\n\r\n");
+					tempResponse.append("{\"error\":{\"code\":403,\"message\":\"Rate Limit Exceeded\","
+							+ "\"errors\":[{\"domain\":\"usageLimits\",\"reason\":\"rateLimitExceeded\"}]}}\r\n");
+				} else if (tempPart.contains("DELETE ") && tempPart.contains("/events/missing")) {
+					tempResponse.append("HTTP/1.1 404 Not Found\r\nContent-Type: application/json\r\n\r\n");
+					tempResponse.append("{\"error\":{\"code\":404,\"message\":\"Not Found\"}}\r\n");
+				} else if (tempPart.contains("/events/invalid")) {
+					tempResponse.append("HTTP/1.1 400 Bad Request\r\nContent-Type: application/json\r\n\r\n");
+					tempResponse.append("{\"error\":{\"code\":400,\"message\":\"Bad Request\"}}\r\n");
+				} else if (tempPart.contains("DELETE ")) {
+					tempResponse.append("HTTP/1.1 204 No Content\r\n\r\n");
+				} else {
+					tempResponse.append("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n");
+					tempResponse.append("{\"id\":\"created\",\"summary\":\"ok\"}\r\n");
+				}
+			}
+			tempResponse.append("--" + BOUNDARY + "--\r\n");
+			byte[] tempBytes = tempResponse.toString().getBytes(StandardCharsets.UTF_8);
+			anExchange.getResponseHeaders().set("Content-Type", "multipart/mixed; boundary=" + BOUNDARY);
+			anExchange.sendResponseHeaders(200, tempBytes.length);
+			try (OutputStream tempOut = anExchange.getResponseBody()) {
+				tempOut.write(tempBytes);
+			}
+		});
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop(0);
+		super.tearDown();
+	}
+
+	private static String read(InputStream anIn) throws IOException {
+		ByteArrayOutputStream tempOut = new ByteArrayOutputStream();
+		byte[] tempBuffer = new byte[4096];
+		int tempRead;
+		while ((tempRead = anIn.read(tempBuffer)) > 0) {
+			tempOut.write(tempBuffer, 0, tempRead);
+		}
+		return new String(tempOut.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private com.google.api.services.calendar.Calendar createClient() {
+		return new com.google.api.services.calendar.Calendar.Builder(new NetHttpTransport(),
+				JacksonFactory.getDefaultInstance(), null)
+						.setRootUrl("http://localhost:" + server.getAddress().getPort() + "/")
+						.setApplicationName("DeadlineReminderTest").build();
+	}
+
+	private GoogleBatch createBatch(GoogleRateLimiter aRateLimiter, final List<String> aSuccess,
+			final List<String> aFailure) {
+		return new GoogleBatch(createClient(), "cal", 2, aRateLimiter, createResultListener(aSuccess, aFailure));
+	}
+
+	private GoogleBatch.ResultListener createResultListener(final List<String> aSuccess, final List<String> aFailure) {
+		return new GoogleBatch.ResultListener() {
+
+			@Override
+			public void success(GoogleBatch.Operation aOperation, Event aResult) {
+				aSuccess.add(aOperation.getType() + ":" + aOperation.getEvent().getId());
+			}
+
+			@Override
+			public void failure(GoogleBatch.Operation aOperation, GoogleJsonError aError) {
+				aFailure.add(aOperation.getType() + ":" + aOperation.getEvent().getId() + ":" + aError.getCode());
+			}
+		};
+	}
+
+	private void send(GoogleOutbox aOutbox, List<String> aSuccess, List<String> aFailure) throws IOException {
+		aOutbox.send(new GoogleBatch(createClient(), "cal", 2, new GoogleRateLimiter(100),
+				aOutbox.createResultListener(createResultListener(aSuccess, aFailure))));
+	}
+
+	public void testBatchSizeAndResults() throws IOException {
+		List<String> tempSuccess = new ArrayList<>();
+		List<String> tempFailure = new ArrayList<>();
+		GoogleRateLimiter tempRateLimiter = new GoogleRateLimiter(100);
+		GoogleBatch tempBatch = createBatch(tempRateLimiter, tempSuccess, tempFailure);
+		tempBatch.insert(new Event().setId("new1").setSummary("Insert"));
+		tempBatch.delete(new Event().setId("old1"));
+		assertEquals("batch size reached", 1, receivedBatches.size());
+		tempBatch.patch(new Event().setId("old2"), new Event().setTransparency("opaque"));
+		tempBatch.delete(new Event().setId("invalid"));
+		tempBatch.insert(new Event().setId("new2").setSummary("Insert"));
+		tempBatch.flush();
+
+		assertEquals(3, receivedBatches.size());
+		assertEquals(3, tempBatch.getBatchCount());
+		assertEquals("[INSERT:new1, DELETE:old1, PATCH:old2, INSERT:new2]", tempSuccess.toString());
+		assertEquals("[DELETE:invalid:400]", tempFailure.toString());
+		assertEquals(1, tempBatch.getFailed().size());
+		assertEquals("one permit per batch call", 3, tempRateLimiter.getCallCount());
+	}
+
+	public void testDeleteOfMissingEventIsDone() throws IOException {
+		List<String> tempSuccess = new ArrayList<>();
+		List<String> tempFailure = new ArrayList<>();
+		GoogleBatch tempBatch = createBatch(new GoogleRateLimiter(100), tempSuccess, tempFailure);
+		tempBatch.delete(new Event().setId("missing"));
+		tempBatch.flush();
+
+		assertEquals("[DELETE:missing]", tempSuccess.toString());
+		assertEquals("[]", tempFailure.toString());
+		assertTrue(tempBatch.getFailed().isEmpty());
+	}
+
+	public void testOutboxIsKeptUntilAcknowledged() throws Exception {
+		File tempFile = File.createTempFile("outbox", ".json");
+		tempFile.delete();
+		try {
+			List<String> tempSuccess = new ArrayList<>();
+			List<String> tempFailure = new ArrayList<>();
+			GoogleOutbox tempOutbox = new GoogleOutbox(tempFile, JacksonFactory.getDefaultInstance());
+			tempOutbox.setCalendarId("cal");
+			tempOutbox.insert(new Event().setSummary("Insert"));
+			tempOutbox.delete(new Event().setId("old1").setSummary("Delete"));
+			server.stop(0);
+			try {
+				send(tempOutbox, tempSuccess, tempFailure);
+				fail("Server is down");
+			} catch (IOException e) {
+				LOGGER.info("Expected " + e);
+			}
+			assertTrue(tempFile.exists());
+
+			GoogleOutbox tempLoaded = new GoogleOutbox(tempFile, JacksonFactory.getDefaultInstance());
+			tempLoaded.load();
+			assertEquals(2, tempLoaded.size());
+			setUp();
+			send(tempLoaded, tempSuccess, tempFailure);
+			assertEquals(2, tempSuccess.size());
+			assertTrue(tempSuccess.get(0).startsWith("INSERT:"));
+			assertFalse("insert got an id", tempSuccess.get(0).endsWith(":null"));
+			assertEquals("DELETE:old1", tempSuccess.get(1));
+			assertTrue(tempLoaded.isEmpty());
+			assertFalse(tempFile.exists());
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	public void testRateLimitExceededIsRetried() throws IOException {
+		List<String> tempSuccess = new ArrayList<>();
+		List<String> tempFailure = new ArrayList<>();
+		GoogleRateLimiter tempRateLimiter = new GoogleRateLimiter(100);
+		GoogleBatch tempBatch = createBatch(tempRateLimiter, tempSuccess, tempFailure);
+		tempBatch.patch(new Event().setId("busy"), new Event().setTransparency("opaque"));
+		tempBatch.delete(new Event().setId("old1"));
+
+		assertEquals(2, receivedBatches.size());
+		assertEquals("[DELETE:old1, PATCH:busy]", tempSuccess.toString());
+		assertEquals("[]", tempFailure.toString());
+		assertEquals(1, tempRateLimiter.getThrottledCount());
+		assertEquals(1, tempRateLimiter.getRetriedCount());
+		assertEquals(50.0, tempRateLimiter.getRate(), 1.0);
+	}
+
+	public void testUnavailableBatchIsRetried() throws IOException {
+		List<String> tempSuccess = new ArrayList<>();
+		List<String> tempFailure = new ArrayList<>();
+		GoogleRateLimiter tempRateLimiter = new GoogleRateLimiter(100);
+		GoogleBatch tempBatch = createBatch(tempRateLimiter, tempSuccess, tempFailure);
+		unavailableCount = 1;
+		tempBatch.insert(new Event().setId("new1").setSummary("Insert"));
+		tempBatch.delete(new Event().setId("old1"));
+
+		assertEquals("503 and the retry", 2, receivedBatches.size());
+		assertEquals("[INSERT:new1, DELETE:old1]", tempSuccess.toString());
+		assertEquals("[]", tempFailure.toString());
+		assertEquals(1, tempRateLimiter.getRetriedCount());
+	}
+
+	public void testResultsAreAppliedToEventCache() {
+		GoogleEventCache tempCache = new GoogleEventCache();
+		tempCache.reset("cal", Collections.singletonList(new Event().setId("old1").setSummary("Old")), "token");
+		tempCache.applied(new GoogleBatch.Operation(GoogleBatch.Type.INSERT, new Event().setId("new1"), null),
+				new Event().setId("new1").setSummary("New"));
+		tempCache.applied(new GoogleBatch.Operation(GoogleBatch.Type.DELETE, new Event().setId("old1"), null), null);
+
+		List<Event> tempEvents = tempCache.getEvents();
+		assertEquals(2, tempEvents.size());
+		assertEquals("cancelled", tempEvents.get(0).getStatus());
+		assertEquals("New", tempEvents.get(1).getSummary());
+	}
+}
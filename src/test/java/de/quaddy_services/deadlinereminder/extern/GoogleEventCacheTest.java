@@ -0,0 +1,162 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+public class GoogleEventCacheTest extends TestCase {
+	private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private static Event event(String anId, long anEnd) {
+		return new Event().setId(anId).setSummary("Summary " + anId).setStatus("confirmed")
+				.setStart(new EventDateTime().setDateTime(new DateTime(anEnd - 60 * 60 * 1000L)))
+				.setEnd(new EventDateTime().setDateTime(new DateTime(anEnd)));
+	}
+
+	private static List<String> getIds(List<Event> anEvents) {
+		List<String> tempIds = new ArrayList<>();
+		for (Event tempEvent : anEvents) {
+			tempIds.add(tempEvent.getId());
+		}
+		return tempIds;
+	}
+
+	public void testMergeAndReset() {
+		long tempNow = System.currentTimeMillis();
+		GoogleEventCache tempCache = new GoogleEventCache();
+		assertFalse(tempCache.isSyncTokenFor("cal"));
+		tempCache.reset("cal", Arrays.asList(event("a", tempNow), event("b", tempNow)), "token1");
+		assertTrue(tempCache.isSyncTokenFor("cal"));
+		assertFalse(tempCache.isSyncTokenFor("other"));
+
+		Event tempChanged = event("a", tempNow).setSummary("changed");
+		Event tempCancelled = event("b", tempNow).setStatus("cancelled");
+		tempCache.merge(Arrays.asList(tempChanged, tempCancelled, event("c", tempNow)), "token2");
+		assertEquals("token2", tempCache.getSyncToken());
+		assertEquals(Arrays.asList("a", "b", "c"), getIds(tempCache.getEvents()));
+		assertEquals("changed", tempCache.getEvents().get(0).getSummary());
+		Event tempCachedCancelled = tempCache.getEvents().get(1);
+		assertEquals("cancelled", tempCachedCancelled.getStatus());
+		assertNull("only the id", tempCachedCancelled.getSummary());
+		assertNull(tempCachedCancelled.getStart());
+
+		tempCache.reset("cal", Arrays.asList(event("d", tempNow)), "token3");
+		assertEquals(Arrays.asList("d"), getIds(tempCache.getEvents()));
+		assertEquals("token3", tempCache.getSyncToken());
+	}
+
+	public void testEvictEndedBefore() {
+		long tempNow = System.currentTimeMillis();
+		GoogleEventCache tempCache = new GoogleEventCache();
+		Event tempOldRecurring = event("recurring", tempNow - 100 * DAY)
+				.setRecurrence(Arrays.asList("RRULE:FREQ=DAILY;INTERVAL=1"));
+		Event tempOldWholeDay = new Event().setId("wholeDay").setStatus("confirmed")
+				.setStart(new EventDateTime().setDate(new DateTime(true, tempNow - 11 * DAY, 0)))
+				.setEnd(new EventDateTime().setDate(new DateTime(true, tempNow - 10 * DAY, 0)));
+		tempCache.reset("cal",
+				Arrays.asList(event("old", tempNow - 10 * DAY), event("new", tempNow), tempOldRecurring,
+						event("cancelled", tempNow - 10 * DAY).setStatus("cancelled"), tempOldWholeDay,
+						new Event().setId("noEnd")),
+				"token");
+		assertEquals(2, tempCache.evictEndedBefore(tempNow - DAY));
+		assertEquals(Arrays.asList("new", "recurring", "cancelled", "noEnd"), getIds(tempCache.getEvents()));
+	}
+
+	public void testSaveAndLoad() throws IOException {
+		File tempFile = File.createTempFile("google-sync", ".json");
+		try {
+			long tempNow = System.currentTimeMillis();
+			GoogleEventCache tempCache = new GoogleEventCache();
+			tempCache.reset("cal", Arrays.asList(event("a", tempNow), event("b", tempNow).setStatus("cancelled")),
+					"token");
+			tempCache.save(tempFile, JSON_FACTORY);
+			assertFalse(new File(tempFile.getAbsolutePath() + ".tmp").exists());
+
+			GoogleEventCache tempLoaded = new GoogleEventCache();
+			tempLoaded.load(tempFile, JSON_FACTORY);
+			assertTrue(tempLoaded.isSyncTokenFor("cal"));
+			assertEquals("token", tempLoaded.getSyncToken());
+			assertEquals(Arrays.asList("a", "b"), getIds(tempLoaded.getEvents()));
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * 410 Gone for the syncToken: the cache is filled by a full list.
+	 */
+	public void testFullSyncOnGone() throws IOException {
+		final List<String> tempQueries = new ArrayList<>();
+		HttpServer tempServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		tempServer.createContext("/calendar/v3/calendars/cal/events", anExchange -> {
+			String tempQuery = anExchange.getRequestURI().getQuery();
+			tempQueries.add(tempQuery);
+			String tempResponse;
+			int tempStatus;
+			if (tempQuery.contains("syncToken=")) {
+				tempStatus = 410;
+				tempResponse = "{\"error\":{\"code\":410,\"message\":\"Sync token is no longer valid\","
+						+ "\"errors\":[{\"domain\":\"global\",\"reason\":\"fullSyncRequired\"}]}}";
+			} else {
+				tempStatus = 200;
+				tempResponse = "{\"items\":[" + JSON_FACTORY.toString(event("b", System.currentTimeMillis()))
+						+ "],\"nextSyncToken\":\"new\"}";
+			}
+			byte[] tempBytes = tempResponse.getBytes(StandardCharsets.UTF_8);
+			anExchange.getResponseHeaders().set("Content-Type", "application/json");
+			anExchange.sendResponseHeaders(tempStatus, tempBytes.length);
+			try (OutputStream tempOut = anExchange.getResponseBody()) {
+				tempOut.write(tempBytes);
+			}
+		});
+		tempServer.start();
+		final File tempFile = File.createTempFile("google-sync", ".json");
+		try {
+			GoogleEventCache tempOld = new GoogleEventCache();
+			tempOld.reset("cal", Arrays.asList(event("a", System.currentTimeMillis())), "old");
+			tempOld.save(tempFile, JSON_FACTORY);
+			GoogleSync tempGoogleSync = new GoogleSync() {
+				@Override
+				File getEventCacheFile() {
+					return tempFile;
+				}
+			};
+			com.google.api.services.calendar.Calendar tempClient = new com.google.api.services.calendar.Calendar.Builder(
+					new NetHttpTransport(), JSON_FACTORY, null)
+							.setRootUrl("http://localhost:" + tempServer.getAddress().getPort() + "/")
+							.setApplicationName("DeadlineReminderTest").build();
+
+			List<Event> tempEvents = tempGoogleSync.getCurrentItems(tempClient, "cal",
+					new Date(System.currentTimeMillis() - DAY), new Date(System.currentTimeMillis() + 400 * DAY));
+			assertEquals(Arrays.asList("b"), getIds(tempEvents));
+			assertEquals(2, tempQueries.size());
+			assertTrue(tempQueries.get(0), tempQueries.get(0).contains("syncToken=old"));
+			assertFalse(tempQueries.get(1), tempQueries.get(1).contains("syncToken"));
+
+			GoogleEventCache tempSaved = new GoogleEventCache();
+			tempSaved.load(tempFile, JSON_FACTORY);
+			assertEquals("new", tempSaved.getSyncToken());
+			assertEquals(Arrays.asList("b"), getIds(tempSaved.getEvents()));
+		} finally {
+			tempServer.stop(0);
+			tempFile.delete();
+		}
+	}
+}
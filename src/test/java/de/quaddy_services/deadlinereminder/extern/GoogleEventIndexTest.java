@@ -0,0 +1,61 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+import junit.framework.TestCase;
+
+public class GoogleEventIndexTest extends TestCase {
+
+	private static Event wholeDay(String aId, String aSummary, String aDate) {
+		return new Event().setId(aId).setSummary(aSummary)
+				.setStart(new EventDateTime().setDate(new DateTime(aDate)));
+	}
+
+	private static Event withTime(String aId, String aSummary, long aMillis) {
+		return new Event().setId(aId).setSummary(aSummary)
+				.setStart(new EventDateTime().setDateTime(new DateTime(aMillis)));
+	}
+
+	public void testSameId() {
+		GoogleEventIndex<String> tempIndex = new GoogleEventIndex<>();
+		Event tempNew = wholeDay("abc", "Text", "2020-01-01");
+		tempIndex.put(tempNew, "deadline");
+		assertSame(tempNew, tempIndex.getSame(wholeDay("abc", "Other", "2021-02-02")));
+		assertEquals("deadline", tempIndex.get(tempNew));
+	}
+
+	public void testSameSummaryAndDate() {
+		GoogleEventIndex<String> tempIndex = new GoogleEventIndex<>();
+		Event tempNew = wholeDay(null, "Text", "2020-01-01");
+		tempIndex.put(tempNew, "deadline");
+		assertSame(tempNew, tempIndex.getSame(wholeDay("google", " Text\n", "2020-01-01")));
+		assertNull(tempIndex.getSame(wholeDay("google", "Text", "2020-01-02")));
+		assertNull(tempIndex.getSame(wholeDay("google", "! Text", "2020-01-01")));
+		assertNull(tempIndex.getSame(withTime("google", "Text", new DateTime("2020-01-01").getValue())));
+	}
+
+	public void testSameSummaryAndDateTime() {
+		GoogleEventIndex<String> tempIndex = new GoogleEventIndex<>();
+		Event tempNew = withTime(null, "Text", 1000000);
+		tempIndex.put(tempNew, "deadline");
+		assertSame(tempNew, tempIndex.getSame(withTime("google", "Text", 1000000)));
+		assertNull(tempIndex.getSame(withTime("google", "Text", 1060000)));
+	}
+
+	public void testRemove() {
+		GoogleEventIndex<String> tempIndex = new GoogleEventIndex<>();
+		Event tempFirst = wholeDay("1", "Text", "2020-01-01");
+		Event tempDuplicate = wholeDay("2", "Text", "2020-01-01");
+		tempIndex.put(tempFirst, "first");
+		tempIndex.put(tempDuplicate, "duplicate");
+		assertEquals(2, tempIndex.size());
+		assertSame(tempFirst, tempIndex.getSame(wholeDay(null, "Text", "2020-01-01")));
+		assertEquals("first", tempIndex.remove(tempFirst));
+		assertSame(tempDuplicate, tempIndex.getSame(wholeDay(null, "Text", "2020-01-01")));
+		assertNull(tempIndex.getSame(wholeDay("1", "Other", "2020-01-01")));
+		assertNull(tempIndex.remove(tempFirst));
+		assertEquals(1, tempIndex.size());
+	}
+}
@@ -0,0 +1,94 @@
+package de.quaddy_services.deadlinereminder.extern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.Recurrence;
+import junit.framework.TestCase;
+
+public class GoogleRecurringEventsTest extends TestCase {
+
+	private static Date date(int aYear, int aMonth, int aDay) {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.clear();
+		tempCal.set(aYear, aMonth - 1, aDay);
+		return tempCal.getTime();
+	}
+
+	private static Recurrence recurrence(int aUnit, int aStep, String aInfo, Date... aOccurrences) {
+		String tempText = "*" + aInfo.substring(aInfo.indexOf(' ') + 1);
+		return new Recurrence(aOccurrences[0], aUnit, aStep, aInfo, tempText, Arrays.asList(aOccurrences));
+	}
+
+	public void testWholeDayWithDoneOccurrence() {
+		Recurrence tempRecurrence = recurrence(Calendar.WEEK_OF_YEAR, 2, "*2w Text", date(2020, 1, 6),
+				date(2020, 1, 20), date(2020, 2, 3));
+		List<Deadline> tempOpen = new ArrayList<>();
+		tempOpen.add(tempRecurrence.createDeadline(date(2020, 1, 6)));
+		tempOpen.add(tempRecurrence.createDeadline(date(2020, 2, 3)));
+
+		List<String> tempLines = GoogleRecurringEvents.getRecurrenceLines(tempRecurrence, date(2020, 1, 6),
+				tempOpen, TimeZone.getDefault());
+		assertEquals(Arrays.asList("RRULE:FREQ=WEEKLY;INTERVAL=2", "EXDATE;VALUE=DATE:20200120"), tempLines);
+		assertEquals("*Text", tempOpen.get(0).getTextWithoutRepeatingInfo());
+		assertSame(tempRecurrence, tempOpen.get(0).getRecurrence());
+	}
+
+	public void testWithTime() {
+		Recurrence tempRecurrence = recurrence(Calendar.DAY_OF_YEAR, 1, "*1d 17:00 Text", date(2020, 1, 6),
+				date(2020, 1, 7));
+		Deadline tempDone = tempRecurrence.createDeadline(date(2020, 1, 6));
+		tempDone.setDone(true);
+		List<Deadline> tempOpen = Arrays.asList(tempDone, tempRecurrence.createDeadline(date(2020, 1, 7)));
+
+		TimeZone tempTimeZone = TimeZone.getDefault();
+		List<String> tempLines = GoogleRecurringEvents.getRecurrenceLines(tempRecurrence, date(2020, 1, 6), tempOpen,
+				tempTimeZone);
+		assertEquals(Arrays.asList("RRULE:FREQ=DAILY;INTERVAL=1",
+				"EXDATE;TZID=" + tempTimeZone.getID() + ":20200106T170000"), tempLines);
+	}
+
+	public void testStartsAtFirstTrackedOccurrence() {
+		Recurrence tempRecurrence = recurrence(Calendar.DAY_OF_YEAR, 1, "*1d Text", date(2020, 1, 6),
+				date(2020, 1, 7), date(2020, 1, 8));
+		assertEquals(date(2020, 1, 7), GoogleRecurringEvents.getFirstOccurrence(tempRecurrence, date(2020, 1, 7)));
+		assertEquals(date(2020, 1, 6), GoogleRecurringEvents.getFirstOccurrence(tempRecurrence, date(2019, 1, 1)));
+		assertEquals("after the tracked ones", date(2020, 1, 10),
+				GoogleRecurringEvents.getFirstOccurrence(tempRecurrence, date(2020, 1, 10)));
+		assertEquals(date(2020, 3, 2), GoogleRecurringEvents.getFirstOccurrence(
+				recurrence(Calendar.WEEK_OF_YEAR, 2, "*2w Text", date(2020, 1, 6)), date(2020, 2, 20)));
+
+		// the done occurrence before the first is not part of the series
+		List<String> tempLines = GoogleRecurringEvents.getRecurrenceLines(tempRecurrence, date(2020, 1, 7),
+				Arrays.asList(tempRecurrence.createDeadline(date(2020, 1, 7)),
+						tempRecurrence.createDeadline(date(2020, 1, 8))),
+				TimeZone.getDefault());
+		assertEquals(Arrays.asList("RRULE:FREQ=DAILY;INTERVAL=1"), tempLines);
+	}
+
+	public void testSupported() {
+		assertTrue(GoogleRecurringEvents
+				.isSupported(recurrence(Calendar.MONTH, 1, "*1m Text", date(2020, 1, 28))));
+		assertFalse("Calendar.add keeps 28th after February", GoogleRecurringEvents
+				.isSupported(recurrence(Calendar.MONTH, 1, "*1m Text", date(2020, 1, 31))));
+		assertFalse(GoogleRecurringEvents.isSupported(recurrence(Calendar.YEAR, 1, "* Text", date(2020, 2, 29))));
+		assertTrue(GoogleRecurringEvents.isSupported(recurrence(Calendar.YEAR, 1, "* Text", date(2020, 3, 1))));
+	}
+
+	public void testId() {
+		String tempId = GoogleRecurringEvents
+				.getId(recurrence(Calendar.WEEK_OF_YEAR, 1, "*1w Text", date(2020, 1, 6)));
+		assertEquals(tempId, GoogleRecurringEvents
+				.getId(recurrence(Calendar.WEEK_OF_YEAR, 1, "*1w Text", date(2020, 1, 6), date(2020, 1, 13))));
+		assertFalse(tempId.equals(GoogleRecurringEvents
+				.getId(recurrence(Calendar.WEEK_OF_YEAR, 2, "*1w Text", date(2020, 1, 6)))));
+		assertTrue(tempId.matches("[0-9a-v]{5,1024}"));
+		assertTrue(GoogleEventIds.isRecurrenceId(tempId));
+		assertFalse(GoogleEventIds.isRecurrenceId("abc"));
+	}
+}
@@ -0,0 +1,111 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import junit.framework.TestCase;
+
+/**
+ * DeadlineParser compared with the line by line parsing of FileStorage before
+ * (BufferedReader.readLine, substring and SimpleDateFormat.parse per line).
+ *
+ * mvn test -Pbenchmark
+ */
+public class DeadlineParserBenchmark extends TestCase {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineParserBenchmark.class);
+
+	private static String createFile(int aLineCount) {
+		StringBuilder tempText = new StringBuilder(aLineCount * 40);
+		for (int i = 0; i < aLineCount; i++) {
+			String tempDate = String.format("%02d.%02d.%04d", 1 + i % 28, 1 + i / 28 % 12, 2020 + i % 10);
+			switch (i % 5) {
+			case 0:
+				tempText.append("-- comment ").append(i);
+				break;
+			case 1:
+				tempText.append("ID:abc").append(i).append('\t').append(tempDate).append(" Added by Google ").append(i);
+				break;
+			case 2:
+				tempText.append(tempDate).append(" 10:15-11:00 Meeting ").append(i);
+				break;
+			default:
+				tempText.append(tempDate).append(" Text ").append(i);
+				break;
+			}
+			tempText.append("\r\n");
+		}
+		return tempText.toString();
+	}
+
+	/**
+	 * FileStorage.parseDeadline before DeadlineParser, without the repeating
+	 * lines (the benchmark has none)
+	 */
+	private static List<Deadline> parseBefore(String aText) throws IOException {
+		DateFormat tempDateFormat = new SimpleDateFormat("dd.MM.yyyy");
+		List<Deadline> tempDeadlines = new ArrayList<>();
+		BufferedReader tempReader = new BufferedReader(new StringReader(aText));
+		String tempLine;
+		while (null != (tempLine = tempReader.readLine())) {
+			if (tempLine.startsWith(FileStorage.INFO_PREFIX) || tempLine.startsWith(FileStorage.INFO_PREFIX2)
+					|| tempLine.trim().length() == 0) {
+				continue;
+			}
+			String tempId = null;
+			if (tempLine.startsWith(FileStorage.ID_PREFIX)) {
+				int tempTabPos = tempLine.indexOf("\t");
+				tempId = tempLine.substring(FileStorage.ID_PREFIX.length(), tempTabPos);
+				tempLine = tempLine.substring(tempTabPos + 1);
+			}
+			try {
+				String tempDateChars = tempLine.substring(0, 10).replace('?', '0');
+				Date tempDate = tempDateFormat.parse(tempDateChars);
+				Deadline tempDeadline = new Deadline();
+				tempDeadline.setId(tempId);
+				tempDeadline.setWhen(tempDate);
+				tempDeadline.setInfo(tempLine.substring(10));
+				tempDeadline.extractTimeFromInfo();
+				tempDeadlines.add(tempDeadline);
+			} catch (Exception e) {
+				throw new IllegalStateException(tempLine, e);
+			}
+		}
+		return tempDeadlines;
+	}
+
+	public void testCompareWithBefore() throws IOException {
+		for (int tempLineCount : new int[] { 10_000, 100_000, 1_000_000 }) {
+			String tempText = createFile(tempLineCount);
+			long tempBefore = Long.MAX_VALUE;
+			long tempNow = Long.MAX_VALUE;
+			List<Deadline> tempOld = null;
+			List<Deadline> tempNew = null;
+			for (int i = 0; i < 5; i++) {
+				long tempStart = System.nanoTime();
+				tempOld = parseBefore(tempText);
+				tempBefore = Math.min(tempBefore, System.nanoTime() - tempStart);
+				tempStart = System.nanoTime();
+				tempNew = new DeadlineParser(false).parse(new StringReader(tempText));
+				tempNow = Math.min(tempNow, System.nanoTime() - tempStart);
+			}
+			assertEquals(tempOld.size(), tempNew.size());
+			for (int i = 0; i < tempOld.size(); i++) {
+				assertEquals(tempOld.get(i).getWhenMillis(), tempNew.get(i).getWhenMillis());
+				assertEquals(tempOld.get(i).getInfo(), tempNew.get(i).getInfo());
+				assertEquals(tempOld.get(i).getId(), tempNew.get(i).getId());
+			}
+			LOGGER.info(tempLineCount + " lines: before " + tempBefore / 1_000_000 + "ms, DeadlineParser "
+					+ tempNow / 1_000_000 + "ms");
+		}
+	}
+}
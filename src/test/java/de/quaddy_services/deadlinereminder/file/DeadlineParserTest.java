@@ -0,0 +1,81 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import junit.framework.TestCase;
+
+public class DeadlineParserTest extends TestCase {
+
+	private static String format(Deadline aDeadline) {
+		return new SimpleDateFormat("dd.MM.yyyy HH:mm").format(aDeadline.getWhen()) + " " + aDeadline.getInfo();
+	}
+
+	public void testLines() throws IOException {
+		DeadlineParser tempParser = new DeadlineParser(false);
+		List<Deadline> tempDeadlines = tempParser.parse(new StringReader("--comment\r\n#comment\n\n  \r"
+				+ "01.02.2020 Text\r\n" + "ID:abc\t03.04.2020 10:15-11:00 With id\n" + "ID:abc\tDELETED_MARKER\n"
+				+ "31.02.2020 lenient\r" + "1.1.2020 Text"));
+		assertEquals(5, tempDeadlines.size());
+		assertEquals("01.02.2020 00:00 Text", format(tempDeadlines.get(0)));
+		assertEquals("03.04.2020 10:15 With id", format(tempDeadlines.get(1)));
+		assertEquals("abc", tempDeadlines.get(1).getId());
+		assertNotNull(tempDeadlines.get(1).getWhenEndTime());
+		assertTrue(tempDeadlines.get(2).isDeleted());
+		assertEquals("abc", tempDeadlines.get(2).getId());
+		assertEquals("02.03.2020 00:00 lenient", format(tempDeadlines.get(3)));
+		assertEquals("01.01.2020 00:00 ext", format(tempDeadlines.get(4)));
+		assertEquals(0, tempParser.getDiagnostics().size());
+	}
+
+	public void testUnknownDigits() throws IOException {
+		List<Deadline> tempDeadlines = new DeadlineParser(false)
+				.parse(new StringReader("0?.05.0000 Birthday\n15.0?.2021 Month"));
+		int tempPreviousYear = Calendar.getInstance().get(Calendar.YEAR) - 1;
+		// day 0 is the last day of the month before (lenient)
+		assertEquals("30.04." + tempPreviousYear + " 00:00 Birthday", format(tempDeadlines.get(0)));
+		assertEquals("15.12.2020 00:00 Month", format(tempDeadlines.get(1)));
+	}
+
+	public void testMalformed() throws IOException {
+		DeadlineParser tempParser = new DeadlineParser(false);
+		List<Deadline> tempDeadlines = tempParser
+				.parse(new StringReader("short\nab.cd.efgh Text\nID:missing tab\n01.01.2020 ok"));
+		assertEquals(4, tempDeadlines.size());
+		assertEquals(3, tempParser.getDiagnostics().size());
+		assertTrue(tempParser.getDiagnostics().get(0), tempParser.getDiagnostics().get(0).startsWith("1: "));
+		assertTrue(tempDeadlines.get(0).getInfo().startsWith("short "));
+		assertTrue(tempParser.getDiagnostics().get(2).startsWith("3: "));
+		assertEquals("ok", tempDeadlines.get(3).getInfo());
+	}
+
+	public void testDateOnlyAtEndOfBuffer() {
+		// e.g. the last line of a mapped chunk, the array has no char after the date
+		DeadlineParser tempParser = new DeadlineParser(true);
+		List<Deadline> tempDeadlines = tempParser.parse("01.02.2030".toCharArray(), 0, 10);
+		assertEquals(1, tempDeadlines.size());
+		assertEquals("01.02.2030 00:00 ", format(tempDeadlines.get(0)));
+		assertEquals(0, tempParser.getDiagnostics().size());
+	}
+
+	public void testRepeatingUnits() throws IOException {
+		DeadlineParser tempParser = new DeadlineParser(true);
+		Calendar tempCal = Calendar.getInstance();
+		String tempDate = new SimpleDateFormat("dd.MM.yyyy").format(tempCal.getTime());
+		List<Deadline> tempDeadlines = tempParser.parse(new StringReader(tempDate + "*-2d Negative\n"));
+		assertEquals("step 1 like before", 30, tempDeadlines.size());
+		assertEquals(Calendar.DAY_OF_YEAR, tempDeadlines.get(0).getRecurrence().getUnit());
+		assertEquals(1, tempDeadlines.get(0).getRecurrence().getStep());
+
+		tempDeadlines = new DeadlineParser(true).parse(new StringReader(tempDate + "*Max Mustermann"));
+		assertEquals(Calendar.YEAR, tempDeadlines.get(0).getRecurrence().getUnit());
+		assertEquals("*Max Mustermann", tempDeadlines.get(0).getTextWithoutRepeatingInfo());
+
+		tempDeadlines = new DeadlineParser(true).parse(new StringReader(tempDate + "*99999999999w Overflow"));
+		assertEquals(Calendar.YEAR, tempDeadlines.get(0).getRecurrence().getUnit());
+	}
+}
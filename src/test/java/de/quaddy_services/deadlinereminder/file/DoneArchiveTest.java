@@ -0,0 +1,68 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import junit.framework.TestCase;
+
+public class DoneArchiveTest extends TestCase {
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("DeadlineReminder").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File tempFile : directory.listFiles()) {
+			tempFile.delete();
+		}
+		directory.delete();
+	}
+
+	private static Deadline parse(String aText) throws IOException {
+		return new DeadlineParser(false).parse(new StringReader(aText)).get(0);
+	}
+
+	public void testArchive() throws Exception {
+		DoneArchive tempArchive = new DoneArchive(directory);
+		List<String> tempKeep = tempArchive.archive(Arrays.asList("--Sat Jan 05 10:00:00 CET 2019", "05.01.2019 A",
+				"--Mon Jan 06 10:00:00 CET 2020", "06.01.2020 17:00 B", "07.01.2021 C", "--trailing"), 2021);
+		assertEquals(Arrays.asList("07.01.2021 C", "--trailing"), tempKeep);
+		assertTrue(tempArchive.getSegmentFile(2019).exists());
+		assertTrue(tempArchive.getSegmentFile(2020).exists());
+
+		// a second run appends a gzip member
+		tempArchive.archive(Arrays.asList("08.01.2020 D"), 2021);
+
+		DoneArchive tempReopened = new DoneArchive(directory);
+		assertTrue(tempReopened.isDone(parse("05.01.2019 A")));
+		assertTrue(tempReopened.isDone(parse("06.01.2020 17:00 B")));
+		assertTrue(tempReopened.isDone(parse("08.01.2020 D")));
+		assertFalse(tempReopened.isDone(parse("06.01.2020 B")));
+		assertFalse("no segment", tempReopened.isDone(parse("07.01.2021 C")));
+		assertEquals(2, tempReopened.readDeadlines(2020).size());
+		assertEquals(0, tempReopened.readDeadlines(2018).size());
+	}
+
+	public void testBloomFilter() {
+		BloomFilter tempBloomFilter = new BloomFilter(1000);
+		for (int i = 0; i < 1000; i++) {
+			tempBloomFilter.add(new DoneIndex.Key(i, DoneIndex.hash("Done " + i)));
+		}
+		int tempFalsePositives = 0;
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(tempBloomFilter.mightContain(new DoneIndex.Key(i, DoneIndex.hash("Done " + i))));
+			if (tempBloomFilter.mightContain(new DoneIndex.Key(i, DoneIndex.hash("Open " + i)))) {
+				tempFalsePositives++;
+			}
+		}
+		assertTrue("false positives " + tempFalsePositives, tempFalsePositives < 50);
+	}
+}
@@ -0,0 +1,105 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import junit.framework.TestCase;
+
+/**
+ * DoneIndex compared with the previous List.removeAll.
+ *
+ * mvn test -Pbenchmark
+ */
+public class DoneIndexBenchmark extends TestCase {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DoneIndexBenchmark.class);
+
+	private File doneFile;
+	private File indexFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		doneFile = File.createTempFile("termin-done", ".txt");
+		doneFile.delete();
+		indexFile = new File(doneFile.getAbsolutePath() + ".idx");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		doneFile.delete();
+		indexFile.delete();
+	}
+
+	private void append(String aText) throws IOException {
+		boolean tempWriteBOM = !doneFile.exists();
+		try (FileOutputStream tempOut = new FileOutputStream(doneFile, true)) {
+			if (tempWriteBOM) {
+				tempOut.write(new byte[] { (byte) 0xFF, (byte) 0xFE });
+			}
+			Writer tempWriter = new OutputStreamWriter(tempOut, StandardCharsets.UTF_16LE);
+			tempWriter.write(aText);
+			tempWriter.flush();
+		}
+	}
+
+	private static List<Deadline> parse(String aText) throws IOException {
+		return new DeadlineParser(false).parse(new StringReader(aText));
+	}
+
+	public void testBenchmark100k() throws Exception {
+		StringBuilder tempText = new StringBuilder();
+		for (int i = 0; i < 100_000; i++) {
+			tempText.append(String.format("%02d.%02d.%04d Done %d\r\n", 1 + i % 28, 1 + i % 12, 2000 + i % 20, i));
+		}
+		append(tempText.toString());
+		StringBuilder tempOpenText = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			int tempI = i * 500;
+			tempOpenText.append(
+					String.format("%02d.%02d.%04d Done %d\n", 1 + tempI % 28, 1 + tempI % 12, 2000 + tempI % 20, i % 2 == 0 ? tempI : -1));
+		}
+		List<Deadline> tempOpen = parse(tempOpenText.toString());
+
+		long tempStart = System.nanoTime();
+		DoneIndex tempIndex = new DoneIndex(doneFile, indexFile);
+		tempIndex.update();
+		long tempBuild = System.nanoTime() - tempStart;
+
+		append("01.01.2021 New\r\n");
+		tempStart = System.nanoTime();
+		tempIndex = new DoneIndex(doneFile, indexFile);
+		tempIndex.update();
+		long tempReopen = System.nanoTime() - tempStart;
+		assertEquals(100_001, tempIndex.size());
+
+		tempStart = System.nanoTime();
+		List<Deadline> tempFound = new ArrayList<>();
+		for (Deadline tempDeadline : tempOpen) {
+			if (!tempIndex.isDone(tempDeadline)) {
+				tempFound.add(tempDeadline);
+			}
+		}
+		long tempLookup = System.nanoTime() - tempStart;
+
+		List<Deadline> tempDone = parse(tempText.toString());
+		tempStart = System.nanoTime();
+		List<Deadline> tempRemoveAll = new ArrayList<>(tempOpen);
+		tempRemoveAll.removeAll(tempDone);
+		long tempRemoveAllNanos = System.nanoTime() - tempStart;
+
+		assertEquals(100, tempFound.size());
+		assertEquals(tempRemoveAll, tempFound);
+		LOGGER.info("100k done: build=" + tempBuild / 1_000_000 + "ms reopen=" + tempReopen / 1_000_000 + "ms lookup="
+				+ tempLookup / 1_000 + "us removeAll=" + tempRemoveAllNanos / 1_000 + "us");
+	}
+}
@@ -0,0 +1,104 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import junit.framework.TestCase;
+
+public class DoneIndexTest extends TestCase {
+	private File doneFile;
+	private File indexFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		doneFile = File.createTempFile("termin-done", ".txt");
+		doneFile.delete();
+		indexFile = new File(doneFile.getAbsolutePath() + ".idx");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		doneFile.delete();
+		indexFile.delete();
+	}
+
+	private void append(String aText) throws IOException {
+		boolean tempWriteBOM = !doneFile.exists();
+		try (FileOutputStream tempOut = new FileOutputStream(doneFile, true)) {
+			if (tempWriteBOM) {
+				tempOut.write(new byte[] { (byte) 0xFF, (byte) 0xFE });
+			}
+			Writer tempWriter = new OutputStreamWriter(tempOut, StandardCharsets.UTF_16LE);
+			tempWriter.write(aText);
+			tempWriter.flush();
+		}
+	}
+
+	private static List<Deadline> parse(String aText) throws IOException {
+		return new DeadlineParser(false).parse(new StringReader(aText));
+	}
+
+	public void testIncremental() throws Exception {
+		append("--Mon Jan 06 10:00:00 CET 2020\r\n01.01.2020 A\r\n02.01.2020 17:00 B\r\n");
+		DoneIndex tempIndex = new DoneIndex(doneFile, indexFile);
+		tempIndex.update();
+		assertEquals(2, tempIndex.size());
+		assertTrue(tempIndex.isDone(parse("01.01.2020 A").get(0)));
+		assertTrue(tempIndex.isDone(parse("02.01.2020 17:00 B").get(0)));
+		assertFalse(tempIndex.isDone(parse("01.01.2020 B").get(0)));
+
+		// a line still being written
+		append("03.01.2020 C\r\n04.01.2020 D");
+		tempIndex = new DoneIndex(doneFile, indexFile);
+		tempIndex.update();
+		assertEquals(3, tempIndex.size());
+		assertFalse(tempIndex.isDone(parse("04.01.2020 D").get(0)));
+		append("\r\n");
+		tempIndex.update();
+		assertTrue(tempIndex.isDone(parse("04.01.2020 D").get(0)));
+
+		// rewritten file
+		doneFile.delete();
+		append("05.01.2020 E\r\n");
+		tempIndex = new DoneIndex(doneFile, indexFile);
+		tempIndex.update();
+		assertEquals(1, tempIndex.size());
+		assertFalse(tempIndex.isDone(parse("01.01.2020 A").get(0)));
+	}
+
+	public void testSameAsRemoveAll() throws Exception {
+		StringBuilder tempText = new StringBuilder();
+		for (int i = 0; i < 1_000; i++) {
+			tempText.append(String.format("%02d.%02d.%04d Done %d\r\n", 1 + i % 28, 1 + i % 12, 2000 + i % 20, i));
+		}
+		append(tempText.toString());
+		StringBuilder tempOpenText = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			int tempI = i * 50;
+			tempOpenText.append(
+					String.format("%02d.%02d.%04d Done %d\n", 1 + tempI % 28, 1 + tempI % 12, 2000 + tempI % 20, i % 2 == 0 ? tempI : -1));
+		}
+		List<Deadline> tempOpen = parse(tempOpenText.toString());
+
+		DoneIndex tempIndex = new DoneIndex(doneFile, indexFile);
+		tempIndex.update();
+		List<Deadline> tempFound = new ArrayList<>();
+		for (Deadline tempDeadline : tempOpen) {
+			if (!tempIndex.isDone(tempDeadline)) {
+				tempFound.add(tempDeadline);
+			}
+		}
+		List<Deadline> tempRemoveAll = new ArrayList<>(tempOpen);
+		tempRemoveAll.removeAll(parse(tempText.toString()));
+		assertEquals(10, tempFound.size());
+		assertEquals(tempRemoveAll, tempFound);
+	}
+}
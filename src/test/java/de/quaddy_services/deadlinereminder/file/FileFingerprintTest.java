@@ -0,0 +1,56 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+public class FileFingerprintTest extends TestCase {
+
+	public void testChecksumOnlyForRecentFiles() throws Exception {
+		File tempFile = File.createTempFile("termin", ".txt");
+		try {
+			Files.write(tempFile.toPath(), "01.01.2020 A".getBytes(StandardCharsets.UTF_8));
+			long tempLastModified = tempFile.lastModified();
+			FileFingerprint tempRecentA = FileFingerprint.of(tempFile, tempLastModified);
+			FileFingerprint tempOldA = FileFingerprint.of(tempFile, tempLastModified + 60_000);
+			assertFalse("checksum only if recent", tempRecentA.equals(tempOldA));
+
+			// same length and modification time, other content
+			Files.write(tempFile.toPath(), "01.01.2020 B".getBytes(StandardCharsets.UTF_8));
+			tempFile.setLastModified(tempLastModified);
+			assertFalse(tempRecentA.equals(FileFingerprint.of(tempFile, tempLastModified)));
+			assertEquals("not read", tempOldA, FileFingerprint.of(tempFile, tempLastModified + 60_000));
+
+			Files.write(tempFile.toPath(), "01.01.2020 AB".getBytes(StandardCharsets.UTF_8));
+			tempFile.setLastModified(tempLastModified);
+			assertFalse("length", tempOldA.equals(FileFingerprint.of(tempFile, tempLastModified + 60_000)));
+		} finally {
+			tempFile.delete();
+		}
+		assertEquals(FileFingerprint.of(tempFile), FileFingerprint.of(tempFile));
+	}
+
+	public void testUnchanged() throws Exception {
+		File tempFile = File.createTempFile("termin", ".txt");
+		try {
+			Files.write(tempFile.toPath(), "01.01.2020 A".getBytes(StandardCharsets.UTF_8));
+			long tempLastModified = tempFile.lastModified();
+			FileFingerprint tempRecent = FileFingerprint.of(tempFile, tempLastModified);
+			FileFingerprint tempOld = FileFingerprint.of(tempFile, tempLastModified + 60_000);
+			assertTrue(tempRecent.isUnchanged(tempFile));
+			assertTrue(tempOld.isUnchanged(tempFile));
+
+			Files.write(tempFile.toPath(), "01.01.2020 B".getBytes(StandardCharsets.UTF_8));
+			tempFile.setLastModified(tempLastModified);
+			assertFalse("same second, other content", tempRecent.isUnchanged(tempFile));
+
+			tempFile.setLastModified(tempLastModified + 10_000);
+			assertFalse(tempOld.isUnchanged(tempFile));
+		} finally {
+			tempFile.delete();
+		}
+		assertTrue(FileFingerprint.of(tempFile).isUnchanged(tempFile));
+	}
+}
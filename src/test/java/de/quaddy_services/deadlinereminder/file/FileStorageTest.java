@@ -4,14 +4,18 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.StringReader;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.quaddy_services.deadlinereminder.Deadline;
+import de.quaddy_services.deadlinereminder.DeadlineComparator;
 import junit.framework.TestCase;
 
 public class FileStorageTest extends TestCase {
@@ -21,6 +25,7 @@ public class FileStorageTest extends TestCase {
 
 	class TestFileStorage extends FileStorage {
 		private String termin;
+		private String googleAdded = "";
 
 		public TestFileStorage(String aText) {
 			termin = aText;
@@ -33,10 +38,33 @@ public class FileStorageTest extends TestCase {
 				return new BufferedReader(new StringReader(""));
 			}
 			if (aTempFile.getName().equals(TERMIN_GOOGLE_ADDED_TXT)) {
-				return new BufferedReader(new StringReader(""));
+				return new BufferedReader(new StringReader(googleAdded));
 			}
 			return new BufferedReader(new StringReader(termin));
 		}
+
+		@Override
+		protected boolean isLoadMapped(File aFile) {
+			return false;
+		}
+
+		@Override
+		protected DoneIndex getDoneIndex() {
+			File tempDir = new File(System.getProperty("java.io.tmpdir"));
+			return new DoneIndex(new File(tempDir, "missing-" + TERMIN_DONE_TXT),
+					new File(tempDir, "missing-" + TERMIN_DONE_IDX));
+		}
+
+		@Override
+		protected DoneArchive getDoneArchive() {
+			return new DoneArchive(new File(System.getProperty("java.io.tmpdir"), "missing-DeadlineReminder"));
+		}
+
+		@Override
+		boolean isCompactionDue(int aLineCount, int aLiveCount, long aFileLength) {
+			// never rewrite the real file
+			return false;
+		}
 	}
 
 	public void testBirthday() {
@@ -161,6 +189,92 @@ public class FileStorageTest extends TestCase {
 		assertEquals("*11d testDaily", tempDeadlines.get(0).getInfo());
 	}
 
+	public void testGoogleAddedLatestWins() {
+		String tempToDay = format(Calendar.getInstance());
+		TestFileStorage tempTestFileStorage = new TestFileStorage("");
+		tempTestFileStorage.googleAdded = "ID:a\t" + tempToDay + " A1\n" + "ID:b\t" + tempToDay + " B\n" + "ID:c\t"
+				+ tempToDay + " C\n" + "ID:a\t" + tempToDay + " A2\n" + "ID:c\t" + FileStorage.DELETED_MARKER + "\n";
+		List<Deadline> tempDeadlines = tempTestFileStorage.getOpenDeadlines(null);
+		logDeadlines(tempDeadlines);
+		assertEquals(2, tempDeadlines.size());
+		assertEquals("B", tempDeadlines.get(0).getInfo());
+		assertEquals("A2", tempDeadlines.get(1).getInfo());
+		assertTrue(tempDeadlines.get(1).isAddedByGoogle());
+	}
+
+	public void testIterateOpenDeadlines() {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.add(Calendar.DAY_OF_YEAR, -10);
+		String tempStart = format(tempCal);
+		tempCal.add(Calendar.DAY_OF_YEAR, 12);
+		String tempText = tempStart + "*1d 11:00 Daily\n" + tempStart + "*1w Weekly\n" + format(tempCal)
+				+ " 09:30 Once\n" + tempStart + " Past\n";
+		TestFileStorage tempTestFileStorage = new TestFileStorage(tempText);
+		tempTestFileStorage.googleAdded = "ID:g\t" + format(tempCal) + " Google\n";
+		Calendar tempFrom = Calendar.getInstance();
+		tempFrom.set(Calendar.HOUR_OF_DAY, 12);
+		Calendar tempTo = Calendar.getInstance();
+		tempTo.add(Calendar.DAY_OF_YEAR, 7);
+		List<Deadline> tempExpected = new ArrayList<>();
+		for (Deadline tempDeadline : tempTestFileStorage.getOpenDeadlines(tempTo.getTime())) {
+			if (!tempDeadline.getWhen().before(tempFrom.getTime()) && tempDeadline.getWhen().before(tempTo.getTime())) {
+				tempExpected.add(tempDeadline);
+			}
+		}
+		Collections.sort(tempExpected, new DeadlineComparator());
+		List<Deadline> tempActual = new ArrayList<>();
+		for (Iterator<Deadline> i = tempTestFileStorage.iterateOpenDeadlines(tempFrom.getTime(),
+				tempTo.getTime()); i.hasNext();) {
+			tempActual.add(i.next());
+		}
+		logDeadlines(tempActual);
+		assertEquals(toString(tempExpected), toString(tempActual));
+		assertTrue(tempActual.get(tempActual.size() - 1).getWhen().before(tempTo.getTime()));
+
+		// copies of the cached deadlines
+		for (Deadline tempDeadline : tempActual) {
+			tempDeadline.setInfo("changed");
+		}
+		List<Deadline> tempAgain = new ArrayList<>();
+		for (Iterator<Deadline> i = tempTestFileStorage.iterateOpenDeadlines(tempFrom.getTime(),
+				tempTo.getTime()); i.hasNext();) {
+			tempAgain.add(i.next());
+		}
+		assertEquals(toString(tempExpected), toString(tempAgain));
+	}
+
+	public void testIterateOpenDeadlinesIsLazy() {
+		String tempText = format(Calendar.getInstance()) + "*1d Daily";
+		TestFileStorage tempTestFileStorage = new TestFileStorage(tempText);
+		Date tempFrom = new Date();
+		Calendar tempTo = Calendar.getInstance();
+		tempTo.add(Calendar.YEAR, 1000);
+		Iterator<Deadline> tempDeadlines = tempTestFileStorage.iterateOpenDeadlines(tempFrom, tempTo.getTime());
+		Date tempPrevious = tempFrom;
+		for (int i = 0; i < 5; i++) {
+			Deadline tempDeadline = tempDeadlines.next();
+			assertTrue(tempDeadline.getWhen().after(tempPrevious));
+			tempPrevious = tempDeadline.getWhen();
+		}
+		assertTrue(tempDeadlines.hasNext());
+	}
+
+	private static String toString(List<Deadline> aDeadlines) {
+		StringBuilder tempText = new StringBuilder();
+		for (Deadline tempDeadline : aDeadlines) {
+			tempText.append(tempDeadline.getWhen().getTime()).append(' ').append(tempDeadline.getInfo()).append('\n');
+		}
+		return tempText.toString();
+	}
+
+	public void testCompactionDue() {
+		FileStorage tempFileStorage = new FileStorage();
+		assertFalse(tempFileStorage.isCompactionDue(10, 10, Long.MAX_VALUE));
+		assertFalse(tempFileStorage.isCompactionDue(15, 10, 100));
+		assertTrue(tempFileStorage.isCompactionDue(20, 10, 100));
+		assertTrue(tempFileStorage.isCompactionDue(11, 10, 1024 * 1024));
+	}
+
 	/**
 	 *
 	 */
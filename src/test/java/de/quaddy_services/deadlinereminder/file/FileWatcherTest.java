@@ -0,0 +1,63 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class FileWatcherTest extends TestCase {
+
+	public void testBurstIsReportedOnce() throws Exception {
+		File tempDirectory = Files.createTempDirectory("DeadlineReminder").toFile();
+		File tempFile = new File(tempDirectory, FileStorage.TERMIN_TXT);
+		File tempOther = new File(tempDirectory, "other.txt");
+		BlockingQueue<Set<String>> tempChanges = new LinkedBlockingQueue<>();
+		try (FileWatcher tempWatcher = new FileWatcher(tempDirectory,
+				new HashSet<>(Arrays.asList(FileStorage.TERMIN_TXT, FileStorage.TERMIN_DONE_TXT)), 300,
+				tempChanges::add)) {
+			tempWatcher.start();
+			Files.write(tempOther.toPath(), "x".getBytes(StandardCharsets.UTF_8));
+			for (int i = 0; i < 5; i++) {
+				Files.write(tempFile.toPath(), ("01.01.2020 Text " + i).getBytes(StandardCharsets.UTF_8));
+				Thread.sleep(20);
+			}
+			assertEquals(Collections.singleton(FileStorage.TERMIN_TXT), tempChanges.poll(10, TimeUnit.SECONDS));
+			assertNull("burst coalesced", tempChanges.poll(1, TimeUnit.SECONDS));
+		} finally {
+			tempFile.delete();
+			tempOther.delete();
+			tempDirectory.delete();
+		}
+	}
+
+	public void testOtherFilesDoNotDelay() throws Exception {
+		File tempDirectory = Files.createTempDirectory("DeadlineReminder").toFile();
+		File tempFile = new File(tempDirectory, FileStorage.TERMIN_TXT);
+		File tempIndex = new File(tempDirectory, FileStorage.TERMIN_DONE_IDX);
+		BlockingQueue<Set<String>> tempChanges = new LinkedBlockingQueue<>();
+		try (FileWatcher tempWatcher = new FileWatcher(tempDirectory, Collections.singleton(FileStorage.TERMIN_TXT),
+				300, tempChanges::add)) {
+			tempWatcher.start();
+			Files.write(tempFile.toPath(), "01.01.2020 Text".getBytes(StandardCharsets.UTF_8));
+			Set<String> tempChanged = null;
+			for (int i = 0; i < 100 && tempChanged == null; i++) {
+				Files.write(tempIndex.toPath(), new byte[] { (byte) i });
+				tempChanged = tempChanges.poll(50, TimeUnit.MILLISECONDS);
+			}
+			assertEquals("reported while the index is still written", Collections.singleton(FileStorage.TERMIN_TXT),
+					tempChanged);
+		} finally {
+			tempFile.delete();
+			tempIndex.delete();
+			tempDirectory.delete();
+		}
+	}
+}
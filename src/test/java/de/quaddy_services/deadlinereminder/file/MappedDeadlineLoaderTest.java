@@ -0,0 +1,54 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import de.quaddy_services.deadlinereminder.Deadline;
+import junit.framework.TestCase;
+
+public class MappedDeadlineLoaderTest extends TestCase {
+
+	public void testSameAsReader() throws Exception {
+		File tempFile = File.createTempFile("termin-done", ".txt");
+		try {
+			try (Writer tempWriter = new OutputStreamWriter(Files.newOutputStream(tempFile.toPath()),
+					StandardCharsets.UTF_16LE)) {
+				tempWriter.write('\ufeff');
+				for (int i = 0; i < 2000; i++) {
+					tempWriter.write(FileStorage.ID_PREFIX + (i % 300) + "\t01.02.2020 17:00 Text " + i + " \u00e4\u20ac"
+							+ (i % 7 == 0 ? "\r\n" : "\n"));
+					if (i % 500 == 0) {
+						tempWriter.write("invalid " + i + "\n");
+					}
+				}
+			}
+			List<Deadline> tempExpected;
+			DeadlineParser tempParser = new DeadlineParser(false);
+			try (BufferedReader tempReader = new BufferedReader(
+					new UnicodeReader(new FileInputStream(tempFile), "UTF-8"))) {
+				tempExpected = tempParser.parse(tempReader);
+			}
+			MappedDeadlineLoader tempLoader = new MappedDeadlineLoader(false, 1001);
+			List<Deadline> tempDeadlines = tempLoader.load(tempFile);
+			assertEquals(tempExpected.size(), tempDeadlines.size());
+			for (int i = 0; i < tempExpected.size(); i++) {
+				Deadline tempDeadline = tempDeadlines.get(i);
+				if (tempExpected.get(i).getId() != null) {
+					assertEquals(tempExpected.get(i).getId(), tempDeadline.getId());
+					assertEquals(tempExpected.get(i).getWhen(), tempDeadline.getWhen());
+					assertEquals(tempExpected.get(i).getInfo(), tempDeadline.getInfo());
+				}
+			}
+			assertEquals("Text 1999 \u00e4\u20ac", tempDeadlines.get(tempDeadlines.size() - 1).getInfo());
+			assertEquals(tempParser.getDiagnostics().size(), tempLoader.getDiagnostics().size());
+		} finally {
+			tempFile.delete();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package de.quaddy_services.deadlinereminder.file;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class RecurrenceRuleTest extends TestCase {
+	private TimeZone defaultTimeZone;
+
+	/**
+	 * Stepping moves the time to 01:00 after a daylight saving switch at
+	 * midnight (e.g. America/Sao_Paulo until 2018), the rule stays at midnight.
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		defaultTimeZone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TimeZone.setDefault(defaultTimeZone);
+	}
+
+	/**
+	 * The previous implementation: step from the start date.
+	 */
+	private static List<Date> stepping(RecurrenceRule aRule, Calendar aNow) {
+		Calendar tempStartingPoint = (Calendar) aNow.clone();
+		int tempUnit = aRule.getUnit();
+		int tempStep = aRule.getStep();
+		if (tempUnit == Calendar.YEAR) {
+			tempStartingPoint.add(Calendar.YEAR, -1);
+		} else if (tempUnit == Calendar.MONTH) {
+			tempStartingPoint.add(Calendar.MONTH, -3);
+		} else if (tempUnit == Calendar.WEEK_OF_YEAR) {
+			tempStartingPoint.add(Calendar.WEEK_OF_YEAR, -3);
+		} else {
+			tempStartingPoint.add(Calendar.DAY_OF_YEAR, -3);
+		}
+		Calendar tempCal = (Calendar) aNow.clone();
+		int tempPreviousYear = tempCal.get(Calendar.YEAR) - 1;
+		tempCal.setTime(aRule.getStart());
+		while (tempCal.get(Calendar.YEAR) < tempPreviousYear) {
+			tempCal.add(tempUnit, tempStep);
+		}
+		List<Date> tempOccurrences = new ArrayList<>();
+		while (tempOccurrences.size() < aRule.getMaxAddCount()) {
+			if (tempStartingPoint.before(tempCal)) {
+				tempOccurrences.add(tempCal.getTime());
+			}
+			tempCal.add(tempUnit, tempStep);
+		}
+		return tempOccurrences;
+	}
+
+	private static Date date(int aYear, int aMonth, int aDay) {
+		Calendar tempCal = Calendar.getInstance();
+		tempCal.clear();
+		tempCal.set(aYear, aMonth - 1, aDay);
+		return tempCal.getTime();
+	}
+
+	public void testSameAsStepping() {
+		String[] tempInfos = { "* Birthday", "*Birthday", "*2y Text", "*4y Text", "*1m Text", "*3m Text", "*12m Text",
+				"*7m Text", "*1w Text", "*2w Text", "*1d Text", "*3d Text", "*11d Text", "*400d Text" };
+		Date[] tempStarts = { date(1970, 1, 1), date(2000, 2, 29), date(2010, 1, 31), date(2011, 3, 30),
+				date(2012, 10, 28), date(2019, 12, 31), date(2024, 8, 31), date(2030, 5, 15) };
+		int tempCount = 0;
+		for (int tempNowOffset = 0; tempNowOffset < 800; tempNowOffset += 37) {
+			Calendar tempNow = Calendar.getInstance();
+			tempNow.clear();
+			tempNow.set(2025, Calendar.JANUARY, 1, 13, 45);
+			tempNow.add(Calendar.DAY_OF_YEAR, tempNowOffset);
+			for (Date tempStart : tempStarts) {
+				for (String tempInfo : tempInfos) {
+					RecurrenceRule tempRule = RecurrenceRule.compile(tempStart, tempInfo);
+					assertEquals(tempRule + " now=" + tempNow.getTime(), stepping(tempRule, tempNow),
+							tempRule.getOccurrences(tempNow));
+					tempCount++;
+				}
+			}
+		}
+		assertTrue(tempCount > 1000);
+	}
+
+	public void testCompiledOnce() {
+		Date tempStart = date(2010, 1, 31);
+		RecurrenceRule tempRule = RecurrenceRule.compile(tempStart, "*2w Text");
+		assertSame(tempRule, RecurrenceRule.compile(new Date(tempStart.getTime()), "*2w Text"));
+		assertEquals(Calendar.WEEK_OF_YEAR, tempRule.getUnit());
+		assertEquals(2, tempRule.getStep());
+		assertEquals("*Text", tempRule.getTextWithoutRepeatingInfo());
+	}
+}